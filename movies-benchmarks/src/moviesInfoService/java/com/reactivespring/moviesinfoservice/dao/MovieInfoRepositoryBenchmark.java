@@ -0,0 +1,121 @@
+package com.reactivespring.moviesinfoservice.dao;
+
+import com.reactivespring.benchmark.EmbeddedMongo;
+import com.reactivespring.common.mongo.MongoIndexInitializer;
+import com.reactivespring.common.paging.PageToken;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.document.MovieInfoSummary;
+import com.reactivespring.moviesinfoservice.search.SearchTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query paths of MovieInfoRepository against an embedded mongod holding MOVIE_COUNT movie infos, with the indexes the
+ * service creates at startup. Reports the average time of a whole query, round trip and mapping included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovieInfoRepositoryBenchmark {
+
+    private static final int MOVIE_COUNT = 20_000;
+    private static final int INSERT_BATCH_SIZE = 5_000;
+    private static final int MAX_SEARCH_CANDIDATES = 1_000;
+    private static final List<String> WORDS = List.of("Dark", "Knight", "Batman", "Begins", "Rises", "Night", "City",
+            "Return", "Last", "Light", "Shadow", "Empire", "Storm", "Lost", "Silent", "Red", "Winter", "River", "Star", "Code");
+    private static final List<String> CAST = List.of("Christian Bale", "Michael Caine", "Heath Ledger", "Gary Oldman",
+            "Aaron Eckhart", "Maggie Gyllenhaal", "Morgan Freeman", "Cillian Murphy", "Tom Hardy", "Anne Hathaway");
+
+    @Param({"10", "100"})
+    public int limit;
+
+    private EmbeddedMongo embeddedMongo;
+    private MovieInfoRepository movieInfoRepository;
+    private PageToken deepPageToken;
+    private List<String> searchTerms;
+
+    @Setup
+    public void setUp() {
+        embeddedMongo = EmbeddedMongo.start();
+        var reactiveMongoTemplate = embeddedMongo.reactiveMongoTemplate("benchmark");
+        new MongoIndexInitializer(reactiveMongoTemplate, List.of(MovieInfo.class), Duration.ofMinutes(1)).afterPropertiesSet();
+        movieInfoRepository = new ReactiveMongoRepositoryFactory(reactiveMongoTemplate).getRepository(MovieInfoRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new MovieInfoRepositoryCustomImpl(reactiveMongoTemplate)));
+
+        Flux.range(0, MOVIE_COUNT)
+                .map(MovieInfoRepositoryBenchmark::movieInfo)
+                .buffer(INSERT_BATCH_SIZE)
+                .concatMap(reactiveMongoTemplate::insertAll)
+                .blockLast();
+
+        //a page in the middle of the listing, a keyset page should cost the same wherever it starts
+        var middle = movieInfoRepository.findPage(MovieInfoSort.YEAR, null, null, MOVIE_COUNT / 2).blockLast();
+        deepPageToken = movieInfoRepository.pageTokenOf(MovieInfoSort.YEAR, middle);
+        searchTerms = SearchTokenizer.terms("dark kni");
+    }
+
+    @TearDown
+    public void tearDown() {
+        embeddedMongo.close();
+    }
+
+    @Benchmark
+    public MovieInfo findById() {
+        return movieInfoRepository.findById("movie-" + MOVIE_COUNT / 2).block();
+    }
+
+    @Benchmark
+    public List<MovieInfo> findFirstPageByYear() {
+        return movieInfoRepository.findPage(MovieInfoSort.YEAR, null, null, limit).collectList().block();
+    }
+
+    @Benchmark
+    public List<MovieInfo> findDeepPageByYear() {
+        return movieInfoRepository.findPage(MovieInfoSort.YEAR, null, deepPageToken, limit).collectList().block();
+    }
+
+    @Benchmark
+    public List<MovieInfoSummary> findDeepSummaryPageByYear() {
+        return movieInfoRepository.findSummaryPage(MovieInfoSort.YEAR, null, deepPageToken, limit).collectList().block();
+    }
+
+    @Benchmark
+    public List<MovieInfo> findByYearReleased() {
+        return movieInfoRepository.findByYearReleased(2005).take(limit).collectList().block();
+    }
+
+    @Benchmark
+    public List<MovieInfoSearchHit> search() {
+        return movieInfoRepository.search(searchTerms, null, limit, MAX_SEARCH_CANDIDATES).collectList().block();
+    }
+
+    //the template bypasses the callback of the service, so the search tokens are set here
+    private static MovieInfo movieInfo(int i) {
+        var name = WORDS.get(i % WORDS.size()) + " " + WORDS.get(i / WORDS.size() % WORDS.size()) + " " + i;
+        var cast = List.of(CAST.get(i % CAST.size()), CAST.get((i + 3) % CAST.size()));
+        var movieInfo = new MovieInfo("movie-" + i, name, 1950 + i % 75, cast, LocalDate.parse("2005-06-15"));
+        movieInfo.setSearchTokens(SearchTokenizer.searchTokensOf(movieInfo));
+        return movieInfo;
+    }
+}
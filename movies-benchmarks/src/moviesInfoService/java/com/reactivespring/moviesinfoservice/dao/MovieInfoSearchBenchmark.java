@@ -0,0 +1,93 @@
+package com.reactivespring.moviesinfoservice.dao;
+
+import com.reactivespring.benchmark.EmbeddedMongo;
+import com.reactivespring.common.mongo.MongoIndexInitializer;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.search.SearchTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one search page over a catalogue of a million titles, the size the search is meant to answer in a few
+ * milliseconds. The queries go from broad, a name word carried by a tenth of the titles, to a single title, and are
+ * run with the candidate bound of the service and with a bound large enough to rank every match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MovieInfoSearchBenchmark {
+
+    private static final int MOVIE_COUNT = 1_000_000;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final int LIMIT = 20;
+    private static final List<String> WORDS = List.of("Dark", "Knight", "Batman", "Begins", "Rises", "Night", "City",
+            "Return", "Last", "Light");
+    private static final List<String> CAST = List.of("Christian Bale", "Michael Caine", "Heath Ledger", "Gary Oldman",
+            "Aaron Eckhart", "Maggie Gyllenhaal", "Morgan Freeman", "Cillian Murphy", "Tom Hardy", "Anne Hathaway");
+
+    @Param({"dark", "dark kni", "bale", "city 424242"})
+    public String q;
+
+    @Param({"1000", "1000000"})
+    public int maxCandidates;
+
+    private EmbeddedMongo embeddedMongo;
+    private MovieInfoRepository movieInfoRepository;
+    private List<String> terms;
+
+    @Setup
+    public void setUp() {
+        embeddedMongo = EmbeddedMongo.start();
+        var reactiveMongoTemplate = embeddedMongo.reactiveMongoTemplate("benchmark");
+        new MongoIndexInitializer(reactiveMongoTemplate, List.of(MovieInfo.class), Duration.ofMinutes(10)).afterPropertiesSet();
+        movieInfoRepository = new ReactiveMongoRepositoryFactory(reactiveMongoTemplate).getRepository(MovieInfoRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new MovieInfoRepositoryCustomImpl(reactiveMongoTemplate)));
+
+        Flux.range(0, MOVIE_COUNT)
+                .map(MovieInfoSearchBenchmark::movieInfo)
+                .buffer(INSERT_BATCH_SIZE)
+                .concatMap(reactiveMongoTemplate::insertAll)
+                .blockLast();
+        terms = SearchTokenizer.terms(q);
+    }
+
+    @TearDown
+    public void tearDown() {
+        embeddedMongo.close();
+    }
+
+    @Benchmark
+    public List<MovieInfoSearchHit> searchFirstPage() {
+        return movieInfoRepository.search(terms, null, LIMIT, maxCandidates).collectList().block();
+    }
+
+    //no Spring context registers the search tokens callback here, so the tokens are set by hand
+    private static MovieInfo movieInfo(int i) {
+        var name = WORDS.get(i % WORDS.size()) + " " + WORDS.get(i / WORDS.size() % WORDS.size()) + " " + i;
+        var cast = List.of(CAST.get(i % CAST.size()), CAST.get((i + 3) % CAST.size()));
+        var movieInfo = new MovieInfo("movie-" + i, name, 1950 + i % 75, cast, LocalDate.parse("2005-06-15"));
+        movieInfo.setSearchTokens(SearchTokenizer.searchTokensOf(movieInfo));
+        return movieInfo;
+    }
+}
@@ -0,0 +1,94 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.common.offload.StageOffloader;
+import com.reactivespring.domain.Review;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Mixed workload on a simulated event loop, a parallel scheduler whose threads are non-blocking like Netty's: every
+ * OFFLOADED_EVERY-th request validates a review in the validation stage and then blocks for blockingMicros, like a
+ * blocking integration would, the other requests are light. Compares the event-loop only mode with the hybrid modes,
+ * in which the validation stage leaves the loop. Reports bursts of REQUESTS requests per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OffloadModeBenchmark {
+
+    private static final int REQUESTS = 1_000;
+    private static final int OFFLOADED_EVERY = 5;
+    private static final int EVENT_LOOP_THREADS = 4;
+
+    @Param({"event-loop", "bounded-elastic", "virtual-threads"})
+    public String mode;
+
+    @Param({"0", "200"})
+    public int blockingMicros;
+
+    private Scheduler eventLoop;
+    private ValidatorFactory validatorFactory;
+    private StageOffloader stageOffloader;
+    private ReviewValidator reviewValidator;
+    private Review review;
+
+    @Setup
+    public void setUp() {
+        eventLoop = Schedulers.newParallel("event-loop", EVENT_LOOP_THREADS);
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        stageOffloader = new StageOffloader(mode, Set.of(StageOffloader.VALIDATION));
+        reviewValidator = new ReviewValidator(validatorFactory.getValidator());
+        review = new Review(null, 1L, "Awesome Movie", 9.0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stageOffloader.close();
+        validatorFactory.close();
+        eventLoop.dispose();
+    }
+
+    @Benchmark
+    public Long mixedRequests() {
+        return Flux.range(0, REQUESTS)
+                .flatMap(i -> request(i).subscribeOn(eventLoop), REQUESTS)
+                .count()
+                .block();
+    }
+
+    private Mono<Review> request(int i) {
+        if (i % OFFLOADED_EVERY != 0) {
+            return Mono.fromSupplier(() -> review);
+        }
+        return stageOffloader.run(StageOffloader.VALIDATION, () -> {
+            reviewValidator.validate(review);
+            if (blockingMicros > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(blockingMicros));
+            }
+            return review;
+        });
+    }
+}
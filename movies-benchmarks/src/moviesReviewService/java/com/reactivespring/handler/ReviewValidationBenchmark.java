@@ -0,0 +1,63 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewDataException;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of ReviewValidator.validate, the validation stage of POST /v1/review, for a valid review and for one
+ * breaking both constraints, which builds the error message and throws. The error log line of the invalid case is
+ * turned off in the benchmark logback config.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReviewValidationBenchmark {
+
+    @Param({"true", "false"})
+    public boolean valid;
+
+    private ValidatorFactory validatorFactory;
+    private ReviewValidator reviewValidator;
+    private Review review;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        reviewValidator = new ReviewValidator(validatorFactory.getValidator());
+        review = valid ? new Review(null, 1L, "Awesome Movie", 9.0) : new Review(null, null, "Awesome Movie", -9.0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Object validate() {
+        try {
+            reviewValidator.validate(review);
+            return review;
+        } catch (ReviewDataException e) {
+            return e;
+        }
+    }
+}
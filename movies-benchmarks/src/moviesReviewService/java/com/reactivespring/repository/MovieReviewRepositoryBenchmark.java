@@ -0,0 +1,97 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.benchmark.EmbeddedMongo;
+import com.reactivespring.common.mongo.MongoIndexInitializer;
+import com.reactivespring.common.paging.PageToken;
+import com.reactivespring.domain.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Query paths of MovieReviewRepository against an embedded mongod holding REVIEWS_PER_MOVIE reviews for each of
+ * MOVIE_COUNT movies, with the indexes the service creates at startup. Reports the average time of a whole query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovieReviewRepositoryBenchmark {
+
+    private static final int MOVIE_COUNT = 2_000;
+    private static final int REVIEWS_PER_MOVIE = 20;
+    private static final int INSERT_BATCH_SIZE = 5_000;
+
+    @Param({"10", "100"})
+    public int limit;
+
+    private EmbeddedMongo embeddedMongo;
+    private MovieReviewRepository movieReviewRepository;
+    private PageToken deepPageToken;
+    private List<Long> batchMovieInfoIds;
+
+    @Setup
+    public void setUp() {
+        embeddedMongo = EmbeddedMongo.start();
+        var reactiveMongoTemplate = embeddedMongo.reactiveMongoTemplate("benchmark");
+        new MongoIndexInitializer(reactiveMongoTemplate, List.of(Review.class), Duration.ofMinutes(1)).afterPropertiesSet();
+        movieReviewRepository = new ReactiveMongoRepositoryFactory(reactiveMongoTemplate).getRepository(MovieReviewRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new MovieReviewRepositoryCustomImpl(reactiveMongoTemplate)));
+
+        Flux.range(0, MOVIE_COUNT * REVIEWS_PER_MOVIE)
+                .map(i -> new Review(null, (long) (i % MOVIE_COUNT), "Review " + i, (double) (i % 11)))
+                .buffer(INSERT_BATCH_SIZE)
+                .concatMap(reactiveMongoTemplate::insertAll)
+                .blockLast();
+
+        //a page in the middle of the listing, a keyset page should cost the same wherever it starts
+        var middle = movieReviewRepository.findPage(ReviewSort.RATING, null, MOVIE_COUNT * REVIEWS_PER_MOVIE / 2).blockLast();
+        deepPageToken = movieReviewRepository.pageTokenOf(ReviewSort.RATING, middle);
+        batchMovieInfoIds = LongStream.range(0, 50).map(i -> i * (MOVIE_COUNT / 50)).boxed().toList();
+    }
+
+    @TearDown
+    public void tearDown() {
+        embeddedMongo.close();
+    }
+
+    @Benchmark
+    public List<Review> findReviewsByMovieInfoId() {
+        return movieReviewRepository.findReviewsByMovieInfoIdOrderByReviewId((long) MOVIE_COUNT / 2).collectList().block();
+    }
+
+    //the movies-service batch endpoint asks for up to 50 movies per chunk
+    @Benchmark
+    public List<Review> findReviewsByMovieInfoIdIn() {
+        return movieReviewRepository.findReviewsByMovieInfoIdIn(batchMovieInfoIds).collectList().block();
+    }
+
+    @Benchmark
+    public List<Review> findFirstPageById() {
+        return movieReviewRepository.findPage(ReviewSort.ID, null, limit).collectList().block();
+    }
+
+    @Benchmark
+    public List<Review> findDeepPageByRating() {
+        return movieReviewRepository.findPage(ReviewSort.RATING, deepPageToken, limit).collectList().block();
+    }
+}
@@ -0,0 +1,104 @@
+package com.reactivespring.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.MoviesServiceApplication;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of getMovieInfoAndReviews in movies-service without the network: the client policies, the decoding of the
+ * reviews, the zip, the Movie assembly and its ETag, once in parallel and once in sequence, for movies with more or
+ * fewer reviews. The application context is started without a web server and both WebClients answer from memory, the
+ * movie info is served by the movie info cache after the first call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovieAggregationBenchmark {
+
+    private static final String MOVIE_INFO_ID = "1";
+    private static final String MOVIE_REVIEW_PATH = "/v1/review";
+
+    @Param({"true", "false"})
+    public boolean parallelAggregation;
+
+    @Param({"1", "10", "100"})
+    public int reviewCount;
+
+    private ConfigurableApplicationContext context;
+    private MovieServicesController movieServicesController;
+    private String movieInfoJson;
+    private String reviewsJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        var movieInfo = new MovieInfo(MOVIE_INFO_ID, "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"),
+                LocalDate.parse("2005-06-15"));
+        movieInfo.setVersion(0L);
+        var reviews = IntStream.range(0, reviewCount)
+                .mapToObj(i -> new Review(String.valueOf(i), 1L, "Awesome Movie", 9.0, 0L))
+                .toList();
+
+        //the exchange function takes precedence over the connector the service configures on its WebClients
+        WebClientCustomizer downstreams = builder -> builder.exchangeFunction(this::answer);
+        context = new SpringApplicationBuilder(MoviesServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("movieService.aggregation.parallel=" + parallelAggregation)
+                .initializers(applicationContext -> applicationContext.getBeanFactory()
+                        .registerSingleton("inMemoryDownstreams", downstreams))
+                .run();
+        var objectMapper = context.getBean(ObjectMapper.class);
+        movieInfoJson = objectMapper.writeValueAsString(movieInfo);
+        reviewsJson = objectMapper.writeValueAsString(reviews);
+        movieServicesController = context.getBean(MovieServicesController.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> getMovieInfoAndReviews() {
+        return movieServicesController.getMovieInfoAndReviews(MOVIE_INFO_ID).block();
+    }
+
+    private Mono<ClientResponse> answer(ClientRequest request) {
+        var body = request.url().getPath().startsWith(MOVIE_REVIEW_PATH) ? reviewsJson : movieInfoJson;
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build());
+    }
+}
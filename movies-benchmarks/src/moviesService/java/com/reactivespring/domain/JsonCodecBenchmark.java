@@ -0,0 +1,107 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Jackson encoding and decoding of lists of Movie, MovieInfo and Review, with an ObjectMapper configured the way
+ * Spring Boot configures the one of the WebFlux codecs. Reports the average time per list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int size;
+
+    private ObjectWriter writer;
+    private ObjectReader movieListReader;
+    private ObjectReader movieInfoListReader;
+    private ObjectReader reviewListReader;
+
+    private List<Movie> movies;
+    private List<MovieInfo> movieInfos;
+    private List<Review> reviews;
+    private byte[] moviesJson;
+    private byte[] movieInfosJson;
+    private byte[] reviewsJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        var objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writer();
+        movieListReader = objectMapper.readerFor(new TypeReference<List<Movie>>() {});
+        movieInfoListReader = objectMapper.readerFor(new TypeReference<List<MovieInfo>>() {});
+        reviewListReader = objectMapper.readerFor(new TypeReference<List<Review>>() {});
+
+        movieInfos = IntStream.range(0, size).mapToObj(JsonCodecBenchmark::movieInfo).toList();
+        reviews = IntStream.range(0, size).mapToObj(JsonCodecBenchmark::review).toList();
+        //a movie carries a handful of reviews, like most titles do
+        movies = movieInfos.stream().map(movieInfo -> new Movie(movieInfo, reviews.subList(0, Math.min(5, size)))).toList();
+        moviesJson = writer.writeValueAsBytes(movies);
+        movieInfosJson = writer.writeValueAsBytes(movieInfos);
+        reviewsJson = writer.writeValueAsBytes(reviews);
+    }
+
+    @Benchmark
+    public byte[] encodeMovies() throws IOException {
+        return writer.writeValueAsBytes(movies);
+    }
+
+    @Benchmark
+    public List<Movie> decodeMovies() throws IOException {
+        return movieListReader.readValue(moviesJson);
+    }
+
+    @Benchmark
+    public byte[] encodeMovieInfos() throws IOException {
+        return writer.writeValueAsBytes(movieInfos);
+    }
+
+    @Benchmark
+    public List<MovieInfo> decodeMovieInfos() throws IOException {
+        return movieInfoListReader.readValue(movieInfosJson);
+    }
+
+    @Benchmark
+    public byte[] encodeReviews() throws IOException {
+        return writer.writeValueAsBytes(reviews);
+    }
+
+    @Benchmark
+    public List<Review> decodeReviews() throws IOException {
+        return reviewListReader.readValue(reviewsJson);
+    }
+
+    private static MovieInfo movieInfo(int i) {
+        return new MovieInfo(String.valueOf(i), "Movie " + i, 1950 + i % 75, List.of("Christian Bale", "Michael Cane"),
+                LocalDate.parse("2005-06-15"));
+    }
+
+    private static Review review(int i) {
+        return new Review(String.valueOf(i), (long) i, "Awesome Movie", 9.0);
+    }
+}
@@ -0,0 +1,39 @@
+package com.reactivespring.benchmark;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+/**
+ * A mongod started for one benchmark trial, so the repository benchmarks don't depend on a local MongoDB and always
+ * start from an empty database.
+ */
+public class EmbeddedMongo implements AutoCloseable {
+
+    private final TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private final MongoClient mongoClient;
+
+    private EmbeddedMongo(TransitionWalker.ReachedState<RunningMongodProcess> mongod) {
+        this.mongod = mongod;
+        var serverAddress = mongod.current().getServerAddress();
+        this.mongoClient = MongoClients.create("mongodb://" + serverAddress.getHost() + ":" + serverAddress.getPort());
+    }
+
+    public static EmbeddedMongo start() {
+        return new EmbeddedMongo(Mongod.instance().start(Version.Main.V6_0));
+    }
+
+    public ReactiveMongoTemplate reactiveMongoTemplate(String database) {
+        return new ReactiveMongoTemplate(mongoClient, database);
+    }
+
+    @Override
+    public void close() {
+        mongoClient.close();
+        mongod.close();
+    }
+}
@@ -0,0 +1,53 @@
+package com.reactivespring.common.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.Scannable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+
+/**
+ * Gauges of the shared Reactor schedulers, read from their Scannable state on every scrape: the maximum number of
+ * workers, the workers currently created and the tasks queued on them. A boundedElastic scheduler close to its
+ * capacity with growing queues means blocking work is piling up.
+ * Each service registers it as a bean, Spring Boot binds every MeterBinder bean to its registry.
+ */
+public class ReactorSchedulerMetrics implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Map.of("boundedElastic", Schedulers.boundedElastic(), "parallel", Schedulers.parallel())
+                .forEach((name, scheduler) -> bind(registry, name, scheduler));
+    }
+
+    private static void bind(MeterRegistry registry, String name, Scheduler scheduler) {
+        Gauge.builder("reactor.scheduler.capacity", scheduler, ReactorSchedulerMetrics::capacity)
+                .description("Maximum number of workers of the scheduler")
+                .tag("scheduler", name)
+                .register(registry);
+        Gauge.builder("reactor.scheduler.workers", scheduler, s -> Scannable.from(s).inners().count())
+                .description("Workers currently created by the scheduler")
+                .tag("scheduler", name)
+                .register(registry);
+        Gauge.builder("reactor.scheduler.queued", scheduler, ReactorSchedulerMetrics::queuedTasks)
+                .description("Tasks queued on the workers of the scheduler")
+                .tag("scheduler", name)
+                .register(registry);
+    }
+
+    private static double capacity(Scheduler scheduler) {
+        var capacity = Scannable.from(scheduler).scan(Scannable.Attr.CAPACITY);
+        return capacity == null ? Double.NaN : capacity;
+    }
+
+    private static double queuedTasks(Scheduler scheduler) {
+        return Scannable.from(scheduler).inners()
+                .map(worker -> worker.scan(Scannable.Attr.BUFFERED))
+                .filter(buffered -> buffered != null && buffered > 0)
+                .mapToLong(Integer::longValue)
+                .sum();
+    }
+}
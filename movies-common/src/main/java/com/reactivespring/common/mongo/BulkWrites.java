@@ -0,0 +1,63 @@
+package com.reactivespring.common.mongo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Per document outcome of unordered bulk writes. Depending on the exception translation, the errors of the documents
+ * that weren't written come as a BulkOperationException or as the cause of a DataAccessException.
+ */
+public final class BulkWrites {
+
+    private BulkWrites() {
+    }
+
+    /**
+     * Executes the bulk write and emits the write error of every document that wasn't written, its index is the
+     * position of the document in the bulk. Failures of the whole write are still signalled as errors.
+     */
+    public static Flux<BulkWriteError> executeUnordered(ReactiveBulkOperations bulkOperations) {
+        return bulkOperations.execute()
+                .thenMany(Flux.<BulkWriteError>empty())
+                .onErrorResume(ex -> writeErrorsOf(ex) != null, ex -> Flux.fromIterable(writeErrorsOf(ex)));
+    }
+
+    /**
+     * The per document errors of a failed bulk write, null when ex isn't one.
+     */
+    @Nullable
+    public static List<BulkWriteError> writeErrorsOf(Throwable ex) {
+        for (var cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BulkOperationException bulkOperationException) {
+                return bulkOperationException.getErrors();
+            }
+            if (cause instanceof MongoBulkWriteException mongoBulkWriteException && !mongoBulkWriteException.getWriteErrors().isEmpty()) {
+                return mongoBulkWriteException.getWriteErrors();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * What a failed bulk write still wrote, null when ex isn't a bulk write failure.
+     */
+    @Nullable
+    public static BulkWriteResult writeResultOf(Throwable ex) {
+        for (var cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BulkOperationException bulkOperationException) {
+                return bulkOperationException.getResult();
+            }
+            if (cause instanceof MongoBulkWriteException mongoBulkWriteException) {
+                return mongoBulkWriteException.getWriteResult();
+            }
+        }
+        return null;
+    }
+}
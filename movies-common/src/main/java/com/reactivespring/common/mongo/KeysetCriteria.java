@@ -0,0 +1,29 @@
+package com.reactivespring.common.mongo;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Criteria of the keyset pages, which read the documents sorted by _id, or by a sort key with _id breaking ties.
+ */
+public final class KeysetCriteria {
+
+    private static final String ID = "_id";
+
+    private KeysetCriteria() {
+    }
+
+    /**
+     * The documents whose _id sorts after id. Ids are ObjectIds unless a client picked its own string id, and every
+     * string sorts before every ObjectId.
+     */
+    public static Criteria idAfter(String id) {
+        if (ObjectId.isValid(id)) {
+            return where(ID).gt(new ObjectId(id));
+        }
+        return new Criteria().orOperator(where(ID).gt(id), where(ID).type(JsonSchemaObject.Type.objectIdType()));
+    }
+}
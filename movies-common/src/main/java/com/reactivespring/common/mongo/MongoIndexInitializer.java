@@ -0,0 +1,46 @@
+package com.reactivespring.common.mongo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Creates the indexes declared on the given documents (@Indexed, @CompoundIndex) before the application serves
+ * requests. Spring Data's auto index creation stays off, so indexes are only built here, in a known order, and a
+ * failure (e.g. duplicates blocking a unique index) stops the startup instead of leaving the queries unindexed.
+ * Each service declares it for its own documents, behind its &lt;service&gt;.indexes.createOnStartup setting.
+ */
+@Slf4j
+public class MongoIndexInitializer implements InitializingBean {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final List<Class<?>> indexedDocuments;
+    private final Duration timeout;
+
+    public MongoIndexInitializer(ReactiveMongoTemplate reactiveMongoTemplate, List<Class<?>> indexedDocuments,
+                                 Duration timeout) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.indexedDocuments = indexedDocuments;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        var indexResolver = new MongoPersistentEntityIndexResolver(reactiveMongoTemplate.getConverter().getMappingContext());
+        Flux.fromIterable(indexedDocuments)
+                .concatMap(documentType -> {
+                    var indexOps = reactiveMongoTemplate.indexOps(documentType);
+                    return Flux.<IndexDefinition>fromIterable(indexResolver.resolveIndexFor(documentType))
+                            .concatMap(indexOps::ensureIndex)
+                            .doOnNext(indexName -> log.info("Ensured index {} on {}", indexName, documentType.getSimpleName()));
+                })
+                .then()
+                .block(timeout);
+    }
+}
@@ -0,0 +1,78 @@
+package com.reactivespring.common.offload;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs CPU heavy or blocking stages away from the Netty event loop, so they don't hold up the other connections of
+ * the loop. The mode picks where the listed stages run: event-loop runs them in place, virtual-threads on a new
+ * virtual thread per stage and bounded-elastic on Reactor's bounded elastic pool.
+ * Each service builds its own from its &lt;service&gt;.offload.mode and &lt;service&gt;.offload.stages settings.
+ * The services are compiled for Java 17, the virtual-threads mode only gets virtual threads on a Java 21 runtime,
+ * e.g. started with -Pjava21, and offloads to bounded-elastic with a warning on older ones.
+ */
+@Slf4j
+public class StageOffloader implements AutoCloseable {
+
+    public static final String VALIDATION = "validation";
+    public static final String BULK = "bulk";
+    public static final String BATCH = "batch";
+
+    private final Scheduler scheduler;
+    private final Set<String> stages;
+
+    public StageOffloader(String mode, Set<String> stages) {
+        this.scheduler = schedulerOf(mode);
+        this.stages = stages;
+        if (scheduler != null) {
+            log.info("Offloading the {} stages in {} mode", stages, mode);
+        }
+    }
+
+    public <T> Mono<T> run(String stage, Callable<T> work) {
+        var mono = Mono.fromCallable(work);
+        return scheduler != null && stages.contains(stage) ? mono.subscribeOn(scheduler) : mono;
+    }
+
+    private static Scheduler schedulerOf(String mode) {
+        return switch (mode) {
+            case "event-loop" -> null;
+            case "virtual-threads" -> virtualThreadScheduler();
+            case "bounded-elastic" -> Schedulers.boundedElastic();
+            default -> throw new IllegalArgumentException(
+                    "Unknown offload mode " + mode + ", use event-loop, virtual-threads or bounded-elastic");
+        };
+    }
+
+    //looked up reflectively, the code is compiled for Java 17
+    private static Scheduler virtualThreadScheduler() {
+        try {
+            var executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return Schedulers.fromExecutorService(executor, "virtual-threads");
+        } catch (NoSuchMethodException e) {
+            log.warn("Virtual threads need a Java 21 runtime, offloading to bounded-elastic on Java {}, run with -Pjava21",
+                    Runtime.version().feature());
+            return Schedulers.boundedElastic();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create the virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Disposes the virtual thread scheduler, Spring calls it when the bean goes away.
+     */
+    @Override
+    public void close() {
+        //the shared bounded elastic scheduler isn't ours to dispose
+        if (scheduler != null && scheduler != Schedulers.boundedElastic()) {
+            scheduler.dispose();
+        }
+    }
+}
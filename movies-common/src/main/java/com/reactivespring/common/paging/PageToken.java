@@ -0,0 +1,36 @@
+package com.reactivespring.common.paging;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last document of a keyset page: the sort it was read with, its sort key and its id.
+ * Clients get it as an opaque url safe string and only pass it back to fetch the next page.
+ */
+@Getter
+@AllArgsConstructor
+public class PageToken {
+
+    private static final String SEPARATOR = "\n";
+
+    private final String sort;
+    //the sort key as text, null when the page is sorted by id only or the key of the last document is null
+    private final String value;
+    private final String id;
+
+    public String encode() {
+        var token = sort + SEPARATOR + (value == null ? "" : value) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageToken decode(String token) {
+        var parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        if (parts.length != 3 || parts[2].isEmpty()) {
+            throw new IllegalArgumentException("Malformed page token");
+        }
+        return new PageToken(parts[0], parts[1].isEmpty() ? null : parts[1], parts[2]);
+    }
+}
@@ -0,0 +1,36 @@
+package com.reactivespring.common.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An event serialized once, up front, in every wire format the streams support.
+ * The byte arrays are never modified after construction, so the same instance is written to all subscribers.
+ */
+@Getter
+public class EncodedEvent {
+
+    private final String id;
+    private final byte[] ndjson;
+    private final byte[] sse;
+
+    private EncodedEvent(String id, byte[] ndjson, byte[] sse) {
+        this.id = id;
+        this.ndjson = ndjson;
+        this.sse = sse;
+    }
+
+    public static EncodedEvent of(ObjectMapper objectMapper, String id, String event, Object data) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Event " + id + " can't be serialized : " + e.getMessage(), e);
+        }
+        var sse = "id:" + id + "\nevent:" + event + "\ndata:" + json + "\n\n";
+        return new EncodedEvent(id, (json + "\n").getBytes(StandardCharsets.UTF_8), sse.getBytes(StandardCharsets.UTF_8));
+    }
+}
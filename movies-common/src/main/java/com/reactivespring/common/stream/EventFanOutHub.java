@@ -0,0 +1,91 @@
+package com.reactivespring.common.stream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes already encoded events to many stream subscribers.
+ * Events are serialized once by the publisher (see EncodedEvent) and every subscriber only wraps the shared bytes,
+ * so the per subscriber cost of an event doesn't depend on its size or on the JSON encoder.
+ * Every subscriber gets its own buffer of subscriberBufferSize events. When a slow consumer overflows it, either the
+ * oldest buffered events are dropped or the consumer is disconnected, and the other subscribers are unaffected.
+ * SSE subscribers also get a comment line every heartbeatInterval so idle connections aren't closed by proxies.
+ */
+@Slf4j
+public class EventFanOutHub {
+
+    public enum OverflowStrategy {
+        DROP_OLDEST, DISCONNECT
+    }
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final int subscriberBufferSize;
+    private final OverflowStrategy overflowStrategy;
+    private final Duration heartbeatInterval;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter dropped;
+    private final Counter disconnected;
+
+    public EventFanOutHub(String metricPrefix, int subscriberBufferSize, OverflowStrategy overflowStrategy,
+                          Duration heartbeatInterval, MeterRegistry meterRegistry) {
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.overflowStrategy = overflowStrategy;
+        this.heartbeatInterval = heartbeatInterval;
+        this.dropped = Counter.builder(metricPrefix + ".dropped")
+                .description("Events dropped from the buffer of a slow stream subscriber")
+                .register(meterRegistry);
+        this.disconnected = Counter.builder(metricPrefix + ".disconnected")
+                .description("Stream subscribers disconnected because their buffer overflowed")
+                .register(meterRegistry);
+        Gauge.builder(metricPrefix + ".subscribers", subscribers, AtomicInteger::get)
+                .description("Subscribers currently connected to the stream")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Applies the per subscriber buffer and overflow strategy to the events of one subscriber.
+     */
+    public Flux<EncodedEvent> subscribe(Flux<EncodedEvent> events) {
+        var bufferedEvents = overflowStrategy == OverflowStrategy.DISCONNECT
+                ? events.onBackpressureBuffer(subscriberBufferSize, event -> dropped.increment(), BufferOverflowStrategy.ERROR)
+                        .onErrorResume(Exceptions::isOverflow, ex -> {
+                            log.warn("Disconnecting slow stream subscriber : {}", ex.getMessage());
+                            disconnected.increment();
+                            return Flux.empty();
+                        })
+                : events.onBackpressureBuffer(subscriberBufferSize, event -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST);
+        return bufferedEvents
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signalType -> subscribers.decrementAndGet());
+    }
+
+    public Flux<DataBuffer> toNdjson(Flux<EncodedEvent> events, DataBufferFactory bufferFactory) {
+        return events.map(event -> bufferFactory.wrap(event.getNdjson()));
+    }
+
+    //heartbeats stop as soon as the events complete, so a disconnected subscriber's connection is really closed
+    public Flux<DataBuffer> toSse(Flux<EncodedEvent> events, DataBufferFactory bufferFactory) {
+        return events.map(EncodedEvent::getSse)
+                .publish(frames -> Flux.merge(frames, Flux.interval(heartbeatInterval)
+                        .map(tick -> HEARTBEAT)
+                        .takeUntilOther(frames.then())))
+                .map(bufferFactory::wrap);
+    }
+
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+}
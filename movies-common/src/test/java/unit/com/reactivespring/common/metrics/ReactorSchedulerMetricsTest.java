@@ -0,0 +1,25 @@
+package com.reactivespring.common.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactorSchedulerMetricsTest {
+
+    @Test
+    void binds_the_gauges_of_both_schedulers() {
+        var registry = new SimpleMeterRegistry();
+        new ReactorSchedulerMetrics().bindTo(registry);
+
+        assertThat(registry.get("reactor.scheduler.capacity").tag("scheduler", "parallel").gauge().value())
+                .isEqualTo(Schedulers.DEFAULT_POOL_SIZE);
+        assertThat(registry.get("reactor.scheduler.capacity").tag("scheduler", "boundedElastic").gauge().value())
+                .isEqualTo(Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE);
+        assertThat(registry.get("reactor.scheduler.workers").gauges()).hasSize(2);
+        assertThat(registry.get("reactor.scheduler.queued").gauges())
+                .hasSize(2)
+                .allSatisfy(gauge -> assertThat(gauge.value()).isGreaterThanOrEqualTo(0));
+    }
+}
@@ -0,0 +1,61 @@
+package com.reactivespring.common.offload;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The stages are subscribed from a parallel scheduler, whose threads are non-blocking like Netty's event loop, and
+ * report whether they run on a non-blocking thread themselves.
+ */
+class StageOffloaderTest {
+
+    private static final Scheduler EVENT_LOOP = Schedulers.newParallel("event-loop", 1);
+
+    @AfterAll
+    static void tearDown() {
+        EVENT_LOOP.dispose();
+    }
+
+    @Test
+    void event_loop_mode_runs_stages_in_place() {
+        var stageOffloader = new StageOffloader("event-loop", Set.of(StageOffloader.VALIDATION));
+
+        StepVerifier.create(stageOffloader.run(StageOffloader.VALIDATION, Schedulers::isInNonBlockingThread).subscribeOn(EVENT_LOOP))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void offloaded_stages_leave_the_event_loop() {
+        for (var mode : List.of("virtual-threads", "bounded-elastic")) {
+            var stageOffloader = new StageOffloader(mode, Set.of(StageOffloader.VALIDATION));
+
+            StepVerifier.create(stageOffloader.run(StageOffloader.VALIDATION, Schedulers::isInNonBlockingThread).subscribeOn(EVENT_LOOP))
+                    .expectNext(false)
+                    .verifyComplete();
+            stageOffloader.close();
+
+            //stages that aren't listed stay where they are
+            var noStageOffloader = new StageOffloader(mode, Set.of());
+            StepVerifier.create(noStageOffloader.run(StageOffloader.VALIDATION, Schedulers::isInNonBlockingThread).subscribeOn(EVENT_LOOP))
+                    .expectNext(true)
+                    .verifyComplete();
+            noStageOffloader.close();
+        }
+    }
+
+    @Test
+    void unknown_mode() {
+        assertThatThrownBy(() -> new StageOffloader("carrier-threads", Set.of(StageOffloader.VALIDATION)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("carrier-threads");
+    }
+}
@@ -0,0 +1,34 @@
+package com.reactivespring.common.paging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PageTokenTest {
+
+    @Test
+    void decodes_what_it_encodes() {
+        var pageToken = PageToken.decode(new PageToken("RATING", "8.5", "abc").encode());
+
+        assertThat(pageToken.getSort()).isEqualTo("RATING");
+        assertThat(pageToken.getValue()).isEqualTo("8.5");
+        assertThat(pageToken.getId()).isEqualTo("abc");
+    }
+
+    @Test
+    void keeps_a_null_value() {
+        var pageToken = PageToken.decode(new PageToken("ID", null, "abc").encode());
+
+        assertThat(pageToken.getValue()).isNull();
+        assertThat(pageToken.getId()).isEqualTo("abc");
+    }
+
+    @Test
+    void rejects_a_token_without_id() {
+        var token = new PageToken("ID", null, "").encode();
+
+        assertThatThrownBy(() -> PageToken.decode(token)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PageToken.decode("not base64!")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package com.reactivespring.common.test;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingMethod;
+import reactor.blockhound.BlockingOperationError;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Opt-in blocking call detection, register it on an integration test with @ExtendWith(BlockingCallDetector.class).
+ * BlockHound is installed once per JVM, while an extended test class runs every blocking call (sleep, park, wait,
+ * socket or file I/O, ...) on a non-blocking thread, i.e. a Netty event loop or a Reactor parallel worker, raises a
+ * BlockingOperationError in the offending thread and fails the running test, even when the error was turned into a
+ * 500 or swallowed on the way. Calls made inside one of the ALLOWED_METHODS are known to be safe and let through.
+ * Needs -XX:+AllowRedefinitionToAddDeleteMethods on Java 13+, the test tasks of the services pass it.
+ */
+public class BlockingCallDetector implements BeforeAllCallback, AfterAllCallback, BeforeEachCallback, AfterEachCallback {
+
+    //class -> methods whose blocking calls are expected and short, anything they call is let through as well
+    static final Map<String, List<String>> ALLOWED_METHODS = Map.of(
+            //the console appender takes its stream lock and writes synchronously, e.g. for the .log() operators
+            "ch.qos.logback.core.OutputStreamAppender", List.of("writeBytes"),
+            //class loading reads the jars, once per class
+            "java.lang.ClassLoader", List.of("loadClass"),
+            //SecureRandom seeding, e.g. for UUID.randomUUID
+            "java.security.SecureRandom", List.of("nextBytes", "generateSeed"),
+            //the connection pool and server selection of the Mongo driver hold their locks for a few instructions,
+            //only the lock helpers are allowed, the driver's I/O is still checked
+            "com.mongodb.internal.Locks", List.of("withLock", "withUnfairLock", "withInterruptibleLock",
+                    "checkedWithLock", "lockInterruptibly", "lockInterruptiblyUnfair")
+    );
+
+    private static final Queue<String> BLOCKING_CALLS = new ConcurrentLinkedQueue<>();
+    private static boolean installed;
+    private static volatile boolean enabled;
+
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        install();
+        enabled = true;
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) {
+        enabled = false;
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        BLOCKING_CALLS.clear();
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        if (!BLOCKING_CALLS.isEmpty()) {
+            throw new AssertionError("Blocking calls on non-blocking threads : " + String.join(", ", BLOCKING_CALLS));
+        }
+    }
+
+    private static synchronized void install() {
+        if (!installed) {
+            BlockHound.install(builder -> {
+                ALLOWED_METHODS.forEach((className, methodNames) ->
+                        methodNames.forEach(methodName -> builder.allowBlockingCallsInside(className, methodName)));
+                builder.blockingMethodCallback(BlockingCallDetector::onBlockingCall);
+            });
+            installed = true;
+        }
+    }
+
+    private static void onBlockingCall(BlockingMethod method) {
+        if (!enabled) {
+            return;
+        }
+        BLOCKING_CALLS.add(method + " in " + Thread.currentThread().getName());
+        throw new BlockingOperationError(method);
+    }
+}
@@ -0,0 +1,71 @@
+package com.reactivespring.common.test;
+
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.bson.Document;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A mongod started once per test JVM, so the tests using it don't depend on a local MongoDB. It runs as a single
+ * node replica set, which change streams need. Test classes point Spring at it from a @DynamicPropertySource method
+ * with register. The process is stopped by a shutdown hook once the JVM exits.
+ */
+public final class EmbeddedMongo {
+
+    private static final String REPLICA_SET_NAME = "rs0";
+    //the local database of a replica set member isn't replicated and can't be watched
+    private static final String DATABASE = "test";
+    private static final Duration PRIMARY_ELECTION_TIMEOUT = Duration.ofSeconds(30);
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    private EmbeddedMongo() {
+    }
+
+    public static void register(DynamicPropertyRegistry registry) {
+        var serverAddress = start().current().getServerAddress();
+        registry.add("spring.data.mongodb.host", serverAddress::getHost);
+        registry.add("spring.data.mongodb.port", serverAddress::getPort);
+        registry.add("spring.data.mongodb.database", () -> DATABASE);
+    }
+
+    private static synchronized TransitionWalker.ReachedState<RunningMongodProcess> start() {
+        if (mongod == null) {
+            //a replica set member needs the journal, which flapdoodle turns off by default
+            var arguments = MongodArguments.defaults()
+                    .withUseNoJournal(false)
+                    .withReplication(Storage.of(REPLICA_SET_NAME, 0));
+            mongod = Mongod.instance()
+                    .withMongodArguments(Start.to(MongodArguments.class).initializedWith(arguments))
+                    .start(Version.Main.V6_0);
+            Runtime.getRuntime().addShutdownHook(new Thread(mongod::close));
+            var serverAddress = mongod.current().getServerAddress();
+            initiate(serverAddress.getHost() + ":" + serverAddress.getPort());
+        }
+        return mongod;
+    }
+
+    private static void initiate(String hostAndPort) {
+        try (var mongoClient = MongoClients.create("mongodb://" + hostAndPort + "/?directConnection=true")) {
+            var admin = mongoClient.getDatabase("admin");
+            var config = new Document("_id", REPLICA_SET_NAME)
+                    .append("members", List.of(new Document("_id", 0).append("host", hostAndPort)));
+            Mono.from(admin.runCommand(new Document("replSetInitiate", config))).block();
+            //writes and change streams fail until the node has elected itself primary
+            Mono.defer(() -> Mono.from(admin.runCommand(new Document("hello", 1))))
+                    .filter(hello -> hello.getBoolean("isWritablePrimary", false))
+                    .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(100)))
+                    .block(PRIMARY_ELECTION_TIMEOUT);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.reactivespring.common.test;
+
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Explains the reads, updates and deletes a repository call sent, as recorded by RecordedCommands, and lists the
+ * stages of their winning plans, to check that the queries the code actually issues are served by an index.
+ */
+public final class QueryPlans {
+
+    public static final String COLLECTION_SCAN = "COLLSCAN";
+
+    private static final Set<String> EXPLAINABLE = Set.of("find", "aggregate", "count", "distinct", "findAndModify",
+            "update", "delete");
+    //statement arrays of the write commands, explain only takes one statement at a time
+    private static final Map<String, String> STATEMENTS = Map.of("update", "updates", "delete", "deletes");
+    //set by the driver for the session or the write, explain rejects them
+    private static final Set<String> DRIVER_FIELDS = Set.of("lsid", "txnNumber", "autocommit", "startTransaction",
+            "writeConcern");
+
+    private QueryPlans() {
+    }
+
+    /**
+     * The winning plan stages of every explainable command recorded, keyed by the explained command.
+     */
+    public static Map<String, List<String>> winningPlanStages(MongoDatabase database, RecordedCommands recordedCommands) {
+        var plans = new LinkedHashMap<String, List<String>>();
+        recordedCommands.all().stream()
+                .filter(command -> EXPLAINABLE.contains(command.getFirstKey()))
+                .flatMap(command -> singleStatements(command).stream())
+                .forEach(command -> plans.put(command.toJson(), winningPlanStages(database, command)));
+        return plans;
+    }
+
+    private static List<BsonDocument> singleStatements(BsonDocument command) {
+        var explainable = new BsonDocument();
+        command.forEach((key, value) -> {
+            if (!key.startsWith("$") && !DRIVER_FIELDS.contains(key)) {
+                explainable.put(key, value);
+            }
+        });
+        var statementsField = STATEMENTS.get(command.getFirstKey());
+        if (statementsField == null) {
+            return List.of(explainable);
+        }
+        return explainable.getArray(statementsField).stream()
+                .map(statement -> explainable.clone().append(statementsField, new BsonArray(List.of(statement))))
+                .toList();
+    }
+
+    private static List<String> winningPlanStages(MongoDatabase database, BsonDocument command) {
+        var explain = Mono.from(database.runCommand(new Document("explain", command).append("verbosity", "queryPlanner")))
+                .block();
+        if (explain == null) {
+            throw new IllegalStateException("No explain output for " + command.toJson());
+        }
+        var stages = new ArrayList<String>();
+        collectWinningPlans(explain, stages);
+        return stages;
+    }
+
+    //an aggregation nests the plan of its first stage, the slot based engine wraps the winning plan in a queryPlan
+    private static void collectWinningPlans(Object node, List<String> stages) {
+        if (node instanceof Map<?, ?> map) {
+            map.forEach((key, value) -> {
+                if ("winningPlan".equals(key)) {
+                    collectStages(value, stages);
+                } else {
+                    collectWinningPlans(value, stages);
+                }
+            });
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectWinningPlans(value, stages));
+        }
+    }
+
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Map<?, ?> map) {
+            if (map.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            map.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
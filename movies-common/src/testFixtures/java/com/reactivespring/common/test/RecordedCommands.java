@@ -0,0 +1,42 @@
+package com.reactivespring.common.test;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records the commands a Mongo client sends, to check what a repository call actually asked the server for.
+ * Register it on the client of the test context from a MongoClientSettingsBuilderCustomizer.
+ */
+public class RecordedCommands implements CommandListener {
+
+    private final Queue<BsonDocument> commands = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        //the event only owns the command while the callback runs
+        commands.add(event.getCommand().clone());
+    }
+
+    public void clear() {
+        commands.clear();
+    }
+
+    /**
+     * The commands sent since the last clear, in the order they were sent.
+     */
+    public List<BsonDocument> all() {
+        return List.copyOf(commands);
+    }
+
+    /**
+     * The commands of one kind sent since the last clear, e.g. find or aggregate.
+     */
+    public List<BsonDocument> named(String commandName) {
+        return commands.stream().filter(command -> command.getFirstKey().equals(commandName)).toList();
+    }
+}
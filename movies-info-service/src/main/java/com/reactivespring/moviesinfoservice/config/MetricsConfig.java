@@ -0,0 +1,14 @@
+package com.reactivespring.moviesinfoservice.config;
+
+import com.reactivespring.common.metrics.ReactorSchedulerMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public ReactorSchedulerMetrics reactorSchedulerMetrics() {
+        return new ReactorSchedulerMetrics();
+    }
+}
@@ -0,0 +1,22 @@
+package com.reactivespring.moviesinfoservice.config;
+
+import com.reactivespring.common.offload.StageOffloader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * movieInfo.offload.mode picks where the stages named in movieInfo.offload.stages run, see StageOffloader.
+ * The virtual-threads profile turns the virtual-threads mode on.
+ */
+@Configuration
+public class OffloadConfig {
+
+    @Bean
+    public StageOffloader stageOffloader(@Value("${movieInfo.offload.mode:event-loop}") String mode,
+                                         @Value("${movieInfo.offload.stages:validation,bulk}") Set<String> stages) {
+        return new StageOffloader(mode, stages);
+    }
+}
@@ -1,53 +1,219 @@
 package com.reactivespring.moviesinfoservice.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.common.offload.StageOffloader;
+import com.reactivespring.moviesinfoservice.dao.MovieInfoSort;
 import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.document.MovieInfoSummary;
+import com.reactivespring.moviesinfoservice.exception.InvalidPageRequestException;
+import com.reactivespring.moviesinfoservice.exception.MovieInfoDataException;
+import com.reactivespring.moviesinfoservice.service.BulkIngestResult;
+import com.reactivespring.moviesinfoservice.service.KeysetPage;
+import com.reactivespring.moviesinfoservice.service.MovieInfoStreamService;
 import com.reactivespring.moviesinfoservice.service.MoviesInfoService;
-import jakarta.validation.Valid;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/v1/movieInfos")
 @Slf4j
 public class MoviesInfoController {
 
-    private Sinks.Many<MovieInfo> movieInfoSink = Sinks.many().replay().all();
+    public static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
+
     @Autowired
     private MoviesInfoService moviesInfoService;
 
+    @Autowired
+    private MovieInfoStreamService movieInfoStreamService;
+
+    @Autowired
+    private StageOffloader stageOffloader;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${movieInfo.pagination.defaultLimit:50}")
+    private int defaultPageLimit;
+
+    @Value("${movieInfo.pagination.maxLimit:500}")
+    private int maxPageLimit;
+
+    @Value("${movieInfo.pagination.allowUnpaged:false}")
+    private boolean allowUnpaged;
+
     @PostMapping("add")
     @ResponseStatus(HttpStatus.CREATED)
-    private Mono<MovieInfo> addNewMovieInfo(@RequestBody @Valid MovieInfo movieInfo){
-        return moviesInfoService.addMovieInfo(movieInfo)
-                .doOnNext(movieInfo1 -> movieInfoSink.tryEmitNext(movieInfo1)).log();
+    private Mono<MovieInfo> addNewMovieInfo(@RequestBody MovieInfo movieInfo){
+        return stageOffloader.run(StageOffloader.VALIDATION, () -> validate(movieInfo))
+                .flatMap(moviesInfoService::addMovieInfo)
+                .doOnNext(movieInfo1 -> movieInfoStreamService.publish(movieInfo1)).log();
+    }
+
+    /**
+     * Does what @Valid would do, as a stage the StageOffloader can move off the event loop. The messages are joined
+     * like a @Valid failure, so the response stays the same in every offload mode.
+     */
+    private MovieInfo validate(MovieInfo movieInfo) {
+        var violations = validator.validate(movieInfo);
+        if (!violations.isEmpty()) {
+            throw new MovieInfoDataException(violations.stream().map(ConstraintViolation::getMessage).sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+        return movieInfo;
+    }
+
+    /**
+     * Bulk ingest for catalogue loads: takes one movie info per NDJSON line and streams back one result per line,
+     * malformed, invalid or duplicate records are reported in their result instead of failing the request.
+     * The body is read as lines, which the service parses one by one, so a bad line doesn't end the stream.
+     */
+    @PostMapping(value = "bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BulkIngestResult> bulkIngestMovieInfos(@RequestBody Flux<String> records){
+        return moviesInfoService.bulkIngest(records);
     }
 
-    @GetMapping(value = "stream",produces = MediaType.APPLICATION_NDJSON_VALUE)
-    private Flux<MovieInfo> getMovieInfoStream(){
-        return movieInfoSink.asFlux().log();
+    /**
+     * Streams NDJSON by default and server sent events when the client accepts text/event-stream.
+     * The events are already encoded, so they are written straight to the response instead of going through an encoder.
+     */
+    @GetMapping(value = "stream")
+    private Mono<Void> getMovieInfoStream(ServerHttpRequest request, ServerHttpResponse response){
+        var sse = request.getHeaders().getAccept().stream().anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype);
+        response.getHeaders().setContentType(sse ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON);
+        var frames = sse
+                ? movieInfoStreamService.sseStream(response.bufferFactory())
+                : movieInfoStreamService.ndjsonStream(response.bufferFactory());
+        return response.writeAndFlushWith(frames.map(Mono::just));
     }
 
 
+    /**
+     * Lists movie infos one keyset page at a time, ordered by id or by year (sort=year), optionally only those of one
+     * year. The response carries the token of the next page in the X-Next-Page-Token header, which is absent on the last page.
+     * The whole collection is only streamed with all=true, and only when movieInfo.pagination.allowUnpaged is set.
+     * view=summary is served by getAllMovieInfoSummaries, any other view than full is rejected.
+     */
     @GetMapping
-    public Flux<MovieInfo> getAllMovieInfos(@RequestParam(value="year",required = false) Integer year){
+    public Mono<ResponseEntity<Flux<MovieInfo>>> getAllMovieInfos(@RequestParam(value="year",required = false) Integer year,
+                                                                 @RequestParam(value="limit",required = false) Integer limit,
+                                                                 @RequestParam(value="pageToken",required = false) String pageToken,
+                                                                 @RequestParam(value="sort",defaultValue = "id") String sort,
+                                                                 @RequestParam(value="all",defaultValue = "false") boolean all,
+                                                                 @RequestParam(value="view",defaultValue = "full") String view){
+        if(!"full".equalsIgnoreCase(view)){
+            throw new InvalidPageRequestException("Unknown view " + view + ", use full or summary");
+        }
+        if(all){
+            if(!allowUnpaged){
+                return Mono.error(new InvalidPageRequestException("Unpaged listing is disabled, page through the results with limit and pageToken"));
+            }
+            log.warn("Streaming every movie info unpaged");
+            return Mono.just(ResponseEntity.ok(year == null
+                    ? moviesInfoService.getAllMovies().log()
+                    : moviesInfoService.findMovieInfoByYear(year).log()));
+        }
         if(year!=null){
             log.info("The year in query param is {}",year);
-            return moviesInfoService.findMovieInfoByYear(year).log();
         }
-        return moviesInfoService.getAllMovies().log();
+        return toPageResponse(moviesInfoService.getMovieInfoPage(year, toMovieInfoSort(sort), pageToken, toPageLimit(limit)));
     }
 
+    /**
+     * Same listing as getAllMovieInfos with view=summary: only id, name and year of each movie info are read and returned.
+     */
+    @GetMapping(params = "view=summary")
+    public Mono<ResponseEntity<Flux<MovieInfoSummary>>> getAllMovieInfoSummaries(@RequestParam(value="year",required = false) Integer year,
+                                                                                 @RequestParam(value="limit",required = false) Integer limit,
+                                                                                 @RequestParam(value="pageToken",required = false) String pageToken,
+                                                                                 @RequestParam(value="sort",defaultValue = "id") String sort,
+                                                                                 @RequestParam(value="all",defaultValue = "false") boolean all){
+        if(all){
+            if(!allowUnpaged){
+                return Mono.error(new InvalidPageRequestException("Unpaged listing is disabled, page through the results with limit and pageToken"));
+            }
+            log.warn("Streaming every movie info summary unpaged");
+            return Mono.just(ResponseEntity.ok(year == null
+                    ? moviesInfoService.getAllMovieSummaries()
+                    : moviesInfoService.findMovieInfoSummaryByYear(year)));
+        }
+        return toPageResponse(moviesInfoService.getMovieInfoSummaryPage(year, toMovieInfoSort(sort), pageToken, toPageLimit(limit)));
+    }
+
+    /**
+     * Ranked prefix search: every word of q has to start a word of the name or of a cast member, e.g. q=dark kni or
+     * q=bale. Whole name words rank above name prefixes, which rank above cast matches. Paged like the listing.
+     */
+    @GetMapping("search")
+    public Mono<ResponseEntity<Flux<MovieInfo>>> searchMovieInfos(@RequestParam("q") String q,
+                                                                 @RequestParam(value="limit",required = false) Integer limit,
+                                                                 @RequestParam(value="pageToken",required = false) String pageToken){
+        return toPageResponse(moviesInfoService.searchMovieInfos(q, pageToken, toPageLimit(limit)));
+    }
+
+    private int toPageLimit(Integer limit) {
+        var pageLimit = limit == null ? defaultPageLimit : limit;
+        if(pageLimit < 1 || pageLimit > maxPageLimit){
+            throw new InvalidPageRequestException("limit must be between 1 and " + maxPageLimit);
+        }
+        return pageLimit;
+    }
+
+    private static <T> Mono<ResponseEntity<Flux<T>>> toPageResponse(Mono<KeysetPage<T>> keysetPage) {
+        return keysetPage.map(page -> {
+            var response = ResponseEntity.ok();
+            if(page.getNextPageToken()!=null){
+                response.header(NEXT_PAGE_TOKEN_HEADER, page.getNextPageToken());
+            }
+            return response.body(Flux.fromIterable(page.getItems()));
+        });
+    }
+
+    private static MovieInfoSort toMovieInfoSort(String sort) {
+        try {
+            return MovieInfoSort.valueOf(sort.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Unknown sort " + sort + ", use id or year");
+        }
+    }
+
+    /**
+     * Looks up many movie infos with a single $in query. Ids without a document are left out of the stream,
+     * every returned document carries its own id.
+     */
+    @PostMapping(value = "batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfo> getMovieInfosByIds(@RequestBody List<String> ids){
+        log.info("Fetching a batch of {} movie infos",ids.size());
+        return moviesInfoService.getMovieInfosByIds(ids);
+    }
+
+    /**
+     * The response carries a strong ETag hashed from the serialized movie info. A GET whose If-None-Match matches it
+     * is answered with a 304 by the ResponseEntity handling, before the body is written.
+     */
     @GetMapping("/{id}")
-    private Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable String id){
+    private Mono<ResponseEntity<byte[]>> getMovieInfoById(@PathVariable String id){
         return moviesInfoService.getMovieInfoById(id)
-                .map(ResponseEntity.ok()::body)
+                .map(movieInfo -> withETag(ResponseEntity.ok(), movieInfo))
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
                 .log();
     }
@@ -58,13 +224,26 @@ public class MoviesInfoController {
      * For such cases it is preferable to use a org.springframework.http.ResponseEntity as a return type and avoid the use of @ResponseStatus altogether.
      */
     @PutMapping("/{id}")
-    private Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@PathVariable String id, @RequestBody MovieInfo updateMovieInfo){
+    private Mono<ResponseEntity<byte[]>> updateMovieInfo(@PathVariable String id, @RequestBody MovieInfo updateMovieInfo){
         return moviesInfoService.updateMovieInfo(id,updateMovieInfo)
-                .map(ResponseEntity.status(HttpStatus.OK)::body)
+                .map(movieInfo -> withETag(ResponseEntity.status(HttpStatus.OK), movieInfo))
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
                 .log();
     }
 
+    //hashed from the content rather than the version, a deleted and recreated or bulk loaded movie info starts over
+    //at the same version but must not match an ETag handed out for the previous document.
+    //the movie info is serialized once, those bytes are both hashed and written
+    private ResponseEntity<byte[]> withETag(ResponseEntity.BodyBuilder response, MovieInfo movieInfo) {
+        try {
+            var body = objectMapper.writeValueAsBytes(movieInfo);
+            var eTag = DigestUtils.md5DigestAsHex(body);
+            return response.contentType(MediaType.APPLICATION_JSON).eTag("\"" + eTag + "\"").body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize movie info " + movieInfo.getMovieId(), e);
+        }
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     private Mono<Void> deleteMovieinfo(@PathVariable String id){
@@ -1,15 +1,21 @@
 package com.reactivespring.moviesinfoservice.dao;
 
 import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.document.MovieInfoSummary;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo,String> {
+public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo,String>, MovieInfoRepositoryCustom {
 
     Flux<MovieInfo> findByYearReleased(Integer year);
 
     Mono<MovieInfo> findByName(String name);
+
+    //projections, Mongo only returns the fields of MovieInfoSummary
+    Flux<MovieInfoSummary> findSummaryByYearReleased(Integer year);
+
+    Flux<MovieInfoSummary> findSummaryBy();
 }
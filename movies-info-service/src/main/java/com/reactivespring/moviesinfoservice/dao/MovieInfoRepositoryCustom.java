@@ -0,0 +1,41 @@
+package com.reactivespring.moviesinfoservice.dao;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.reactivespring.common.paging.PageToken;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.document.MovieInfoSummary;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+public interface MovieInfoRepositoryCustom {
+
+    /**
+     * Reads up to limit movie infos in the given order, starting right after the document the token points at.
+     * With a year, only the movie infos released that year are read.
+     */
+    Flux<MovieInfo> findPage(MovieInfoSort sort, @Nullable Integer year, @Nullable PageToken after, int limit);
+
+    /**
+     * Same page as findPage, projected to the summary fields.
+     */
+    Flux<MovieInfoSummary> findSummaryPage(MovieInfoSort sort, @Nullable Integer year, @Nullable PageToken after, int limit);
+
+    PageToken pageTokenOf(MovieInfoSort sort, MovieInfo movieInfo);
+
+    PageToken pageTokenOf(MovieInfoSort sort, MovieInfoSummary movieInfoSummary);
+
+    /**
+     * Ranked prefix search: every term has to be a prefix of a word of the name or of a cast member. Only the first
+     * maxCandidates matches in index order are ranked, so a page never scores more than that many documents. They are
+     * ordered by score, then by id, and read as a keyset page starting right after the hit the token points at.
+     */
+    Flux<MovieInfoSearchHit> search(List<String> terms, @Nullable PageToken after, int limit, int maxCandidates);
+
+    /**
+     * Inserts the movie infos with one unordered bulk write, a failing document doesn't stop the others.
+     * Emits the write error of every document that wasn't inserted, its index is the position in movieInfos.
+     */
+    Flux<BulkWriteError> insertUnordered(List<MovieInfo> movieInfos);
+}
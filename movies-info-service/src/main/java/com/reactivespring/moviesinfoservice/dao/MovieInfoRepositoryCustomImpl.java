@@ -0,0 +1,148 @@
+package com.reactivespring.moviesinfoservice.dao;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.reactivespring.common.paging.PageToken;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.document.MovieInfoSummary;
+import com.reactivespring.moviesinfoservice.search.SearchTokenizer;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static com.reactivespring.common.mongo.BulkWrites.executeUnordered;
+import static com.reactivespring.common.mongo.KeysetCriteria.idAfter;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Keyset pagination: every page is a range query on the sort key and _id instead of a skip, so a deep page costs
+ * the same as the first one and no cursor is held between requests.
+ */
+@RequiredArgsConstructor
+public class MovieInfoRepositoryCustomImpl implements MovieInfoRepositoryCustom {
+
+    private static final String ID = "_id";
+    private static final String YEAR = "yearReleased";
+    private static final String SEARCH_TOKENS = "searchTokens";
+    private static final String SCORE = "score";
+    //per term: a whole word of the name, the start of a word of the name, or a cast member
+    private static final int EXACT_NAME_SCORE = 3;
+    private static final int NAME_PREFIX_SCORE = 2;
+    private static final int CAST_SCORE = 1;
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Flux<MovieInfo> findPage(MovieInfoSort sort, @Nullable Integer year, @Nullable PageToken after, int limit) {
+        return reactiveMongoTemplate.find(pageQuery(sort, year, after, limit), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfoSummary> findSummaryPage(MovieInfoSort sort, @Nullable Integer year, @Nullable PageToken after, int limit) {
+        //as() with a DTO restricts the returned fields to the DTO properties
+        return reactiveMongoTemplate.query(MovieInfo.class)
+                .as(MovieInfoSummary.class)
+                .matching(pageQuery(sort, year, after, limit))
+                .all();
+    }
+
+    //the yearReleased_id index serves both orders, with or without a year
+    static Query pageQuery(MovieInfoSort sort, @Nullable Integer year, @Nullable PageToken after, int limit) {
+        var query = new Query().limit(limit);
+        if (year != null) {
+            query.addCriteria(where(YEAR).is(year));
+        }
+        if (sort == MovieInfoSort.YEAR) {
+            query.with(Sort.by(YEAR, ID));
+            if (after != null) {
+                var afterYear = Integer.parseInt(after.getValue());
+                query.addCriteria(new Criteria().orOperator(
+                        where(YEAR).gt(afterYear),
+                        new Criteria().andOperator(where(YEAR).is(afterYear), idAfter(after.getId()))));
+            }
+        } else {
+            query.with(Sort.by(ID));
+            if (after != null) {
+                query.addCriteria(idAfter(after.getId()));
+            }
+        }
+        return query;
+    }
+
+    @Override
+    public Flux<MovieInfoSearchHit> search(List<String> terms, @Nullable PageToken after, int limit, int maxCandidates) {
+        var operations = new ArrayList<AggregationOperation>();
+        operations.add(Aggregation.match(searchCriteria(terms)));
+        //the limit right after the index driven match stops the scan, only the candidates left are scored and sorted
+        operations.add(Aggregation.limit(maxCandidates));
+        operations.add(context -> new Document("$addFields", new Document(SCORE, scoreExpression(terms))));
+        if (after != null) {
+            var score = Integer.parseInt(after.getValue());
+            operations.add(Aggregation.match(new Criteria().orOperator(
+                    where(SCORE).lt(score),
+                    new Criteria().andOperator(where(SCORE).is(score), idAfter(after.getId())))));
+        }
+        operations.add(Aggregation.sort(Sort.by(Sort.Order.desc(SCORE), Sort.Order.asc(ID))));
+        operations.add(Aggregation.limit(limit));
+        var aggregation = Aggregation.newAggregation(operations)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        return reactiveMongoTemplate.aggregate(aggregation, reactiveMongoTemplate.getCollectionName(MovieInfo.class), Document.class)
+                .map(document -> new MovieInfoSearchHit(reactiveMongoTemplate.getConverter().read(MovieInfo.class, document),
+                        document.getInteger(SCORE)));
+    }
+
+    //each term is an anchored prefix on the multikey searchTokens index, which keeps the candidates small
+    static Criteria searchCriteria(List<String> terms) {
+        var termCriteria = terms.stream()
+                .map(term -> where(SEARCH_TOKENS).in(
+                        Pattern.compile("^" + SearchTokenizer.NAME_PREFIX + term),
+                        Pattern.compile("^" + SearchTokenizer.CAST_PREFIX + term)))
+                .toList();
+        return new Criteria().andOperator(termCriteria);
+    }
+
+    private static Document scoreExpression(List<String> terms) {
+        var termScores = terms.stream()
+                .map(term -> new Document("$cond", List.of(
+                        new Document("$in", List.of(SearchTokenizer.NAME_PREFIX + term, "$" + SEARCH_TOKENS)),
+                        EXACT_NAME_SCORE,
+                        new Document("$cond", List.of(
+                                new Document("$anyElementTrue", List.of(new Document("$map", new Document("input", "$" + SEARCH_TOKENS)
+                                        .append("in", new Document("$regexMatch", new Document("input", "$$this")
+                                                .append("regex", "^" + SearchTokenizer.NAME_PREFIX + term)))))),
+                                NAME_PREFIX_SCORE,
+                                CAST_SCORE)))))
+                .toList();
+        return new Document("$add", termScores);
+    }
+
+    @Override
+    public Flux<BulkWriteError> insertUnordered(List<MovieInfo> movieInfos) {
+        //bulk inserts don't initialize the version like insert() does
+        movieInfos.forEach(movieInfo -> movieInfo.setVersion(0L));
+        return executeUnordered(reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MovieInfo.class)
+                .insert(movieInfos));
+    }
+
+    @Override
+    public PageToken pageTokenOf(MovieInfoSort sort, MovieInfo movieInfo) {
+        return new PageToken(sort.name(), sort.keyOf(movieInfo), movieInfo.getMovieId());
+    }
+
+    @Override
+    public PageToken pageTokenOf(MovieInfoSort sort, MovieInfoSummary movieInfoSummary) {
+        return new PageToken(sort.name(), sort.keyOf(movieInfoSummary), movieInfoSummary.getMovieId());
+    }
+}
@@ -0,0 +1,16 @@
+package com.reactivespring.moviesinfoservice.dao;
+
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A movie info matching a search with its relevance score, higher scores rank first.
+ */
+@Getter
+@AllArgsConstructor
+public class MovieInfoSearchHit {
+
+    private final MovieInfo movieInfo;
+    private final int score;
+}
@@ -0,0 +1,19 @@
+package com.reactivespring.moviesinfoservice.dao;
+
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.document.MovieInfoSummary;
+
+/**
+ * Orders a paged listing can use. _id always breaks ties, so every order is total and keysets never skip documents.
+ */
+public enum MovieInfoSort {
+    ID, YEAR;
+
+    String keyOf(MovieInfo movieInfo) {
+        return this == YEAR ? String.valueOf(movieInfo.getYearReleased()) : null;
+    }
+
+    String keyOf(MovieInfoSummary movieInfoSummary) {
+        return this == YEAR ? String.valueOf(movieInfoSummary.getYearReleased()) : null;
+    }
+}
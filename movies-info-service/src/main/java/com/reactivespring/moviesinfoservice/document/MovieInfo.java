@@ -1,12 +1,15 @@
 package com.reactivespring.moviesinfoservice.document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -15,14 +18,16 @@ import java.util.List;
 
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 @Document
+//serves findByYearReleased and the keyset pages sorted by year, which break ties on _id
+@CompoundIndex(name = "yearReleased_id", def = "{'yearReleased': 1, '_id': 1}")
 public class MovieInfo {
 
     @Id
     private String movieId;
 
     @NotBlank(message = "movieInfo.name should be present")
+    @Indexed(unique = true)
     private String name;
 
     @NotNull(message = "movieInfo.yearReleased shouldnt be null")
@@ -32,4 +37,21 @@ public class MovieInfo {
     private List<@NotBlank(message = "movie.cast cannot be blank") String> cast;
 
     private LocalDate date_released;
+
+    //prefix search index over name and cast, maintained on every write by MovieInfoSearchTokensCallback
+    @JsonIgnore
+    @Indexed
+    private List<String> searchTokens;
+
+    //bumped on every write, an update of a stale copy fails instead of overwriting. The ETag is hashed from the content
+    @Version
+    private Long version;
+
+    public MovieInfo(String movieId, String name, int yearReleased, List<String> cast, LocalDate date_released) {
+        this.movieId = movieId;
+        this.name = name;
+        this.yearReleased = yearReleased;
+        this.cast = cast;
+        this.date_released = date_released;
+    }
 }
@@ -0,0 +1,23 @@
+package com.reactivespring.moviesinfoservice.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+/**
+ * Catalogue view of a MovieInfo. Used as a projection, so only these fields are read from Mongo and serialized,
+ * the cast list and release date stay in the database.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoSummary {
+
+    @Id
+    private String movieId;
+
+    private String name;
+
+    private int yearReleased;
+}
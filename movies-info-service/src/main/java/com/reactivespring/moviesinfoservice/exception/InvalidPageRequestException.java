@@ -0,0 +1,7 @@
+package com.reactivespring.moviesinfoservice.exception;
+
+public class InvalidPageRequestException extends RuntimeException {
+    public InvalidPageRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.reactivespring.moviesinfoservice.exception;
+
+public class InvalidSearchRequestException extends RuntimeException {
+    public InvalidSearchRequestException(String message) {
+        super(message);
+    }
+}
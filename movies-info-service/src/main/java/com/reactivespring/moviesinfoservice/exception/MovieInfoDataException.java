@@ -0,0 +1,7 @@
+package com.reactivespring.moviesinfoservice.exception;
+
+public class MovieInfoDataException extends RuntimeException {
+    public MovieInfoDataException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,12 @@
 package com.reactivespring.moviesinfoservice.exceptionHandler;
 
+import com.reactivespring.moviesinfoservice.exception.InvalidPageRequestException;
+import com.reactivespring.moviesinfoservice.exception.InvalidSearchRequestException;
+import com.reactivespring.moviesinfoservice.exception.MovieInfoDataException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -23,4 +28,37 @@ public class GlobalExceptionHandler {
         log.error("\nActual Error is {}",defaultErrorMessage);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(defaultErrorMessage);
     }
+
+    //same body as a @Valid failure, the add endpoint validates in an offloadable stage instead
+    @ExceptionHandler(MovieInfoDataException.class)
+    public ResponseEntity<String> handleMovieInfoDataError(MovieInfoDataException ex){
+        log.error("Invalid movie info : {}",ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<String> handleInvalidPageRequest(InvalidPageRequestException ex){
+        log.error("Invalid page request : {}",ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidSearchRequestException.class)
+    public ResponseEntity<String> handleInvalidSearchRequest(InvalidSearchRequestException ex){
+        log.error("Invalid search request : {}",ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    //the unique index on name rejects a second movie info with the same name, the _id index one with the same id
+    @ExceptionHandler(DuplicateKeyException.class)
+    public ResponseEntity<String> handleDuplicateKey(DuplicateKeyException ex){
+        log.error("Duplicate key : {}",ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("A movie info with the same name or id already exists");
+    }
+
+    //another update saved the movie info between the read and the write of this one
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLockingFailure(OptimisticLockingFailureException ex){
+        log.error("Concurrent update : {}",ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("The movie info was updated concurrently, retry the update");
+    }
 }
@@ -0,0 +1,23 @@
+package com.reactivespring.moviesinfoservice.search;
+
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import org.reactivestreams.Publisher;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeConvertCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Recomputes the search tokens of a movie info whenever a whole document is saved or inserted through the template,
+ * repositories or bulk operations, so they can't go stale after a rename or a cast change. Update based writes
+ * (updateFirst, upsert, findAndModify) never convert a MovieInfo and skip this callback, which is why the service
+ * only ever saves whole movie infos. An update of the name or cast has to set the tokens itself.
+ */
+@Component
+public class MovieInfoSearchTokensCallback implements ReactiveBeforeConvertCallback<MovieInfo> {
+
+    @Override
+    public Publisher<MovieInfo> onBeforeConvert(MovieInfo movieInfo, String collection) {
+        movieInfo.setSearchTokens(SearchTokenizer.searchTokensOf(movieInfo));
+        return Mono.just(movieInfo);
+    }
+}
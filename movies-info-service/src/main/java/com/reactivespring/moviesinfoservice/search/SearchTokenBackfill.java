@@ -0,0 +1,48 @@
+package com.reactivespring.moviesinfoservice.search;
+
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Adds search tokens to movie infos written before search existed. Runs in the background once the application is
+ * ready and only sets the tokens of documents still lacking them, so it never overwrites a concurrent write.
+ */
+@Component
+@ConditionalOnProperty(name = "movieInfo.search.backfillOnStartup", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class SearchTokenBackfill {
+
+    private static final String SEARCH_TOKENS = "searchTokens";
+    private static final int CONCURRENCY = 8;
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public SearchTokenBackfill(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        reactiveMongoTemplate.find(Query.query(where(SEARCH_TOKENS).exists(false)), MovieInfo.class)
+                .flatMap(movieInfo -> reactiveMongoTemplate.updateFirst(
+                        Query.query(where("_id").is(movieInfo.getMovieId()).and(SEARCH_TOKENS).exists(false)),
+                        Update.update(SEARCH_TOKENS, SearchTokenizer.searchTokensOf(movieInfo)),
+                        MovieInfo.class), CONCURRENCY)
+                .filter(updateResult -> updateResult.getModifiedCount() > 0)
+                .count()
+                .subscribe(count -> {
+                    if (count > 0) {
+                        log.info("Added search tokens to {} movie infos", count);
+                    }
+                }, ex -> log.error("Search token backfill failed : {}", ex.getMessage()));
+    }
+}
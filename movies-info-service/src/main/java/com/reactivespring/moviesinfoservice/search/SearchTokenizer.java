@@ -0,0 +1,49 @@
+package com.reactivespring.moviesinfoservice.search;
+
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits names and cast members into lowercase words without accents, so "Amélie" is found with "ame".
+ * The stored tokens carry the field they come from, "n:" for the name and "c:" for the cast, which lets a single
+ * multikey index serve prefix lookups on both fields and lets the ranking tell name matches from cast matches.
+ * Terms only consist of letters and digits, so they can be put into a regex without escaping.
+ */
+public final class SearchTokenizer {
+
+    public static final String NAME_PREFIX = "n:";
+    public static final String CAST_PREFIX = "c:";
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchTokenizer() {
+    }
+
+    public static List<String> terms(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        var normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATORS.split(normalized))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    public static List<String> searchTokensOf(MovieInfo movieInfo) {
+        var tokens = new LinkedHashSet<String>();
+        terms(movieInfo.getName()).forEach(term -> tokens.add(NAME_PREFIX + term));
+        if (movieInfo.getCast() != null) {
+            movieInfo.getCast().forEach(castMember -> terms(castMember).forEach(term -> tokens.add(CAST_PREFIX + term)));
+        }
+        return List.copyOf(tokens);
+    }
+}
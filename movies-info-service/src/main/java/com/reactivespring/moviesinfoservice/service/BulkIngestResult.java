@@ -0,0 +1,23 @@
+package com.reactivespring.moviesinfoservice.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one record of a bulk ingest, index is the position of the record in the request body.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkIngestResult {
+
+    public enum Status {
+        CREATED, INVALID, DUPLICATE, FAILED
+    }
+
+    private long index;
+    private String movieId;
+    private Status status;
+    private String message;
+}
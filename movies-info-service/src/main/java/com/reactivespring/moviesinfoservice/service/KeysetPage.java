@@ -0,0 +1,17 @@
+package com.reactivespring.moviesinfoservice.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of a keyset paginated listing, nextPageToken is null on the last page.
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetPage<T> {
+
+    private final List<T> items;
+    private final String nextPageToken;
+}
@@ -0,0 +1,90 @@
+package com.reactivespring.moviesinfoservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.common.stream.EncodedEvent;
+import com.reactivespring.common.stream.EventFanOutHub;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+/**
+ * Publishes newly added movie infos to the stream subscribers.
+ * Each movie info is serialized once when it is published, the sink and every subscriber share the encoded bytes.
+ * Only a bounded history is replayed to late subscribers: the last replaySize events, or in TIME_WINDOW mode the
+ * events younger than replayWindow (still capped at replaySize), so heap usage doesn't grow with uptime.
+ * Buffering, slow consumers and heartbeats are handled per subscriber by the EventFanOutHub.
+ */
+@Service
+@Slf4j
+public class MovieInfoStreamService {
+
+    public enum ReplayMode {
+        LAST_N, TIME_WINDOW
+    }
+
+    private static final Duration EMIT_RETRY_DURATION = Duration.ofMillis(100);
+    private static final String EVENT_NAME = "movieInfo";
+
+    private final Sinks.Many<EncodedEvent> movieInfoSink;
+    private final EventFanOutHub movieInfoEventHub;
+    private final ObjectMapper objectMapper;
+
+    private final Counter emitFailed;
+
+    public MovieInfoStreamService(@Value("${movieInfo.stream.replayMode:LAST_N}") ReplayMode replayMode,
+                                  @Value("${movieInfo.stream.replaySize:100}") int replaySize,
+                                  @Value("${movieInfo.stream.replayWindow:5m}") Duration replayWindow,
+                                  @Value("${movieInfo.stream.subscriberBufferSize:256}") int subscriberBufferSize,
+                                  @Value("${movieInfo.stream.overflowStrategy:DROP_OLDEST}") EventFanOutHub.OverflowStrategy overflowStrategy,
+                                  @Value("${movieInfo.stream.heartbeatInterval:15s}") Duration heartbeatInterval,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry) {
+        this.movieInfoSink = replayMode == ReplayMode.TIME_WINDOW
+                ? Sinks.many().replay().limit(replaySize, replayWindow)
+                : Sinks.many().replay().limit(replaySize);
+        this.movieInfoEventHub = new EventFanOutHub("movieinfo.stream", subscriberBufferSize, overflowStrategy,
+                heartbeatInterval, meterRegistry);
+        this.objectMapper = objectMapper;
+        this.emitFailed = Counter.builder("movieinfo.stream.emit.failed")
+                .description("Events that couldn't be published to the stream")
+                .register(meterRegistry);
+        log.info("Movie info stream replayMode : {}, replaySize : {}, replayWindow : {}, subscriberBufferSize : {}, overflowStrategy : {}, heartbeatInterval : {}",
+                replayMode, replaySize, replayWindow, subscriberBufferSize, overflowStrategy, heartbeatInterval);
+    }
+
+    public void publish(MovieInfo movieInfo) {
+        var event = EncodedEvent.of(objectMapper, movieInfo.getMovieId(), EVENT_NAME, movieInfo);
+        try {
+            //several requests can add movie infos at once, busy looping rides out the short FAIL_NON_SERIALIZED windows
+            movieInfoSink.emitNext(event, Sinks.EmitFailureHandler.busyLooping(EMIT_RETRY_DURATION));
+        } catch (Sinks.EmissionException ex) {
+            log.warn("Movie info {} not published to the stream : {}", movieInfo.getMovieId(), ex.getReason());
+            emitFailed.increment();
+        }
+    }
+
+    public Flux<EncodedEvent> stream() {
+        return movieInfoEventHub.subscribe(movieInfoSink.asFlux());
+    }
+
+    public Flux<DataBuffer> ndjsonStream(DataBufferFactory bufferFactory) {
+        return movieInfoEventHub.toNdjson(stream(), bufferFactory);
+    }
+
+    public Flux<DataBuffer> sseStream(DataBufferFactory bufferFactory) {
+        return movieInfoEventHub.toSse(stream(), bufferFactory);
+    }
+
+    public int subscriberCount() {
+        return movieInfoEventHub.subscriberCount();
+    }
+}
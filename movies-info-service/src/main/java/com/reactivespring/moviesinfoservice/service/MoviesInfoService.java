@@ -1,30 +1,255 @@
 package com.reactivespring.moviesinfoservice.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.common.offload.StageOffloader;
+import com.reactivespring.common.paging.PageToken;
 import com.reactivespring.moviesinfoservice.dao.MovieInfoRepository;
+import com.reactivespring.moviesinfoservice.dao.MovieInfoSearchHit;
+import com.reactivespring.moviesinfoservice.dao.MovieInfoSort;
 import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.document.MovieInfoSummary;
+import com.reactivespring.moviesinfoservice.exception.InvalidPageRequestException;
+import com.reactivespring.moviesinfoservice.exception.InvalidSearchRequestException;
+import com.reactivespring.moviesinfoservice.search.SearchTokenizer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 @Service
+@Slf4j
 public class MoviesInfoService {
 
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+    private static final int MAX_SEARCH_TERMS = 8;
+    private static final String SEARCH_SORT_PREFIX = "SEARCH:";
+
     @Autowired
     private MovieInfoRepository movieInfoRepository;
 
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private StageOffloader stageOffloader;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${movieInfo.bulk.batchSize:1000}")
+    private int bulkBatchSize;
+
+    @Value("${movieInfo.bulk.concurrency:4}")
+    private int bulkConcurrency;
+
+    @Value("${movieInfo.search.minTermLength:2}")
+    private int searchMinTermLength;
+
+    @Value("${movieInfo.search.maxCandidates:1000}")
+    private int searchMaxCandidates;
+
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo){
+        //always inserted at version 0, whatever version the client sent
+        movieInfo.setVersion(null);
         return movieInfoRepository.save(movieInfo);
     }
 
+    /**
+     * Ingests a stream of NDJSON records, one movie info per line, in batches of bulkBatchSize. Each batch is parsed
+     * and validated in one bulk stage, which the StageOffloader can move off the event loop, and written with one
+     * unordered bulk insert, and up to bulkConcurrency batches are in flight. The body is only read as fast as the
+     * batches are written, and one result per record is emitted in request order, a malformed line is reported as
+     * an invalid record. Blank lines aren't records.
+     * Bulk loads are catalogue syncs, they aren't published to the movie info stream.
+     */
+    public Flux<BulkIngestResult> bulkIngest(Flux<String> records) {
+        return records.filter(record -> !record.isBlank())
+                .index()
+                .buffer(bulkBatchSize)
+                .flatMapSequential(this::ingestBatch, bulkConcurrency);
+    }
+
+    private Flux<BulkIngestResult> ingestBatch(List<Tuple2<Long, String>> batch) {
+        var results = new ArrayList<BulkIngestResult>(batch.size());
+        var valid = new ArrayList<MovieInfo>(batch.size());
+        var validResults = new ArrayList<BulkIngestResult>(batch.size());
+        return stageOffloader.run(StageOffloader.BULK, () -> validateBatch(batch, results, valid, validResults))
+                .flatMapMany(validCount -> validCount == 0
+                        ? Flux.fromIterable(results)
+                        : insertBatch(results, valid, validResults));
+    }
+
+    //sorts the batch into invalid records and valid ones with their id, returns the number of valid records
+    private int validateBatch(List<Tuple2<Long, String>> batch, List<BulkIngestResult> results,
+                              List<MovieInfo> valid, List<BulkIngestResult> validResults) {
+        for (var record : batch) {
+            MovieInfo movieInfo;
+            try {
+                movieInfo = objectMapper.readValue(record.getT2(), MovieInfo.class);
+            } catch (JsonProcessingException e) {
+                results.add(new BulkIngestResult(record.getT1(), null, BulkIngestResult.Status.INVALID,
+                        "Malformed record : " + e.getOriginalMessage()));
+                continue;
+            }
+            var violations = validator.validate(movieInfo);
+            if (!violations.isEmpty()) {
+                results.add(new BulkIngestResult(record.getT1(), movieInfo.getMovieId(), BulkIngestResult.Status.INVALID,
+                        violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", "))));
+                continue;
+            }
+            //ids are assigned up front to report them, a valid ObjectId string is still stored as an ObjectId
+            if (movieInfo.getMovieId() == null) {
+                movieInfo.setMovieId(new ObjectId().toHexString());
+            }
+            var result = new BulkIngestResult(record.getT1(), movieInfo.getMovieId(), BulkIngestResult.Status.CREATED, null);
+            results.add(result);
+            valid.add(movieInfo);
+            validResults.add(result);
+        }
+        return valid.size();
+    }
+
+    private Flux<BulkIngestResult> insertBatch(List<BulkIngestResult> results, List<MovieInfo> valid,
+                                               List<BulkIngestResult> validResults) {
+        return movieInfoRepository.insertUnordered(valid)
+                .doOnNext(writeError -> {
+                    var result = validResults.get(writeError.getIndex());
+                    result.setStatus(writeError.getCode() == DUPLICATE_KEY_ERROR
+                            ? BulkIngestResult.Status.DUPLICATE : BulkIngestResult.Status.FAILED);
+                    result.setMessage(writeError.getMessage());
+                })
+                .then()
+                .onErrorResume(ex -> {
+                    log.error("Bulk insert of {} movie infos failed : {}", valid.size(), ex.getMessage());
+                    validResults.forEach(result -> {
+                        result.setStatus(BulkIngestResult.Status.FAILED);
+                        result.setMessage(ex.getMessage());
+                    });
+                    return Mono.empty();
+                })
+                .thenMany(Flux.fromIterable(results));
+    }
+
     public Flux<MovieInfo> getAllMovies() {
         return movieInfoRepository.findAll();
     }
 
+    public Flux<MovieInfoSummary> getAllMovieSummaries() {
+        return movieInfoRepository.findSummaryBy();
+    }
+
+    /**
+     * One page of the movie infos, of those released in year when it isn't null.
+     */
+    public Mono<KeysetPage<MovieInfo>> getMovieInfoPage(Integer year, MovieInfoSort sort, String pageToken, int limit) {
+        return page(year, sort, pageToken, limit, movieInfoRepository::findPage, movieInfoRepository::pageTokenOf);
+    }
+
+    public Mono<KeysetPage<MovieInfoSummary>> getMovieInfoSummaryPage(Integer year, MovieInfoSort sort, String pageToken, int limit) {
+        return page(year, sort, pageToken, limit, movieInfoRepository::findSummaryPage, movieInfoRepository::pageTokenOf);
+    }
+
+    /**
+     * Reads one keyset page. One document more than the limit is fetched to know whether another page follows,
+     * the next page token then points at the last document of this page.
+     */
+    private <T> Mono<KeysetPage<T>> page(Integer year, MovieInfoSort sort, String pageToken, int limit,
+                                         PageReader<T> pageReader, BiFunction<MovieInfoSort, T, PageToken> pageTokenOf) {
+        var after = pageToken == null ? null : decodePageToken(sort, pageToken);
+        return pageReader.read(sort, year, after, limit + 1)
+                .collectList()
+                .map(items -> {
+                    if (items.size() <= limit) {
+                        return new KeysetPage<>(items, null);
+                    }
+                    var page = items.subList(0, limit);
+                    var nextPageToken = pageTokenOf.apply(sort, page.get(limit - 1)).encode();
+                    return new KeysetPage<>(page, nextPageToken);
+                });
+    }
+
+    @FunctionalInterface
+    private interface PageReader<T> {
+        Flux<T> read(MovieInfoSort sort, Integer year, PageToken after, int limit);
+    }
+
+    /**
+     * Ranked prefix search over names and cast, one keyset page at a time. The page token is bound to the search
+     * terms, so it can't be replayed against another query. Words shorter than searchMinTermLength are ignored, a one
+     * letter prefix matches most of the catalogue, and a query made of such words only is rejected.
+     */
+    public Mono<KeysetPage<MovieInfo>> searchMovieInfos(String q, String pageToken, int limit) {
+        var terms = SearchTokenizer.terms(q).stream().filter(term -> term.length() >= searchMinTermLength).toList();
+        if (terms.isEmpty()) {
+            throw new InvalidSearchRequestException("q must contain a word of at least " + searchMinTermLength + " letters or digits");
+        }
+        if (terms.size() > MAX_SEARCH_TERMS) {
+            throw new InvalidSearchRequestException("q must not contain more than " + MAX_SEARCH_TERMS + " words");
+        }
+        var searchSort = SEARCH_SORT_PREFIX + String.join(" ", terms);
+        var after = pageToken == null ? null : decodeSearchPageToken(searchSort, pageToken);
+        return movieInfoRepository.search(terms, after, limit + 1, searchMaxCandidates)
+                .collectList()
+                .map(hits -> {
+                    var movieInfos = hits.stream().limit(limit).map(MovieInfoSearchHit::getMovieInfo).toList();
+                    if (hits.size() <= limit) {
+                        return new KeysetPage<>(movieInfos, null);
+                    }
+                    var last = hits.get(limit - 1);
+                    var nextPageToken = new PageToken(searchSort, String.valueOf(last.getScore()), last.getMovieInfo().getMovieId());
+                    return new KeysetPage<>(movieInfos, nextPageToken.encode());
+                });
+    }
+
+    private static PageToken decodeSearchPageToken(String searchSort, String pageToken) {
+        PageToken after;
+        try {
+            after = PageToken.decode(pageToken);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Invalid page token : " + pageToken);
+        }
+        if (!searchSort.equals(after.getSort()) || after.getValue() == null || !after.getValue().matches("\\d{1,9}")) {
+            throw new InvalidPageRequestException("The page token wasn't issued for this search");
+        }
+        return after;
+    }
+
+    private static PageToken decodePageToken(MovieInfoSort sort, String pageToken) {
+        PageToken after;
+        try {
+            after = PageToken.decode(pageToken);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Invalid page token : " + pageToken);
+        }
+        if (!sort.name().equals(after.getSort())) {
+            throw new InvalidPageRequestException("The page token was issued for sort " + after.getSort() + " but sort " + sort + " was requested");
+        }
+        if (sort == MovieInfoSort.YEAR && (after.getValue() == null || !after.getValue().matches("-?\\d{1,9}"))) {
+            throw new InvalidPageRequestException("Invalid page token : " + pageToken);
+        }
+        return after;
+    }
+
     public Mono<MovieInfo> getMovieInfoById(String id) {
         return movieInfoRepository.findById(id);
     }
 
+    public Flux<MovieInfo> getMovieInfosByIds(List<String> ids) {
+        return movieInfoRepository.findAllById(ids);
+    }
+
     public Mono<MovieInfo> updateMovieInfo(String id, MovieInfo updateMovieInfo) {
         return movieInfoRepository.findById(id)
                 .flatMap(movieInfo -> {
@@ -44,6 +269,10 @@ public class MoviesInfoService {
         return movieInfoRepository.findByYearReleased(year);
     }
 
+    public Flux<MovieInfoSummary> findMovieInfoSummaryByYear(Integer year){
+        return movieInfoRepository.findSummaryByYearReleased(year);
+    }
+
     public Mono<MovieInfo> findMovieInfoByName(String name){
         return movieInfoRepository.findByName(name);
     }
@@ -0,0 +1,109 @@
+package com.reactivespring.moviesinfoservice.controller;
+
+import com.reactivespring.moviesinfoservice.MoviesInfoServiceApplication;
+import com.reactivespring.moviesinfoservice.dao.MovieInfoRepository;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts the service twice, once with every meter and observation disabled and once with the default metrics setup,
+ * and compares the throughput of the same paged listing on both. The runs alternate between the two instances and the
+ * best run of each is kept, so a slow moment of the machine doesn't count as metrics overhead.
+ * The overhead is reported, not asserted: a budget of a few percent is within the run to run noise of a shared
+ * machine. Run with ./gradlew benchmarkTest, it is excluded from the regular test task.
+ */
+@Tag("benchmark")
+@Slf4j
+class MetricsOverheadBenchmarkTest {
+
+    private static final int MOVIE_COUNT = 500;
+    private static final int REQUESTS = 20_000;
+    private static final int CONCURRENCY = 64;
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 3;
+    private static final String MOVIE_INFO_URL = "/v1/movieInfos?limit=50";
+
+    private ConfigurableApplicationContext withoutMetrics;
+    private ConfigurableApplicationContext withMetrics;
+
+    @BeforeEach
+    void setUp() {
+        withoutMetrics = start("management.metrics.enable.all=false", "management.observations.enable.all=false");
+        withMetrics = start();
+        withMetrics.getBean(MovieInfoRepository.class)
+                .saveAll(Flux.range(0, MOVIE_COUNT)
+                        .map(i -> new MovieInfo(null, "Movie " + i, 1950 + i % 75, List.of("Christian Bale"), LocalDate.parse("2005-06-15"))))
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        withMetrics.getBean(MovieInfoRepository.class).deleteAll().block();
+        withMetrics.close();
+        withoutMetrics.close();
+    }
+
+    @Test
+    void metrics_overhead(TestReporter testReporter) {
+        var withoutMetricsClient = client(withoutMetrics);
+        var withMetricsClient = client(withMetrics);
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            requestsPerSecond(withoutMetricsClient);
+            requestsPerSecond(withMetricsClient);
+        }
+        var bestWithoutMetrics = 0.0;
+        var bestWithMetrics = 0.0;
+        for (int i = 0; i < RUNS; i++) {
+            bestWithoutMetrics = Math.max(bestWithoutMetrics, requestsPerSecond(withoutMetricsClient));
+            bestWithMetrics = Math.max(bestWithMetrics, requestsPerSecond(withMetricsClient));
+        }
+
+        var overheadPercent = (bestWithoutMetrics - bestWithMetrics) / bestWithoutMetrics * 100;
+        log.info("Throughput without metrics : {} req/s, with metrics : {} req/s, overhead : {}%",
+                Math.round(bestWithoutMetrics), Math.round(bestWithMetrics), String.format("%.2f", overheadPercent));
+        //published as report entries as well, for the launchers and CI reporters that collect them
+        testReporter.publishEntry(Map.of(
+                "requestsPerSecondWithoutMetrics", String.valueOf(Math.round(bestWithoutMetrics)),
+                "requestsPerSecondWithMetrics", String.valueOf(Math.round(bestWithMetrics)),
+                "overheadPercent", String.format("%.2f", overheadPercent)));
+        assertThat(bestWithMetrics).isPositive();
+    }
+
+    private static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(MoviesInfoServiceApplication.class)
+                .profiles("test")
+                .properties("server.port=0", "management.server.port=0")
+                .properties(properties)
+                .run();
+    }
+
+    private static WebClient client(ConfigurableApplicationContext context) {
+        var port = context.getEnvironment().getProperty("local.server.port");
+        return WebClient.builder().baseUrl("http://localhost:" + port)
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(1024 * 1024))
+                .build();
+    }
+
+    private static double requestsPerSecond(WebClient client) {
+        var start = System.nanoTime();
+        Flux.range(0, REQUESTS)
+                .flatMap(i -> client.get().uri(MOVIE_INFO_URL).retrieve().toBodilessEntity(), CONCURRENCY)
+                .blockLast();
+        return REQUESTS / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+}
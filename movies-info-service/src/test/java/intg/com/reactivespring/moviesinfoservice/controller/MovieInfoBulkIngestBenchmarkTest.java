@@ -0,0 +1,136 @@
+package com.reactivespring.moviesinfoservice.controller;
+
+import com.reactivespring.moviesinfoservice.MoviesInfoServiceApplication;
+import com.reactivespring.moviesinfoservice.dao.MovieInfoRepository;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.service.BulkIngestResult;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Loads the same number of movie infos through three paths, with the same number of writes in flight on each:
+ * POST /add with one request per record, the NDJSON bulk endpoint with batches of one record, and the bulk endpoint
+ * with its regular batches. The first two only differ by the per request cost, the last two only by the batching.
+ * Every path is warmed up first, and the collection is emptied between runs so they all insert into the same state.
+ * The floors are well below the expected speedups, they only catch a bulk path that stopped batching.
+ * Run with ./gradlew benchmarkTest, it is excluded from the regular test task.
+ */
+@Tag("benchmark")
+@Slf4j
+class MovieInfoBulkIngestBenchmarkTest {
+
+    private static final int RECORDS = 20_000;
+    private static final int WARMUP_RECORDS = 2_000;
+    private static final int BATCH_SIZE = 1_000;
+    //the writes in flight of every path, the bulk endpoint's movieInfo.bulk.concurrency
+    private static final int CONCURRENCY = 4;
+    private static final double MIN_SPEEDUP_OVER_SINGLE = 5.0;
+    private static final double MIN_SPEEDUP_OF_BATCHING = 3.0;
+    private static final String MOVIE_INFO_ADD_URL = "/v1/movieInfos/add";
+    private static final String MOVIE_INFO_BULK_URL = "/v1/movieInfos/bulk";
+
+    private ConfigurableApplicationContext batched;
+    private ConfigurableApplicationContext unbatched;
+    private int run;
+
+    @BeforeEach
+    void setUp() {
+        batched = start(BATCH_SIZE);
+        unbatched = start(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batched.getBean(MovieInfoRepository.class).deleteAll().block();
+        batched.close();
+        unbatched.close();
+    }
+
+    @Test
+    void single_vs_bulk_ingest() {
+        var batchedClient = client(batched);
+        var unbatchedClient = client(unbatched);
+        Function<Integer, Long> single = records -> ingestOneByOne(batchedClient, records);
+        Function<Integer, Long> bulkUnbatched = records -> ingestInBulk(unbatchedClient, records);
+        Function<Integer, Long> bulkBatched = records -> ingestInBulk(batchedClient, records);
+
+        var singleRate = recordsPerSecond(single);
+        var unbatchedRate = recordsPerSecond(bulkUnbatched);
+        var batchedRate = recordsPerSecond(bulkBatched);
+
+        log.info("single record path : {} records/s, bulk path in batches of 1 : {} records/s, bulk path in batches of {} : {} records/s",
+                singleRate, unbatchedRate, BATCH_SIZE, batchedRate);
+        log.info("speedup over the single record path : {}x, speedup of batching : {}x",
+                String.format("%.1f", (double) batchedRate / singleRate), String.format("%.1f", (double) batchedRate / unbatchedRate));
+        assertThat((double) batchedRate).isGreaterThanOrEqualTo(singleRate * MIN_SPEEDUP_OVER_SINGLE);
+        assertThat((double) batchedRate).isGreaterThanOrEqualTo(unbatchedRate * MIN_SPEEDUP_OF_BATCHING);
+    }
+
+    private long recordsPerSecond(Function<Integer, Long> path) {
+        path.apply(WARMUP_RECORDS);
+        clear();
+        var start = System.nanoTime();
+        var created = path.apply(RECORDS);
+        var nanos = System.nanoTime() - start;
+        clear();
+        assertThat(created).isEqualTo((long) RECORDS);
+        return RECORDS * 1_000_000_000L / Math.max(nanos, 1);
+    }
+
+    private long ingestOneByOne(WebClient client, int records) {
+        var prefix = "single " + run++;
+        return Flux.range(0, records)
+                .flatMap(i -> client.post().uri(MOVIE_INFO_ADD_URL).bodyValue(movieInfo(prefix, i))
+                        .retrieve().toBodilessEntity(), CONCURRENCY)
+                .count()
+                .block();
+    }
+
+    private long ingestInBulk(WebClient client, int records) {
+        var prefix = "bulk " + run++;
+        return client.post().uri(MOVIE_INFO_BULK_URL)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.range(0, records).map(i -> movieInfo(prefix, i)), MovieInfo.class)
+                .retrieve()
+                .bodyToFlux(BulkIngestResult.class)
+                .filter(result -> result.getStatus() == BulkIngestResult.Status.CREATED)
+                .count()
+                .block();
+    }
+
+    private void clear() {
+        batched.getBean(MovieInfoRepository.class).deleteAll().block();
+    }
+
+    private static ConfigurableApplicationContext start(int batchSize) {
+        return new SpringApplicationBuilder(MoviesInfoServiceApplication.class)
+                .profiles("test")
+                .properties("server.port=0", "management.server.port=0",
+                        "movieInfo.bulk.batchSize=" + batchSize, "movieInfo.bulk.concurrency=" + CONCURRENCY)
+                .run();
+    }
+
+    private static WebClient client(ConfigurableApplicationContext context) {
+        var port = context.getEnvironment().getProperty("local.server.port");
+        return WebClient.builder().baseUrl("http://localhost:" + port).build();
+    }
+
+    private static MovieInfo movieInfo(String prefix, int i) {
+        return new MovieInfo(null, prefix + " movie " + i, 1950 + i % 75,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    }
+}
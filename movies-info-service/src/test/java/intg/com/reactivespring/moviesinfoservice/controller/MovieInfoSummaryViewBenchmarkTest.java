@@ -0,0 +1,128 @@
+package com.reactivespring.moviesinfoservice.controller;
+
+import com.reactivespring.moviesinfoservice.dao.MovieInfoRepository;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lists 100k seeded movie infos unpaged, once as full documents and once with view=summary, and reports the bytes
+ * Mongo sent over the wire, the JSON bytes of the response and the latency of each view. The summary view drops the
+ * cast and the release date of every document, so both payloads have to shrink to less than half of the full view's.
+ * Run with ./gradlew benchmarkTest, it is excluded from the regular test task.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "movieInfo.pagination.allowUnpaged=true")
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@Tag("benchmark")
+@Slf4j
+class MovieInfoSummaryViewBenchmarkTest {
+
+    private static final int MOVIE_COUNT = 100_000;
+    private static final int INSERT_BATCH_SIZE = 5_000;
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 5;
+    private static final String FULL_VIEW_URL = "/v1/movieInfos?all=true";
+    private static final String SUMMARY_VIEW_URL = "/v1/movieInfos?all=true&view=summary";
+    private static final double MAX_SUMMARY_PAYLOAD_SHARE = 0.5;
+    private static final List<String> CAST = List.of("Christian Bale", "Michael Caine", "Heath Ledger", "Gary Oldman",
+            "Aaron Eckhart", "Maggie Gyllenhaal", "Morgan Freeman", "Cillian Murphy", "Tom Hardy", "Anne Hathaway");
+
+    @Autowired
+    private MovieInfoRepository movieInfoRepository;
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    public void setUp() {
+        Flux.range(0, MOVIE_COUNT)
+                .map(i -> new MovieInfo("movie-" + i, "Movie " + i, 1950 + i % 75, CAST, LocalDate.parse("2005-06-15")))
+                .buffer(INSERT_BATCH_SIZE)
+                .concatMap(movieInfos -> reactiveMongoTemplate.insertAll(movieInfos))
+                .blockLast();
+        webTestClient = webTestClient.mutate().responseTimeout(Duration.ofMinutes(2)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void full_vs_summary_view() {
+        var full = measure("full view", FULL_VIEW_URL);
+        var summary = measure("summary view", SUMMARY_VIEW_URL);
+
+        log.info("Mongo bytes : {}KB -> {}KB, response bytes : {}KB -> {}KB, latency : {}ms -> {}ms",
+                full.mongoBytes() / 1_024, summary.mongoBytes() / 1_024,
+                full.responseBytes() / 1_024, summary.responseBytes() / 1_024,
+                full.latency().toMillis(), summary.latency().toMillis());
+        assertThat((double) summary.mongoBytes()).as("Mongo bytes of the summary view")
+                .isLessThan(full.mongoBytes() * MAX_SUMMARY_PAYLOAD_SHARE);
+        assertThat((double) summary.responseBytes()).as("response bytes of the summary view")
+                .isLessThan(full.responseBytes() * MAX_SUMMARY_PAYLOAD_SHARE);
+    }
+
+    private Result measure(String name, String uri) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            list(uri);
+        }
+        var mongoBytes = 0L;
+        var responseBytes = 0L;
+        var latencies = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            var bytesOutBefore = mongoBytesOut();
+            var start = System.nanoTime();
+            responseBytes = list(uri);
+            latencies[i] = System.nanoTime() - start;
+            //serverStatus counts every reply of the server, the serverStatus reply itself is noise next to 100k documents
+            mongoBytes = mongoBytesOut() - bytesOutBefore;
+        }
+        var medianLatency = Duration.ofNanos(IntStream.range(0, RUNS).mapToLong(i -> latencies[i]).sorted().skip(RUNS / 2).findFirst().orElseThrow());
+        log.info("{} : {} movie infos, Mongo bytes : {}KB, response bytes : {}KB, median latency : {}ms",
+                name, MOVIE_COUNT, mongoBytes / 1_024, responseBytes / 1_024, medianLatency.toMillis());
+        return new Result(mongoBytes, responseBytes, medianLatency);
+    }
+
+    //the response is counted chunk by chunk, aggregating a 100k element body would only measure the test client
+    private long list(String uri) {
+        var responseBytes = webTestClient.get().uri(uri).exchange()
+                .expectStatus().is2xxSuccessful()
+                .returnResult(byte[].class)
+                .getResponseBody()
+                .map(chunk -> (long) chunk.length)
+                .reduce(0L, Long::sum)
+                .block();
+        return responseBytes == null ? 0 : responseBytes;
+    }
+
+    private long mongoBytesOut() {
+        var serverStatus = reactiveMongoTemplate.executeCommand(new Document("serverStatus", 1)).block();
+        assertThat(serverStatus).isNotNull();
+        return ((Number) serverStatus.get("network", Document.class).get("bytesOut")).longValue();
+    }
+
+    private record Result(long mongoBytes, long responseBytes, Duration latency) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.reactivespring.moviesinfoservice.controller;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.reactivespring.moviesinfoservice.dao.MovieInfoRepository;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Shows that the batch lookup costs one find command against the movieInfo collection no matter how many ids
+ * are passed, and prints how latency grows with the batch size.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+class MoviesInfoBatchIntTest {
+
+    private static final AtomicInteger FIND_COMMANDS = new AtomicInteger();
+    private static final String MOVIE_INFO_BATCH_URL = "/v1/movieInfos/batch";
+    private static final int MOVIE_COUNT = 500;
+
+    @TestConfiguration
+    static class FindCommandCounterConfig {
+        @Bean
+        MongoClientSettingsBuilderCustomizer findCommandCounter() {
+            return builder -> builder.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if ("find".equals(event.getCommandName())) {
+                        FIND_COMMANDS.incrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    @Autowired
+    private MovieInfoRepository movieInfoRepository;
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    public void setUp() {
+        var movieinfos = IntStream.range(0, MOVIE_COUNT)
+                .mapToObj(i -> new MovieInfo("movie-" + i, "Movie " + i,
+                        2000 + i % 20, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))
+                .toList();
+        movieInfoRepository.saveAll(movieinfos).blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    public void test_batch_lookup_uses_one_query_per_batch() {
+        for (var batchSize : List.of(1, 10, 100, MOVIE_COUNT)) {
+            var ids = IntStream.range(0, batchSize).mapToObj(i -> "movie-" + i).toList();
+
+            FIND_COMMANDS.set(0);
+            var start = System.nanoTime();
+            webTestClient.post().uri(MOVIE_INFO_BATCH_URL).accept(MediaType.APPLICATION_NDJSON).bodyValue(ids)
+                    .exchange().expectStatus().is2xxSuccessful()
+                    .expectBodyList(MovieInfo.class).hasSize(batchSize);
+            var latency = Duration.ofNanos(System.nanoTime() - start);
+
+            System.out.println("Batch of " + batchSize + " ids took " + latency.toMillis()
+                    + "ms and " + FIND_COMMANDS.get() + " find command(s)");
+            assertThat(FIND_COMMANDS.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void test_batch_lookup_skips_unknown_ids() {
+        webTestClient.post().uri(MOVIE_INFO_BATCH_URL).accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(List.of("movie-1", "abc"))
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .consumeWith(result -> assertThat(result.getResponseBody())
+                        .extracting(MovieInfo::getMovieId).containsExactly("movie-1"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.reactivespring.moviesinfoservice.controller;
+
+import com.reactivespring.moviesinfoservice.dao.MovieInfoRepository;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.service.BulkIngestResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//a batch size of 2 spreads the records over several bulk writes
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"movieInfo.bulk.batchSize=2", "movieInfo.bulk.concurrency=2"})
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+class MoviesInfoBulkIntTest {
+
+    private static final String MOVIE_INFO_BULK_URL = "/v1/movieInfos/bulk";
+
+    @Autowired
+    private MovieInfoRepository movieInfoRepository;
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    public void setUp() {
+        movieInfoRepository.save(new MovieInfo(null, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))).block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    public void test_bulk_ingest() {
+        var movieInfos = List.of(
+                new MovieInfo(null, "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo(null, "",
+                        -2008, List.of("Christian Bale"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("12345L", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo(null, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "Interstellar",
+                        2014, List.of("Matthew McConaughey"), LocalDate.parse("2014-11-07")));
+
+        var results = webTestClient.post().uri(MOVIE_INFO_BULK_URL)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.fromIterable(movieInfos), MovieInfo.class)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .returnResult(BulkIngestResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertThat(results).extracting(BulkIngestResult::getIndex).containsExactly(0L, 1L, 2L, 3L, 4L);
+        assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(
+                BulkIngestResult.Status.CREATED,
+                BulkIngestResult.Status.INVALID,
+                BulkIngestResult.Status.CREATED,
+                BulkIngestResult.Status.DUPLICATE,
+                BulkIngestResult.Status.CREATED);
+        assertThat(results.get(1).getMessage())
+                .isEqualTo("movieInfo.name should be present, movieInfo.yearReleased must be positive");
+        assertThat(results.get(2).getMovieId()).isEqualTo("12345L");
+        assertThat(results.get(0).getMovieId()).isNotNull();
+
+        var storedNames = movieInfoRepository.findAll().map(MovieInfo::getName).collectList().block();
+        assertThat(storedNames).containsExactlyInAnyOrder("Batman Begins", "The Dark Knight", "Dark Knight Rises", "Interstellar");
+        assertThat(movieInfoRepository.findById(results.get(0).getMovieId()).block()).isNotNull();
+    }
+
+    @Test
+    public void test_bulk_ingest_reports_malformed_lines() {
+        var body = """
+                {"name":"The Dark Knight","yearReleased":2008,"cast":["Christian Bale"],"date_released":"2008-07-18"}
+                {"name":"Broken", "yearReleased":
+
+                {"name":"Interstellar","yearReleased":"soon","cast":["Matthew McConaughey"]}
+                {"name":"Dunkirk","yearReleased":2017,"cast":["Tom Hardy"],"date_released":"2017-07-21"}
+                """;
+
+        var results = webTestClient.post().uri(MOVIE_INFO_BULK_URL)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .returnResult(BulkIngestResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //the blank line isn't a record, the records after the malformed ones are still ingested
+        assertThat(results).extracting(BulkIngestResult::getIndex).containsExactly(0L, 1L, 2L, 3L);
+        assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(
+                BulkIngestResult.Status.CREATED,
+                BulkIngestResult.Status.INVALID,
+                BulkIngestResult.Status.INVALID,
+                BulkIngestResult.Status.CREATED);
+        assertThat(results.get(1).getMessage()).startsWith("Malformed record : ");
+        assertThat(results.get(2).getMessage()).startsWith("Malformed record : ");
+
+        var storedNames = movieInfoRepository.findAll().map(MovieInfo::getName).collectList().block();
+        assertThat(storedNames).containsExactlyInAnyOrder("Batman Begins", "The Dark Knight", "Dunkirk");
+    }
+}
@@ -1,14 +1,19 @@
 package com.reactivespring.moviesinfoservice.controller;
 
+import com.reactivespring.common.test.BlockingCallDetector;
 import com.reactivespring.moviesinfoservice.controller.MoviesInfoController;
 import com.reactivespring.moviesinfoservice.dao.MovieInfoRepository;
 import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.document.MovieInfoSummary;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -23,6 +28,7 @@ import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
 @AutoConfigureWebTestClient
+@ExtendWith(BlockingCallDetector.class)
 class MoviesInfoControllerIntTest {
 
     @Autowired
@@ -67,6 +73,16 @@ class MoviesInfoControllerIntTest {
                 });
     }
 
+    @Test
+    public void test_add_duplicate_name() {
+
+        var movie = new MovieInfo(null, "Batman Begins",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        webTestClient.post().uri(MOVIE_INFO_ADD_URL).bodyValue(movie)
+                .exchange().expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
     @Test
     public void test_get_all_movies() {
         webTestClient.get().uri(MOVIE_INFO_GET_URL).exchange()
@@ -74,6 +90,133 @@ class MoviesInfoControllerIntTest {
                 .hasSize(3);
     }
 
+    @Test
+    public void test_get_movies_paged_by_id() {
+        //two generated ObjectIds and one client supplied string id, the keyset has to cross from strings to ObjectIds
+        var firstPage = webTestClient.get().uri(MOVIE_INFO_GET_URL + "?limit=2").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().exists(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER)
+                .expectBodyList(MovieInfo.class).hasSize(2)
+                .returnResult();
+        var nextPageToken = firstPage.getResponseHeaders().getFirst(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER);
+        assertThat(firstPage.getResponseBody()).extracting(MovieInfo::getMovieId).first().isEqualTo("12345L");
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?limit=2&pageToken={token}", nextPageToken).exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().doesNotExist(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER)
+                .expectBodyList(MovieInfo.class).hasSize(1)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getMovieId)
+                        .doesNotContainAnyElementsOf(firstPage.getResponseBody().stream().map(MovieInfo::getMovieId).toList()));
+    }
+
+    @Test
+    public void test_get_movies_paged_by_year() {
+        var firstPage = webTestClient.get().uri(MOVIE_INFO_GET_URL + "?sort=year&limit=2").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getYearReleased).containsExactly(2005, 2008))
+                .returnResult();
+        var nextPageToken = firstPage.getResponseHeaders().getFirst(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER);
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?sort=year&limit=2&pageToken={token}", nextPageToken).exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getYearReleased).containsExactly(2012));
+
+        //a token only continues the order it was issued for
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?limit=2&pageToken={token}", nextPageToken).exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void test_get_movie_summaries() {
+        var firstPage = webTestClient.get().uri(MOVIE_INFO_GET_URL + "?view=summary&sort=year&limit=2").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].name").isEqualTo("Batman Begins")
+                .jsonPath("$[0].yearReleased").isEqualTo(2005)
+                .jsonPath("$[0].movieId").isNotEmpty()
+                .jsonPath("$[0].cast").doesNotExist()
+                .jsonPath("$[0].date_released").doesNotExist()
+                .returnResult();
+        var nextPageToken = firstPage.getResponseHeaders().getFirst(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER);
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?view=summary&sort=year&limit=2&pageToken={token}", nextPageToken).exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfoSummary.class)
+                .value(summaries -> assertThat(summaries).extracting(MovieInfoSummary::getMovieId).containsExactly("12345L"));
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?view=summary&year=2008").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfoSummary.class)
+                .value(summaries -> assertThat(summaries).extracting(MovieInfoSummary::getName).containsExactly("The Dark Knight"));
+    }
+
+    @Test
+    public void test_search() {
+        //whole name words rank first, ties are ordered by id and client supplied ids sort before generated ones
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=Dark").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getName)
+                        .containsExactly("Dark Knight Rises", "The Dark Knight"));
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=heath").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getName).containsExactly("The Dark Knight"));
+
+        //a name prefix ranks above a cast match
+        movieInfoRepository.save(new MovieInfo(null, "Christmas Vacation",
+                1989, List.of("Chevy Chase"), LocalDate.parse("1989-12-01"))).block();
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=chris").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getName)
+                        .startsWith("Christmas Vacation", "Dark Knight Rises")
+                        .hasSize(4));
+
+        //every word has to match
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=chris bat").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getName).containsExactly("Batman Begins"));
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=  ").exchange()
+                .expectStatus().isBadRequest();
+
+        //one letter prefixes match most of the catalogue, they are ignored next to longer words and rejected alone
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=a").exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=bat a").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getName).containsExactly("Batman Begins"));
+    }
+
+    @Test
+    public void test_search_paged() {
+        var firstPage = webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=christian&limit=2").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class).hasSize(2)
+                .returnResult();
+        var nextPageToken = firstPage.getResponseHeaders().getFirst(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER);
+        assertThat(nextPageToken).isNotNull();
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=christian&limit=2&pageToken={token}", nextPageToken).exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().doesNotExist(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER)
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getName)
+                        .doesNotContainAnyElementsOf(firstPage.getResponseBody().stream().map(MovieInfo::getName).toList())
+                        .hasSize(1));
+
+        //the token is bound to the search it was issued for
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/search?q=bale&limit=2&pageToken={token}", nextPageToken).exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     public void test_find_by_id() {
         var id = "12345L";
@@ -90,6 +233,63 @@ class MoviesInfoControllerIntTest {
                 .expectStatus().isNotFound();
     }
 
+    @Test
+    public void test_find_by_id_not_modified() {
+        var id = "12345L";
+        var eTag = webTestClient.get().uri(MOVIE_INFO_GET_URL + "/{id}", id).exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseHeaders().getETag();
+        assertThat(eTag).startsWith("\"").endsWith("\"");
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/{id}", id).ifNoneMatch(eTag).exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void test_update_changes_the_etag() {
+        var id = "12345L";
+        var movie = new MovieInfo(null, "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy", "Anne Hathaway"), LocalDate.parse("2012-07-20"));
+        var eTag = webTestClient.get().uri(MOVIE_INFO_GET_URL + "/{id}", id).exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseHeaders().getETag();
+
+        var updatedETag = webTestClient.put().uri(MOVIE_INFO_GET_URL + "/{id}", id).bodyValue(movie).exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.version").isEqualTo(1)
+                .returnResult().getResponseHeaders().getETag();
+        assertThat(updatedETag).isNotNull().isNotEqualTo(eTag);
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/{id}", id).ifNoneMatch(eTag).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, updatedETag)
+                .expectBody().jsonPath("$.cast.length()").isEqualTo(3);
+    }
+
+    @Test
+    public void test_recreated_movie_info_changes_the_etag() {
+        var id = "12345L";
+        var eTag = webTestClient.get().uri(MOVIE_INFO_GET_URL + "/{id}", id).exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.version").isEqualTo(0)
+                .returnResult().getResponseHeaders().getETag();
+
+        webTestClient.delete().uri(MOVIE_INFO_GET_URL + "/{id}", id).exchange()
+                .expectStatus().isNoContent();
+        webTestClient.post().uri(MOVIE_INFO_ADD_URL).bodyValue(new MovieInfo(id, "Dark Knight Rises",
+                        2012, List.of("Tom Hardy"), LocalDate.parse("2012-07-20"))).exchange()
+                .expectStatus().isCreated();
+
+        //the recreated document starts over at version 0, only its content tells it apart
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "/{id}", id).ifNoneMatch(eTag).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.version").isEqualTo(0)
+                .jsonPath("$.cast.length()").isEqualTo(1);
+    }
+
     @Test
     public void test_updateMovieInfo() {
         var id = "12345L";
@@ -141,6 +341,27 @@ class MoviesInfoControllerIntTest {
                 .hasSize(1);
     }
 
+    @Test
+    public void test_get_movies_by_year_is_paged() {
+        movieInfoRepository.saveAll(List.of(
+                new MovieInfo("2012A", "Skyfall", 2012, List.of("Daniel Craig"), LocalDate.parse("2012-10-26")),
+                new MovieInfo("2012B", "Looper", 2012, List.of("Bruce Willis"), LocalDate.parse("2012-09-28")))).blockLast();
+
+        var firstPage = webTestClient.get().uri(MOVIE_INFO_GET_URL + "?year=2012&limit=2").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getMovieId).containsExactly("12345L", "2012A"))
+                .returnResult();
+        var nextPageToken = firstPage.getResponseHeaders().getFirst(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER);
+        assertThat(nextPageToken).isNotNull();
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?year=2012&limit=2&pageToken={token}", nextPageToken).exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().doesNotExist(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER)
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertThat(movieInfos).extracting(MovieInfo::getMovieId).containsExactly("2012B"));
+    }
+
     @Test
     public void test_get_movieInfo_By_Name(){
         var uri = UriComponentsBuilder.fromUriString("/v1/movieInfo")
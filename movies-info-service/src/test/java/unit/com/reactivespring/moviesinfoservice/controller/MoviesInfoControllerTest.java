@@ -1,7 +1,12 @@
 package com.reactivespring.moviesinfoservice.controller;
 
+import com.reactivespring.moviesinfoservice.config.OffloadConfig;
+import com.reactivespring.moviesinfoservice.dao.MovieInfoSort;
 import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.reactivespring.moviesinfoservice.document.MovieInfoSummary;
 import com.reactivespring.moviesinfoservice.exceptionHandler.GlobalExceptionHandler;
+import com.reactivespring.moviesinfoservice.service.KeysetPage;
+import com.reactivespring.moviesinfoservice.service.MovieInfoStreamService;
 import com.reactivespring.moviesinfoservice.service.MoviesInfoService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +15,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
@@ -23,6 +29,7 @@ import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = {MoviesInfoController.class})
+@Import(OffloadConfig.class)
 //@ContextConfiguration(classes = {MoviesInfoController.class,GlobalExceptionHandler.class})
 @AutoConfigureWebTestClient
 public class MoviesInfoControllerTest {
@@ -30,6 +37,9 @@ public class MoviesInfoControllerTest {
     @MockBean
     private MoviesInfoService moviesInfoService;
 
+    @MockBean
+    private MovieInfoStreamService movieInfoStreamService;
+
     @Autowired
     private WebTestClient webTestClient;
     private static final String MOVIE_INFO_ADD_URL = "/v1/movieInfos/add";
@@ -49,13 +59,56 @@ public class MoviesInfoControllerTest {
     }
     @Test
     void test_getAllMovieInfo(){
-        when(moviesInfoService.getAllMovies()).thenReturn(Flux.fromIterable(MOVIE_INFO_FLUX));
+        when(moviesInfoService.getMovieInfoPage(null, MovieInfoSort.ID, null, 50))
+                .thenReturn(Mono.just(new KeysetPage<>(MOVIE_INFO_FLUX, null)));
 
         webTestClient.get().uri(MOVIE_INFO_GET_URL).exchange()
-                .expectStatus().is2xxSuccessful().expectBodyList(MovieInfo.class)
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().doesNotExist(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER)
+                .expectBodyList(MovieInfo.class)
                 .hasSize(3);
+    }
+
+    @Test
+    void test_getAllMovieInfo_page(){
+        when(moviesInfoService.getMovieInfoPage(null, MovieInfoSort.YEAR, "token", 2))
+                .thenReturn(Mono.just(new KeysetPage<>(MOVIE_INFO_FLUX.subList(0, 2), "nextToken")));
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?sort=year&limit=2&pageToken=token").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().valueEquals(MoviesInfoController.NEXT_PAGE_TOKEN_HEADER, "nextToken")
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void test_getAllMovieInfo_summary_view(){
+        var summaries = List.of(new MovieInfoSummary("1", "Batman Begins", 2005),
+                new MovieInfoSummary("12345L", "Dark Knight Rises", 2012));
+        when(moviesInfoService.getMovieInfoSummaryPage(null, MovieInfoSort.ID, null, 50))
+                .thenReturn(Mono.just(new KeysetPage<>(summaries, null)));
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?view=summary").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfoSummary.class)
+                .isEqualTo(summaries);
+    }
+
+    @Test
+    void test_getAllMovieInfo_invalid_page_request(){
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?limit=0").exchange()
+                .expectStatus().isBadRequest();
 
-        when(moviesInfoService.getAllMovies()).thenReturn(Flux.fromIterable(MOVIE_INFO_FLUX));
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?sort=rating").exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?all=true").exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri(MOVIE_INFO_GET_URL + "?view=compact").exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Unknown view compact, use full or summary");
     }
 
     @Test
@@ -0,0 +1,149 @@
+package com.reactivespring.moviesinfoservice.dao;
+
+import com.reactivespring.common.paging.PageToken;
+import com.reactivespring.common.test.EmbeddedMongo;
+import com.reactivespring.common.test.QueryPlans;
+import com.reactivespring.common.test.RecordedCommands;
+import com.reactivespring.moviesinfoservice.config.MongoIndexConfig;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fails when one of the hot repository calls is planned as a collection scan, e.g. because its index was dropped
+ * from the document or the query changed shape. Every call runs for real, the commands it sent are recorded and
+ * explained again, so the test follows the queries the repository builds.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@Import({MongoIndexConfig.class, MovieInfoQueryPlanTest.RecordingConfig.class})
+class MovieInfoQueryPlanTest {
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    RecordedCommands recordedCommands;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        EmbeddedMongo.register(registry);
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        RecordedCommands recordedCommands() {
+            return new RecordedCommands();
+        }
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer recordCommands(RecordedCommands recordedCommands) {
+            return builder -> builder.addCommandListener(recordedCommands);
+        }
+    }
+
+    @BeforeEach
+    public void setUp(){
+        var movieinfos = List.of(new MovieInfo(null, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("12345L", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+        movieInfoRepository.saveAll(movieinfos).blockLast();
+    }
+
+    @AfterEach
+    public void tearDown(){
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    public void test_findByYearReleased_uses_index(){
+        assertIndexed(movieInfoRepository.findByYearReleased(2005));
+        assertIndexed(movieInfoRepository.findSummaryByYearReleased(2005));
+    }
+
+    @Test
+    public void test_findByName_uses_index(){
+        assertIndexed(movieInfoRepository.findByName("Batman Begins"));
+    }
+
+    @Test
+    public void test_findAllById_uses_index(){
+        assertIndexed(movieInfoRepository.findAllById(List.of("12345L", new ObjectId().toHexString())));
+    }
+
+    @Test
+    public void test_page_by_id_uses_index(){
+        var last = movieInfoRepository.findById("12345L").block();
+        assertIndexed(movieInfoRepository.findPage(MovieInfoSort.ID, null, null, 51));
+        assertIndexed(movieInfoRepository.findPage(MovieInfoSort.ID, null,
+                movieInfoRepository.pageTokenOf(MovieInfoSort.ID, last), 51));
+        assertIndexed(movieInfoRepository.findSummaryPage(MovieInfoSort.ID, null,
+                new PageToken(MovieInfoSort.ID.name(), null, new ObjectId().toHexString()), 51));
+    }
+
+    @Test
+    public void test_page_by_year_uses_index(){
+        var last = movieInfoRepository.findById("12345L").block();
+        assertIndexed(movieInfoRepository.findPage(MovieInfoSort.YEAR, null, null, 51));
+        assertIndexed(movieInfoRepository.findPage(MovieInfoSort.YEAR, null,
+                movieInfoRepository.pageTokenOf(MovieInfoSort.YEAR, last), 51));
+        assertIndexed(movieInfoRepository.findSummaryPage(MovieInfoSort.YEAR, null,
+                new PageToken(MovieInfoSort.YEAR.name(), "2008", new ObjectId().toHexString()), 51));
+    }
+
+    @Test
+    public void test_page_of_one_year_uses_index(){
+        var last = movieInfoRepository.findById("12345L").block();
+        assertIndexed(movieInfoRepository.findPage(MovieInfoSort.ID, 2012, null, 51));
+        assertIndexed(movieInfoRepository.findPage(MovieInfoSort.ID, 2012,
+                movieInfoRepository.pageTokenOf(MovieInfoSort.ID, last), 51));
+        assertIndexed(movieInfoRepository.findSummaryPage(MovieInfoSort.YEAR, 2012,
+                movieInfoRepository.pageTokenOf(MovieInfoSort.YEAR, last), 51));
+    }
+
+    @Test
+    public void test_search_uses_index(){
+        assertIndexed(movieInfoRepository.search(List.of("dark"), null, 20, 1000));
+        assertIndexed(movieInfoRepository.search(List.of("dark", "kni", "bale"), null, 20, 1000));
+        assertIndexed(movieInfoRepository.search(List.of("dark"),
+                new PageToken(MovieInfoSort.ID.name(), "2", "12345L"), 20, 1000));
+    }
+
+    private void assertIndexed(Publisher<?> call){
+        recordedCommands.clear();
+        Flux.from(call).blockLast();
+        var plans = QueryPlans.winningPlanStages(reactiveMongoTemplate.getMongoDatabase().block(), recordedCommands);
+        assertThat(plans).as("explained commands").isNotEmpty();
+        plans.forEach((command, stages) -> assertThat(stages)
+                .as("winning plan of %s", command)
+                .isNotEmpty()
+                .doesNotContain(QueryPlans.COLLECTION_SCAN));
+    }
+}
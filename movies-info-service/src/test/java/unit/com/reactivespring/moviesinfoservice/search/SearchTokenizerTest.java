@@ -0,0 +1,30 @@
+package com.reactivespring.moviesinfoservice.search;
+
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchTokenizerTest {
+
+    @Test
+    void test_terms_are_lowercase_words_without_accents(){
+        assertThat(SearchTokenizer.terms("Le Fabuleux Destin d'Amélie Poulain"))
+                .containsExactly("le", "fabuleux", "destin", "d", "amelie", "poulain");
+        assertThat(SearchTokenizer.terms("  Batman -- BATMAN 2  ")).containsExactly("batman", "2");
+        assertThat(SearchTokenizer.terms("$^.*")).isEmpty();
+        assertThat(SearchTokenizer.terms(null)).isEmpty();
+    }
+
+    @Test
+    void test_search_tokens_of_name_and_cast(){
+        var movieInfo = new MovieInfo(null, "The Dark Knight",
+                2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"));
+
+        assertThat(SearchTokenizer.searchTokensOf(movieInfo)).containsExactly(
+                "n:the", "n:dark", "n:knight", "c:christian", "c:bale", "c:heath", "c:ledger");
+    }
+}
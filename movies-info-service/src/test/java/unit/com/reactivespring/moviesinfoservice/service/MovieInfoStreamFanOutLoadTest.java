@@ -0,0 +1,123 @@
+package com.reactivespring.moviesinfoservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.reactivespring.common.stream.EventFanOutHub;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import com.sun.management.ThreadMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fans events out to 5k in-process subscribers, once with every subscriber encoding the movie info itself (the old
+ * stream) and once through the shared encoding of MovieInfoStreamService, and reports CPU time and allocated bytes
+ * per published event. Subscribers consume on the publishing thread, so the publishing thread's counters cover all
+ * of the fan-out work.
+ * Run with ./gradlew benchmarkTest, it is excluded from the regular test task.
+ */
+@Tag("benchmark")
+@Slf4j
+public class MovieInfoStreamFanOutLoadTest {
+
+    private static final int SUBSCRIBERS = 5_000;
+    private static final int WARMUP_EVENTS = 200;
+    private static final int EVENTS = 1_000;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private static final DataBufferFactory BUFFER_FACTORY = DefaultDataBufferFactory.sharedInstance;
+
+    @Test
+    void fan_out_cost_per_event() {
+        var perSubscriberEncoding = measure("per subscriber encoding", this::perSubscriberEncodingStream);
+        var sharedEncoding = measure("shared encoding", this::sharedEncodingStream);
+
+        log.info("CPU per event : {}us -> {}us, allocated per event : {}KB -> {}KB",
+                perSubscriberEncoding.cpuNanosPerEvent() / 1_000, sharedEncoding.cpuNanosPerEvent() / 1_000,
+                perSubscriberEncoding.bytesPerEvent() / 1_024, sharedEncoding.bytesPerEvent() / 1_024);
+        assertThat(sharedEncoding.bytesPerEvent()).isLessThan(perSubscriberEncoding.bytesPerEvent());
+    }
+
+    private Result measure(String name, Supplier<Stream> streamFactory) {
+        var stream = streamFactory.get();
+        var received = new AtomicLong();
+        var subscriptions = new ArrayList<Disposable>(SUBSCRIBERS);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            subscriptions.add(stream.subscriber().get().subscribe(dataBuffer -> received.incrementAndGet()));
+        }
+        try {
+            publish(stream, WARMUP_EVENTS);
+            var threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+            var threadId = Thread.currentThread().getId();
+            var startCpu = threadMXBean.getCurrentThreadCpuTime();
+            var startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            var startNanos = System.nanoTime();
+
+            publish(stream, EVENTS);
+
+            var cpuNanos = threadMXBean.getCurrentThreadCpuTime() - startCpu;
+            var bytes = threadMXBean.getThreadAllocatedBytes(threadId) - startBytes;
+            var elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+            assertThat(received.get()).isEqualTo((long) SUBSCRIBERS * (WARMUP_EVENTS + EVENTS));
+
+            var result = new Result(cpuNanos / EVENTS, bytes / EVENTS);
+            log.info("{} : {} subscribers, {} events in {}ms, CPU per event : {}us, allocated per event : {}KB, allocation rate : {}MB/s",
+                    name, SUBSCRIBERS, EVENTS, elapsed.toMillis(), result.cpuNanosPerEvent() / 1_000,
+                    result.bytesPerEvent() / 1_024, bytes * 1_000_000_000L / Math.max(elapsed.toNanos(), 1) / (1_024 * 1_024));
+            return result;
+        } finally {
+            subscriptions.forEach(Disposable::dispose);
+        }
+    }
+
+    private static void publish(Stream stream, int count) {
+        for (int i = 0; i < count; i++) {
+            stream.publisher().accept(new MovieInfo(String.valueOf(i), "Batman Begins",
+                    2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")));
+        }
+    }
+
+    //what the stream did before: one sink of movie infos and a JSON encoding per subscriber and event
+    private Stream perSubscriberEncodingStream() {
+        Sinks.Many<MovieInfo> sink = Sinks.many().multicast().directBestEffort();
+        return new Stream(sink::tryEmitNext, () -> sink.asFlux().map(movieInfo -> {
+            try {
+                return BUFFER_FACTORY.wrap(OBJECT_MAPPER.writeValueAsBytes(movieInfo));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+    }
+
+    private Stream sharedEncodingStream() {
+        var streamService = new MovieInfoStreamService(MovieInfoStreamService.ReplayMode.LAST_N, 1,
+                Duration.ofMinutes(5), 256, EventFanOutHub.OverflowStrategy.DROP_OLDEST, Duration.ofMinutes(1),
+                OBJECT_MAPPER, new SimpleMeterRegistry());
+        return new Stream(streamService::publish, () -> streamService.ndjsonStream(BUFFER_FACTORY));
+    }
+
+    private record Stream(Consumer<MovieInfo> publisher, Supplier<Flux<DataBuffer>> subscriber) {
+    }
+
+    private record Result(long cpuNanosPerEvent, long bytesPerEvent) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.reactivespring.moviesinfoservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.reactivespring.common.stream.EventFanOutHub;
+import com.reactivespring.moviesinfoservice.document.MovieInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MovieInfoStreamServiceTest {
+
+    private static final int REPLAY_SIZE = 2;
+    private static final int BUFFER_SIZE = 3;
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofMillis(100);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void test_replays_only_last_n(){
+        var streamService = streamService(EventFanOutHub.OverflowStrategy.DROP_OLDEST);
+        publish(streamService, 5);
+
+        StepVerifier.create(streamService.stream())
+                .assertNext(event -> assertThat(event.getId()).isEqualTo("4"))
+                .assertNext(event -> assertThat(event.getId()).isEqualTo("5"))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void test_slow_subscriber_drops_oldest(){
+        var streamService = streamService(EventFanOutHub.OverflowStrategy.DROP_OLDEST);
+
+        StepVerifier.create(streamService.stream(), 0)
+                .then(() -> publish(streamService, 5))
+                .thenRequest(BUFFER_SIZE)
+                .assertNext(event -> assertThat(event.getId()).isEqualTo("3"))
+                .assertNext(event -> assertThat(event.getId()).isEqualTo("4"))
+                .assertNext(event -> assertThat(event.getId()).isEqualTo("5"))
+                .thenCancel()
+                .verify();
+
+        assertThat(meterRegistry.get("movieinfo.stream.dropped").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void test_slow_subscriber_disconnected(){
+        var streamService = streamService(EventFanOutHub.OverflowStrategy.DISCONNECT);
+
+        StepVerifier.create(streamService.stream(), 0)
+                .then(() -> assertThat(streamService.subscriberCount()).isEqualTo(1))
+                .then(() -> publish(streamService, 5))
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(event -> true)
+                .verifyComplete();
+
+        assertThat(meterRegistry.get("movieinfo.stream.disconnected").counter().count()).isEqualTo(1);
+        assertThat(streamService.subscriberCount()).isZero();
+    }
+
+    @Test
+    void test_subscribers_share_encoded_event(){
+        var streamService = streamService(EventFanOutHub.OverflowStrategy.DROP_OLDEST);
+        publish(streamService, 1);
+
+        var first = streamService.stream().blockFirst();
+        var second = streamService.stream().blockFirst();
+
+        assertThat(first).isNotNull().isSameAs(second);
+        assertThat(new String(first.getNdjson(), StandardCharsets.UTF_8))
+                .startsWith("{\"movieId\":\"1\"")
+                .contains("\"date_released\":\"2005-06-15\"")
+                .endsWith("}\n");
+    }
+
+    @Test
+    void test_sse_frames_and_heartbeat(){
+        var streamService = streamService(EventFanOutHub.OverflowStrategy.DROP_OLDEST);
+        publish(streamService, 1);
+
+        StepVerifier.create(streamService.sseStream(DefaultDataBufferFactory.sharedInstance).map(MovieInfoStreamServiceTest::asString))
+                .assertNext(frame -> assertThat(frame).startsWith("id:1\nevent:movieInfo\ndata:{").endsWith("}\n\n"))
+                .expectNext(":\n\n")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(streamService.subscriberCount()).isZero();
+    }
+
+    private static String asString(DataBuffer dataBuffer) {
+        return dataBuffer.toString(StandardCharsets.UTF_8);
+    }
+
+    private MovieInfoStreamService streamService(EventFanOutHub.OverflowStrategy overflowStrategy) {
+        return new MovieInfoStreamService(MovieInfoStreamService.ReplayMode.LAST_N, REPLAY_SIZE,
+                Duration.ofMinutes(5), BUFFER_SIZE, overflowStrategy, HEARTBEAT_INTERVAL, OBJECT_MAPPER, meterRegistry);
+    }
+
+    private static void publish(MovieInfoStreamService streamService, int count) {
+        for (int i = 1; i <= count; i++) {
+            streamService.publish(new MovieInfo(String.valueOf(i), "Batman Begins " + i,
+                    2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")));
+        }
+    }
+}
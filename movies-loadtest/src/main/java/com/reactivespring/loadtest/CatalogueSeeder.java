@@ -0,0 +1,107 @@
+package com.reactivespring.loadtest;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Writes the catalogue straight to the collections of the services, in the shape their mappings read, before they
+ * start: the services then build their indexes and search tokens over the existing data, which is much faster than
+ * maintaining them during millions of inserts. Titles have the numeric ids movies-service passes to both downstreams.
+ * The review stats aren't seeded, the stats endpoint isn't part of the mix.
+ */
+@Slf4j
+class CatalogueSeeder {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final List<String> WORDS = List.of("Dark", "Knight", "Batman", "Begins", "Rises", "Night", "City",
+            "Return", "Last", "Light", "Shadow", "Empire", "Storm", "Lost", "Silent", "Red", "Winter", "River", "Star", "Code");
+    private static final List<String> CAST = List.of("Christian Bale", "Michael Caine", "Heath Ledger", "Gary Oldman",
+            "Aaron Eckhart", "Maggie Gyllenhaal", "Morgan Freeman", "Cillian Murphy", "Tom Hardy", "Anne Hathaway");
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final MongoDatabase database;
+    private final LoadTestConfig config;
+
+    CatalogueSeeder(MongoDatabase database, LoadTestConfig config) {
+        this.database = database;
+        this.config = config;
+    }
+
+    //the first letters of a word of the title name, so every search matches part of the catalogue
+    static String searchPrefixOf(int title) {
+        return WORDS.get(title % WORDS.size()).substring(0, 3).toLowerCase();
+    }
+
+    void seed() throws InterruptedException, ExecutionException {
+        var start = System.nanoTime();
+        seedTitles();
+        seedReviews();
+        log.info("Seeded {} titles and {} reviews in {}s", config.getTitles(),
+                (long) config.getTitles() * config.getReviewsPerTitle(), (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    private void seedTitles() {
+        var movieInfos = database.getCollection("movieInfo");
+        var releaseDate = Date.from(LocalDate.parse("2005-06-15").atStartOfDay(ZoneId.systemDefault()).toInstant());
+        for (int from = 0; from < config.getTitles(); from += BATCH_SIZE) {
+            var batch = IntStream.range(from, Math.min(from + BATCH_SIZE, config.getTitles()))
+                    .mapToObj(title -> new Document("_id", String.valueOf(title))
+                            .append("name", WORDS.get(title % WORDS.size()) + " " + WORDS.get(title / WORDS.size() % WORDS.size()) + " " + title)
+                            .append("yearReleased", 1950 + title % 75)
+                            .append("cast", List.of(CAST.get(title % CAST.size()), CAST.get((title + 3) % CAST.size())))
+                            .append("date_released", releaseDate)
+                            .append("version", 0L))
+                    .toList();
+            movieInfos.insertMany(batch, UNORDERED);
+        }
+    }
+
+    private void seedReviews() throws InterruptedException, ExecutionException {
+        var reviews = database.getCollection("review");
+        var executor = Executors.newFixedThreadPool(config.getSeedThreads());
+        try {
+            var titlesPerBatch = Math.max(1, BATCH_SIZE / Math.max(1, config.getReviewsPerTitle()));
+            var batches = new ArrayList<Future<?>>();
+            for (int from = 0; from < config.getTitles() && config.getReviewsPerTitle() > 0; from += titlesPerBatch) {
+                var firstTitle = from;
+                var lastTitle = Math.min(from + titlesPerBatch, config.getTitles());
+                batches.add(executor.submit(() -> reviews.insertMany(reviewsOf(firstTitle, lastTitle), UNORDERED)));
+            }
+            for (int i = 0; i < batches.size(); i++) {
+                batches.get(i).get();
+                if ((i + 1) % 100 == 0) {
+                    log.info("Seeded {} of {} review batches", i + 1, batches.size());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Document> reviewsOf(int firstTitle, int lastTitle) {
+        var random = ThreadLocalRandom.current();
+        var batch = new ArrayList<Document>((lastTitle - firstTitle) * config.getReviewsPerTitle());
+        for (int title = firstTitle; title < lastTitle; title++) {
+            for (int i = 0; i < config.getReviewsPerTitle(); i++) {
+                batch.add(new Document("movieInfoId", (long) title)
+                        .append("comment", "Review " + i + " of title " + title)
+                        .append("rating", random.nextInt(0, 21) / 2.0)
+                        .append("version", 0L));
+            }
+        }
+        return batch;
+    }
+}
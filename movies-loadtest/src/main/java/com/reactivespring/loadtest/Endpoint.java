@@ -0,0 +1,45 @@
+package com.reactivespring.loadtest;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Requests of the traffic mix, each one sent to one of the services for a random title of the seeded catalogue.
+ */
+public enum Endpoint {
+
+    MOVIE("movie", LoadTest.MOVIES_SERVICE, title -> "/v1/movie/" + title),
+    MOVIE_INFO("movieInfo", LoadTest.MOVIES_INFO_SERVICE, title -> "/v1/movieInfos/" + title),
+    REVIEWS("reviews", LoadTest.MOVIES_REVIEW_SERVICE, title -> "/v1/review?movieInfoId=" + title),
+    SEARCH("search", LoadTest.MOVIES_INFO_SERVICE, title -> "/v1/movieInfos/search?limit=20&q=" + CatalogueSeeder.searchPrefixOf(title)),
+    PAGE("page", LoadTest.MOVIES_INFO_SERVICE, title -> "/v1/movieInfos?sort=year&limit=50");
+
+    private final String key;
+    private final String service;
+    private final IntFunction<String> uriOf;
+
+    Endpoint(String key, String service, IntFunction<String> uriOf) {
+        this.key = key;
+        this.service = service;
+        this.uriOf = uriOf;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public String uriOf(int title) {
+        return uriOf.apply(title);
+    }
+
+    public static Endpoint ofKey(String key) {
+        return Arrays.stream(values())
+                .filter(endpoint -> endpoint.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown endpoint " + key + " in the mix"));
+    }
+}
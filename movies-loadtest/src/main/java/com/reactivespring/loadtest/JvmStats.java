@@ -0,0 +1,58 @@
+package com.reactivespring.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Garbage collections and allocated bytes of the JVM at one point in time. Allocations are read per thread and
+ * split between the load generator threads (named loadtest-*) and every other thread, which mostly belong to the
+ * services. Only live threads report their allocations, the bytes of a thread ending between two snapshots are lost.
+ */
+record JvmStats(Map<String, long[]> collections, Map<Long, Long> allocatedBytesByThread,
+                Map<Long, Boolean> loadGeneratorThreads) {
+
+    private static final String LOAD_GENERATOR_THREAD_PREFIX = "loadtest";
+
+    static JvmStats capture() {
+        var collections = new LinkedHashMap<String, long[]>();
+        ManagementFactory.getGarbageCollectorMXBeans().forEach(collector ->
+                collections.put(collector.getName(), new long[]{collector.getCollectionCount(), collector.getCollectionTime()}));
+
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var threadIds = threadMXBean.getAllThreadIds();
+        var allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadIds);
+        var threadInfos = threadMXBean.getThreadInfo(threadIds);
+        var allocatedBytesByThread = new HashMap<Long, Long>();
+        var loadGeneratorThreads = new HashMap<Long, Boolean>();
+        for (int i = 0; i < threadIds.length; i++) {
+            if (threadInfos[i] == null || allocatedBytes[i] < 0) {
+                continue;
+            }
+            allocatedBytesByThread.put(threadIds[i], allocatedBytes[i]);
+            loadGeneratorThreads.put(threadIds[i], threadInfos[i].getThreadName().startsWith(LOAD_GENERATOR_THREAD_PREFIX));
+        }
+        return new JvmStats(collections, allocatedBytesByThread, loadGeneratorThreads);
+    }
+
+    //collector name -> {collections, collection time in ms} since the before snapshot
+    Map<String, long[]> collectionsSince(JvmStats before) {
+        var delta = new LinkedHashMap<String, long[]>();
+        collections.forEach((collector, counts) -> {
+            var previous = before.collections.getOrDefault(collector, new long[2]);
+            delta.put(collector, new long[]{counts[0] - previous[0], counts[1] - previous[1]});
+        });
+        return delta;
+    }
+
+    //{service bytes, load generator bytes} allocated since the before snapshot
+    long[] allocatedBytesSince(JvmStats before) {
+        var allocated = new long[2];
+        allocatedBytesByThread.forEach((threadId, bytes) -> {
+            var delta = bytes - before.allocatedBytesByThread.getOrDefault(threadId, 0L);
+            allocated[loadGeneratorThreads.get(threadId) ? 1 : 0] += delta;
+        });
+        return allocated;
+    }
+}
@@ -0,0 +1,82 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Writes the results of the measured run to the report directory: summary.txt with the throughput, latency
+ * percentiles, GC and allocation figures, and one HdrHistogram percentile distribution (.hgrm, in milliseconds) per
+ * endpoint and for all requests, which can be plotted with the HdrHistogram plotter.
+ */
+@Slf4j
+class LoadReport {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private LoadReport() {
+    }
+
+    static void write(LoadTestConfig config, LoadStats stats, Duration measured, JvmStats before, JvmStats after) throws IOException {
+        var reportDir = Files.createDirectories(config.getReportDir());
+        var summary = new StringBuilder()
+                .append(String.format("%d titles with %d reviews each, %d rps for %ds after a %ds warmup%n%n",
+                        config.getTitles(), config.getReviewsPerTitle(), config.getRps(),
+                        config.getDuration().toSeconds(), config.getWarmup().toSeconds()))
+                .append(String.format("%-12s %10s %10s %8s %8s %9s %9s %9s %9s %9s %10s%n", "endpoint", "requests",
+                        "req/s", "non-2xx", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "MB in"));
+        var seconds = measured.toNanos() / 1_000_000_000.0;
+        var totalNon2xx = 0L;
+        var totalErrors = 0L;
+        var totalBytes = 0L;
+        for (var entry : stats.getEndpointStats().entrySet()) {
+            var endpointStats = entry.getValue();
+            summary.append(latencyLine(entry.getKey().getKey(), endpointStats.getLatencies(), seconds,
+                    endpointStats.getNon2xx(), endpointStats.getErrors(), endpointStats.getBytes()));
+            totalNon2xx += endpointStats.getNon2xx();
+            totalErrors += endpointStats.getErrors();
+            totalBytes += endpointStats.getBytes();
+            writeHistogram(reportDir.resolve("latency-" + entry.getKey().getKey() + ".hgrm"), endpointStats.getLatencies());
+        }
+        var total = stats.totalLatencies();
+        summary.append(latencyLine("total", total, seconds, totalNon2xx, totalErrors, totalBytes));
+        writeHistogram(reportDir.resolve("latency-total.hgrm"), total);
+
+        summary.append(String.format("%n%-30s %12s %12s%n", "collector", "collections", "time ms"));
+        after.collectionsSince(before).forEach((collector, counts) ->
+                summary.append(String.format("%-30s %12d %12d%n", collector, counts[0], counts[1])));
+        var allocated = after.allocatedBytesSince(before);
+        var heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        summary.append(String.format("%nallocated by the services       : %10.1f MB/s%n", allocated[0] / BYTES_PER_MB / seconds))
+                .append(String.format("allocated by the load generator : %10.1f MB/s%n", allocated[1] / BYTES_PER_MB / seconds))
+                .append(String.format("heap used after the run         : %10.1f MB of %.1f MB%n", heap.getUsed() / BYTES_PER_MB, heap.getMax() / BYTES_PER_MB));
+
+        Files.writeString(reportDir.resolve("summary.txt"), summary);
+        log.info("Load test results, also written to {} :{}{}", reportDir.toAbsolutePath(), System.lineSeparator(), summary);
+    }
+
+    private static String latencyLine(String name, Histogram latencies, double seconds, long non2xx, long errors, long bytes) {
+        return String.format("%-12s %10d %10.1f %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f %10.1f%n", name,
+                latencies.getTotalCount() + errors, latencies.getTotalCount() / seconds, non2xx, errors,
+                millis(latencies, 50), millis(latencies, 90), millis(latencies, 99), millis(latencies, 99.9),
+                latencies.getMaxValue() / NANOS_PER_MILLI, bytes / BYTES_PER_MB);
+    }
+
+    private static double millis(Histogram latencies, double percentile) {
+        return latencies.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+
+    private static void writeHistogram(Path file, Histogram latencies) throws IOException {
+        try (var out = new PrintStream(new FileOutputStream(file.toFile()))) {
+            latencies.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+}
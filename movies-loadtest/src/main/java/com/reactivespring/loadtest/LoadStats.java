@@ -0,0 +1,70 @@
+package com.reactivespring.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the requests of one run, per endpoint. Latencies are recorded in nanoseconds with three
+ * significant digits, the histograms resize themselves to the slowest response.
+ */
+class LoadStats {
+
+    private final Map<Endpoint, EndpointStats> endpointStats = new EnumMap<>(Endpoint.class);
+
+    LoadStats(Collection<Endpoint> endpoints) {
+        endpoints.forEach(endpoint -> endpointStats.put(endpoint, new EndpointStats()));
+    }
+
+    void record(Endpoint endpoint, int status, long bytes, long latencyNanos) {
+        var stats = endpointStats.get(endpoint);
+        stats.latencies.recordValue(latencyNanos);
+        stats.bytes.add(bytes);
+        if (status < 200 || status >= 300) {
+            stats.non2xx.increment();
+        }
+    }
+
+    //a request without a response, e.g. a refused connection, has no latency to report
+    void recordError(Endpoint endpoint) {
+        endpointStats.get(endpoint).errors.increment();
+    }
+
+    Map<Endpoint, EndpointStats> getEndpointStats() {
+        return endpointStats;
+    }
+
+    Histogram totalLatencies() {
+        var total = new Histogram(3);
+        endpointStats.values().forEach(stats -> total.add(stats.latencies));
+        return total;
+    }
+
+    static class EndpointStats {
+
+        private final ConcurrentHistogram latencies = new ConcurrentHistogram(3);
+        private final LongAdder non2xx = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        Histogram getLatencies() {
+            return latencies;
+        }
+
+        long getNon2xx() {
+            return non2xx.sum();
+        }
+
+        long getErrors() {
+            return errors.sum();
+        }
+
+        long getBytes() {
+            return bytes.sum();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.reactivespring.loadtest;
+
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local end to end load test: starts an embedded mongod, seeds the catalogue, boots movies-info-service,
+ * movies-review-service and movies-service in process on random ports, then drives open model traffic at them,
+ * first to warm them up, then for the measured run, and writes the report.
+ * Start it with ./gradlew :movies-loadtest:loadTest, the settings are described in LoadTestConfig.
+ */
+@Slf4j
+public class LoadTest {
+
+    static final String MOVIES_SERVICE = "movies-service";
+    static final String MOVIES_INFO_SERVICE = "movies-info-service";
+    static final String MOVIES_REVIEW_SERVICE = "movies-review-service";
+
+    private static final String DATABASE = "loadtest";
+    private static final Duration SEARCH_TOKENS_TIMEOUT = Duration.ofMinutes(30);
+
+    public static void main(String[] args) throws Exception {
+        var config = LoadTestConfig.fromSystemProperties();
+        try (var mongod = Mongod.instance().start(Version.Main.V6_0)) {
+            var serverAddress = mongod.current().getServerAddress();
+            try (var mongoClient = MongoClients.create("mongodb://" + serverAddress.getHost() + ":" + serverAddress.getPort())) {
+                var database = mongoClient.getDatabase(DATABASE);
+                new CatalogueSeeder(database, config).seed();
+                run(config, database, serverAddress.getPort());
+            }
+        }
+    }
+
+    private static void run(LoadTestConfig config, MongoDatabase database, int mongoPort) throws Exception {
+        Deque<RunningService> services = new ArrayDeque<>();
+        try {
+            //index builds over the seeded collections take a while, the default timeout is sized for an empty database
+            var movieInfoService = start(services, MOVIES_INFO_SERVICE, "com.reactivespring.moviesinfoservice.MoviesInfoServiceApplication",
+                    config, mongoPort, List.of("--movieInfo.indexes.timeout=30m"));
+            var movieReviewService = start(services, MOVIES_REVIEW_SERVICE, "com.reactivespring.MoviesReviewServiceApplication",
+                    config, mongoPort, List.of("--review.indexes.timeout=30m"));
+            var movieService = start(services, MOVIES_SERVICE, "com.reactivespring.MoviesServiceApplication", config, mongoPort,
+                    List.of("--restClient.movieInfoUrl=" + movieInfoService.baseUrl() + "/v1/movieInfos",
+                            "--restClient.movieReviewUrl=" + movieReviewService.baseUrl() + "/v1/review"));
+            awaitSearchTokens(database);
+
+            var baseUrls = Map.of(MOVIES_INFO_SERVICE, movieInfoService.baseUrl(),
+                    MOVIES_REVIEW_SERVICE, movieReviewService.baseUrl(),
+                    MOVIES_SERVICE, movieService.baseUrl());
+            try (var loadGenerator = new OpenModelLoadGenerator(config, baseUrls)) {
+                log.info("Warming up for {}s at {} rps", config.getWarmup().toSeconds(), config.getRps());
+                loadGenerator.run(config.getWarmup());
+                log.info("Measuring for {}s at {} rps", config.getDuration().toSeconds(), config.getRps());
+                var before = JvmStats.capture();
+                var start = System.nanoTime();
+                var stats = loadGenerator.run(config.getDuration());
+                var measured = Duration.ofNanos(System.nanoTime() - start);
+                LoadReport.write(config, stats, measured, before, JvmStats.capture());
+            }
+        } finally {
+            while (!services.isEmpty()) {
+                var service = services.pop();
+                try {
+                    service.close();
+                } catch (Exception e) {
+                    log.warn("Stopping {} failed : {}", service.name(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static RunningService start(Deque<RunningService> services, String name, String mainClass,
+                                        LoadTestConfig config, int mongoPort, List<String> serviceArgs) throws Exception {
+        var args = new ArrayList<>(List.of("--server.port=0", "--management.server.port=0",
+                "--spring.data.mongodb.host=localhost", "--spring.data.mongodb.port=" + mongoPort,
+                "--spring.data.mongodb.database=" + DATABASE, "--spring.main.banner-mode=off",
+                "--logging.level.root=" + config.getServiceLogLevel(), "--spring.profiles.active=" + config.getServiceProfiles()));
+        args.addAll(serviceArgs);
+        var service = ServiceLauncher.start(name, mainClass, config.classpathOf(name), args);
+        services.push(service);
+        return service;
+    }
+
+    //movies-info-service adds the search tokens of the seeded titles in the background once it is ready
+    private static void awaitSearchTokens(MongoDatabase database) throws InterruptedException {
+        var movieInfos = database.getCollection("movieInfo");
+        var deadline = System.nanoTime() + SEARCH_TOKENS_TIMEOUT.toNanos();
+        long missing;
+        while ((missing = movieInfos.countDocuments(Filters.exists("searchTokens", false))) > 0) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(missing + " titles still have no search tokens after " + SEARCH_TOKENS_TIMEOUT);
+            }
+            log.info("Waiting for the search tokens of {} titles", missing);
+            Thread.sleep(5_000);
+        }
+    }
+}
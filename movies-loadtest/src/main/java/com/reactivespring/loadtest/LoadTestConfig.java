@@ -0,0 +1,100 @@
+package com.reactivespring.loadtest;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Settings of a load test run, read from the loadTest.* system properties (-PloadTest.* when started with
+ * ./gradlew loadTest):
+ * titles, reviewsPerTitle - size of the seeded catalogue, 100k titles with 100 reviews each by default
+ * rps                     - requests per second sent whatever the response times, the load model is open
+ * warmup, duration        - e.g. 30s or 2m, only the requests sent after the warmup are reported
+ * mix                     - relative weight of every endpoint, e.g. movie:60,movieInfo:10,reviews:10,search:10,page:10
+ * maxConnections          - connection pool size of the load generator, per service
+ * seedThreads             - threads inserting the reviews
+ * serviceLogLevel         - root log level of the services, the .log() operators would flood the console at INFO
+ * serviceProfiles         - active profiles of the services, e.g. local,virtual-threads to compare the offload modes
+ */
+@Getter
+public class LoadTestConfig {
+
+    private static final String PREFIX = "loadTest.";
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(ms|s|m|h)");
+
+    private final int titles;
+    private final int reviewsPerTitle;
+    private final int rps;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Map<Endpoint, Integer> mix;
+    private final int maxConnections;
+    private final int seedThreads;
+    private final String serviceLogLevel;
+    private final String serviceProfiles;
+    private final Path reportDir;
+
+    private LoadTestConfig() {
+        titles = Integer.parseInt(property("titles", "100000"));
+        reviewsPerTitle = Integer.parseInt(property("reviewsPerTitle", "100"));
+        rps = Integer.parseInt(property("rps", "500"));
+        warmup = toDuration(property("warmup", "30s"));
+        duration = toDuration(property("duration", "2m"));
+        mix = toMix(property("mix", "movie:60,movieInfo:10,reviews:10,search:10,page:10"));
+        maxConnections = Integer.parseInt(property("maxConnections", "500"));
+        seedThreads = Integer.parseInt(property("seedThreads", "4"));
+        serviceLogLevel = property("serviceLogLevel", "WARN");
+        serviceProfiles = property("serviceProfiles", "local");
+        reportDir = Path.of(property("reportDir", "build/reports/loadtest"));
+        if (titles < 1 || reviewsPerTitle < 0 || rps < 1 || maxConnections < 1 || seedThreads < 1) {
+            throw new IllegalArgumentException("titles, rps, maxConnections and seedThreads must be positive, reviewsPerTitle must not be negative");
+        }
+    }
+
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig();
+    }
+
+    public String classpathOf(String service) {
+        var classpath = System.getProperty(PREFIX + "classpath." + service);
+        if (classpath == null) {
+            throw new IllegalStateException("No classpath for " + service + ", start the load test with ./gradlew loadTest");
+        }
+        return classpath;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+
+    private static Duration toDuration(String value) {
+        var matcher = DURATION.matcher(value.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid duration " + value + ", use e.g. 500ms, 30s, 2m or 1h");
+        }
+        var amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "ms" -> Duration.ofMillis(amount);
+            case "s" -> Duration.ofSeconds(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            default -> Duration.ofHours(amount);
+        };
+    }
+
+    private static Map<Endpoint, Integer> toMix(String value) {
+        var mix = Arrays.stream(value.split(","))
+                .map(entry -> entry.trim().split(":"))
+                .collect(Collectors.toMap(entry -> Endpoint.ofKey(entry[0]), entry -> Integer.parseInt(entry[1]),
+                        Integer::sum, () -> new EnumMap<>(Endpoint.class)));
+        if (mix.values().stream().anyMatch(weight -> weight < 0) || mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Invalid mix " + value + ", weights must not be negative and not all be 0");
+        }
+        return mix;
+    }
+}
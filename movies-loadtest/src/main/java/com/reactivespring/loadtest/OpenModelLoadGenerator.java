@@ -0,0 +1,113 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+
+/**
+ * Open model load generator: requests are sent at a fixed rate whatever the response times, like independent users
+ * would, instead of waiting for a response before sending the next request. Every latency is measured from the time
+ * the request was scheduled, not from the time it was sent, so requests queued behind a slow service count their
+ * wait and a stall can't hide itself by slowing the generator down (coordinated omission).
+ * Requests go through Reactor Netty on event loops of their own, named loadtest-*, so the generator never blocks and
+ * its threads can be told apart from the services' ones.
+ */
+@Slf4j
+class OpenModelLoadGenerator implements AutoCloseable {
+
+    private static final Duration TICK = Duration.ofMillis(1);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(1);
+
+    private final LoadTestConfig config;
+    private final Map<String, String> baseUrls;
+    private final Endpoint[] endpoints;
+    private final int[] cumulativeWeights;
+    private final ConnectionProvider connectionProvider;
+    private final LoopResources loopResources;
+    private final HttpClient httpClient;
+
+    OpenModelLoadGenerator(LoadTestConfig config, Map<String, String> baseUrls) {
+        this.config = config;
+        this.baseUrls = baseUrls;
+        var mix = config.getMix().entrySet().stream().filter(entry -> entry.getValue() > 0).toList();
+        this.endpoints = mix.stream().map(Map.Entry::getKey).toArray(Endpoint[]::new);
+        this.cumulativeWeights = new int[mix.size()];
+        var weight = 0;
+        for (int i = 0; i < mix.size(); i++) {
+            weight += mix.get(i).getValue();
+            cumulativeWeights[i] = weight;
+        }
+        this.connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(config.getMaxConnections())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.loopResources = LoopResources.create("loadtest");
+        this.httpClient = HttpClient.create(connectionProvider).runOn(loopResources);
+    }
+
+    LoadStats run(Duration duration) {
+        var stats = new LoadStats(config.getMix().keySet());
+        var intervalNanos = 1_000_000_000.0 / config.getRps();
+        var requestCount = (long) (duration.toNanos() / intervalNanos);
+        var ticker = Schedulers.newSingle("loadtest-ticker");
+        try {
+            var start = System.nanoTime();
+            //only touched by the ticker thread
+            var scheduled = new long[1];
+            Flux.interval(TICK, ticker)
+                    .onBackpressureDrop()
+                    .takeWhile(tick -> scheduled[0] < requestCount)
+                    .flatMapIterable(tick -> {
+                        var due = Math.min(requestCount, (long) ((System.nanoTime() - start) / intervalNanos) + 1);
+                        var requests = LongStream.range(scheduled[0], due).boxed().toList();
+                        scheduled[0] = due;
+                        return requests;
+                    })
+                    .flatMap(request -> send(start + (long) (request * intervalNanos), stats), Integer.MAX_VALUE)
+                    .then()
+                    .block(duration.plus(DRAIN_TIMEOUT));
+        } finally {
+            ticker.dispose();
+        }
+        return stats;
+    }
+
+    private Mono<Void> send(long scheduledNanos, LoadStats stats) {
+        var random = ThreadLocalRandom.current();
+        var endpoint = pickEndpoint(random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]));
+        var uri = baseUrls.get(endpoint.getService()) + endpoint.uriOf(random.nextInt(config.getTitles()));
+        return httpClient.get()
+                .uri(uri)
+                .responseSingle((response, body) -> body.asByteArray()
+                        .map(bytes -> (long) bytes.length)
+                        .defaultIfEmpty(0L)
+                        .doOnNext(bytes -> stats.record(endpoint, response.status().code(), bytes, System.nanoTime() - scheduledNanos)))
+                .doOnError(ex -> stats.recordError(endpoint))
+                .onErrorResume(ex -> Mono.empty())
+                .then();
+    }
+
+    private Endpoint pickEndpoint(int weight) {
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (weight < cumulativeWeights[i]) {
+                return endpoints[i];
+            }
+        }
+        return endpoints[endpoints.length - 1];
+    }
+
+    @Override
+    public void close() {
+        connectionProvider.dispose();
+        loopResources.dispose();
+    }
+}
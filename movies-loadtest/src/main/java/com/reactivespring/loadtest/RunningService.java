@@ -0,0 +1,23 @@
+package com.reactivespring.loadtest;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+
+/**
+ * A service booted by ServiceLauncher. Its application context is only reachable reflectively, its classes live in
+ * its own class loader.
+ */
+record RunningService(String name, int port, Object applicationContext, URLClassLoader classLoader) implements AutoCloseable {
+
+    String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    @Override
+    public void close() throws ReflectiveOperationException, IOException {
+        classLoader.loadClass("org.springframework.context.ConfigurableApplicationContext")
+                .getMethod("close")
+                .invoke(applicationContext);
+        classLoader.close();
+    }
+}
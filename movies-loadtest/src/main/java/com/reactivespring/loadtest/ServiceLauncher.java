@@ -0,0 +1,52 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots a service in process, in a class loader of its own whose parent is the platform class loader: the services
+ * don't see the harness classes nor each other's, so movies-service and movies-review-service can both load their
+ * com.reactivespring classes, and every service runs with the exact dependencies of its own build.
+ */
+@Slf4j
+class ServiceLauncher {
+
+    private ServiceLauncher() {
+    }
+
+    static RunningService start(String name, String mainClass, String classpath, List<String> args)
+            throws ReflectiveOperationException, MalformedURLException {
+        var urls = new ArrayList<URL>();
+        for (var entry : classpath.split(File.pathSeparator)) {
+            urls.add(Path.of(entry).toUri().toURL());
+        }
+        var classLoader = new URLClassLoader(name, urls.toArray(URL[]::new), ClassLoader.getPlatformClassLoader());
+        //Spring and the threads the service starts pick their class loader from the starting thread
+        var thread = Thread.currentThread();
+        var previousClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            var start = System.nanoTime();
+            var applicationContext = classLoader.loadClass("org.springframework.boot.SpringApplication")
+                    .getMethod("run", Class.class, String[].class)
+                    .invoke(null, classLoader.loadClass(mainClass), args.toArray(String[]::new));
+            var environment = classLoader.loadClass("org.springframework.context.ConfigurableApplicationContext")
+                    .getMethod("getEnvironment")
+                    .invoke(applicationContext);
+            var port = (String) classLoader.loadClass("org.springframework.core.env.PropertyResolver")
+                    .getMethod("getProperty", String.class)
+                    .invoke(environment, "local.server.port");
+            log.info("Started {} on port {} in {}ms", name, port, (System.nanoTime() - start) / 1_000_000);
+            return new RunningService(name, Integer.parseInt(port), applicationContext, classLoader);
+        } finally {
+            thread.setContextClassLoader(previousClassLoader);
+        }
+    }
+}
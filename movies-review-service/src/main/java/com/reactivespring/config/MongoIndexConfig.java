@@ -0,0 +1,27 @@
+package com.reactivespring.config;
+
+import com.reactivespring.common.mongo.MongoIndexInitializer;
+import com.reactivespring.domain.Review;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Creates the indexes of Review at startup, see MongoIndexInitializer.
+ * Turn it off with review.indexes.createOnStartup=false when indexes are rolled out separately.
+ */
+@Configuration
+@ConditionalOnProperty(name = "review.indexes.createOnStartup", havingValue = "true", matchIfMissing = true)
+public class MongoIndexConfig {
+
+    @Bean
+    public MongoIndexInitializer mongoIndexInitializer(ReactiveMongoTemplate reactiveMongoTemplate,
+                                                       @Value("${review.indexes.timeout:60s}") Duration timeout) {
+        return new MongoIndexInitializer(reactiveMongoTemplate, List.of(Review.class), timeout);
+    }
+}
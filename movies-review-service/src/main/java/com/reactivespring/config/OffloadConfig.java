@@ -0,0 +1,22 @@
+package com.reactivespring.config;
+
+import com.reactivespring.common.offload.StageOffloader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * review.offload.mode picks where the stages named in review.offload.stages run, see StageOffloader.
+ * The virtual-threads profile turns the virtual-threads mode on.
+ */
+@Configuration
+public class OffloadConfig {
+
+    @Bean
+    public StageOffloader stageOffloader(@Value("${review.offload.mode:event-loop}") String mode,
+                                         @Value("${review.offload.stages:validation,bulk}") Set<String> stages) {
+        return new StageOffloader(mode, stages);
+    }
+}
@@ -7,12 +7,21 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+@CompoundIndexes({
+        //its movieInfoId prefix serves the per movie lookups and the stats recompute, a separate movieInfoId index would be redundant
+        @CompoundIndex(name = "movieInfoId_rating", def = "{'movieInfoId': 1, 'rating': 1}"),
+        //keyset pages sorted by rating, ties broken on _id
+        @CompoundIndex(name = "rating_id", def = "{'rating': 1, '_id': 1}")
+})
 public class Review {
 
     @Id
@@ -22,4 +31,14 @@ public class Review {
     private String comment;
     @Min(value = 0L, message = "rating.negative : please pass a non-negative value")
     private Double rating;
+    //bumped on every write, a concurrent upsert of a stale copy fails instead of overwriting
+    @Version
+    private Long version;
+
+    public Review(String reviewId, Long movieInfoId, String comment, Double rating) {
+        this.reviewId = reviewId;
+        this.movieInfoId = movieInfoId;
+        this.comment = comment;
+        this.rating = rating;
+    }
 }
@@ -0,0 +1,37 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+
+/**
+ * Rating aggregate of one movie, kept up to date with atomic updates whenever one of its reviews is added, updated or
+ * deleted, so reading it doesn't depend on the number of reviews.
+ * count covers every review, ratingCount only the ones with a rating. The histogram counts rated reviews per whole
+ * rating point, keyed by the floor of the rating.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewStats {
+
+    @Id
+    private Long movieInfoId;
+    private long count;
+    private long ratingCount;
+    private double sum;
+    private Double min;
+    private Double max;
+    private Map<String, Long> histogram;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Double getAverage() {
+        return ratingCount == 0 ? null : sum / ratingCount;
+    }
+}
@@ -0,0 +1,250 @@
+package com.reactivespring.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.reactivespring.common.offload.StageOffloader;
+import com.reactivespring.domain.BulkIngestResult;
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.MovieReviewRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Bulk import of reviews sent as NDJSON lines, blank lines are skipped. Records are grouped into batches of batchSize,
+ * each batch is parsed and validated in one bulk stage, which the StageOffloader can move off the event loop, and
+ * written with one unordered bulk write, then the ReviewStats of the written reviews are updated with one update per
+ * movie. One result per record is emitted in request order, and the body is only read as fast as batches are written.
+ * Stream subscribers see the imported reviews through the change stream like any other write. A malformed line is
+ * reported as INVALID, like a record breaking a constraint, and doesn't stop the import.
+ * <p>
+ * In upsert mode every record must carry its reviewId and replaces the stored review with that id. The stored
+ * reviews are read before the write to move the stats from the old rating to the new one, so upsert batches run
+ * one after the other and a reviewId repeated within a batch is rejected as a DUPLICATE. The replacement takes over the
+ * version read with them, so a review updated in between is reported as a DUPLICATE instead of being overwritten,
+ * and one deleted in between is inserted again and counted as added.
+ */
+@Component
+@Slf4j
+public class ReviewBulkIngest {
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    @Autowired
+    private MovieReviewRepository movieReviewRepository;
+
+    @Autowired
+    private ReviewStatsRepository reviewStatsRepository;
+
+    @Autowired
+    private ReviewValidator reviewValidator;
+
+    @Autowired
+    private StageOffloader stageOffloader;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${review.bulk.batchSize:1000}")
+    private int batchSize;
+
+    @Value("${review.bulk.concurrency:4}")
+    private int concurrency;
+
+    public Flux<BulkIngestResult> ingest(Flux<String> records, boolean upsert) {
+        var batches = records.filter(record -> !record.isBlank())
+                .index()
+                .buffer(batchSize)
+                .flatMapSequential(batch -> stageOffloader.run(StageOffloader.BULK, () -> validate(batch, upsert)), concurrency);
+        return upsert
+                ? batches.concatMap(this::upsertBatch)
+                : batches.flatMapSequential(this::insertBatch, concurrency);
+    }
+
+    private List<Record> validate(List<Tuple2<Long, String>> batch, boolean upsert) {
+        return batch.stream().map(record -> validate(record.getT1(), record.getT2(), upsert)).toList();
+    }
+
+    private Record validate(long index, String record, boolean upsert) {
+        Review review;
+        try {
+            review = objectMapper.readValue(record, Review.class);
+        } catch (JsonProcessingException e) {
+            return new Record(null, new BulkIngestResult(index, null, BulkIngestResult.Status.INVALID,
+                    "Malformed record : " + e.getOriginalMessage()));
+        }
+        var message = reviewValidator.violationsOf(review);
+        if (message == null && upsert && review.getReviewId() == null) {
+            message = "review.reviewId must not be null in upsert mode";
+        }
+        var result = new BulkIngestResult(index, review.getReviewId(),
+                message == null ? BulkIngestResult.Status.CREATED : BulkIngestResult.Status.INVALID, message);
+        return new Record(review, result);
+    }
+
+    private Flux<BulkIngestResult> insertBatch(List<Record> batch) {
+        var valid = validRecords(batch);
+        //ids are assigned up front to report them, a valid ObjectId string is still stored as an ObjectId
+        valid.forEach(record -> {
+            if (record.review().getReviewId() == null) {
+                record.review().setReviewId(new ObjectId().toHexString());
+            }
+            record.result().setReviewId(record.review().getReviewId());
+        });
+        if (valid.isEmpty()) {
+            return results(batch);
+        }
+        return movieReviewRepository.insertUnordered(reviews(valid))
+                .doOnNext(writeError -> markFailed(valid.get(writeError.getIndex()), writeError))
+                .then()
+                .onErrorResume(ex -> markBatchFailed(valid, ex))
+                .then(Mono.defer(() -> {
+                    var written = written(valid);
+                    return recordStats(written, reviewStatsRepository.recordAddedAll(reviews(written)));
+                }))
+                .thenMany(results(batch));
+    }
+
+    private Flux<BulkIngestResult> upsertBatch(List<Record> batch) {
+        var valid = new ArrayList<Record>();
+        var reviewIds = new HashSet<String>();
+        for (var record : validRecords(batch)) {
+            if (reviewIds.add(record.review().getReviewId())) {
+                valid.add(record);
+            } else {
+                record.result().setStatus(BulkIngestResult.Status.DUPLICATE);
+                record.result().setMessage("reviewId " + record.review().getReviewId() + " is repeated within the batch");
+            }
+        }
+        if (valid.isEmpty()) {
+            return results(batch);
+        }
+        return movieReviewRepository.findAllById(reviewIds)
+                .collectMap(Review::getReviewId, Function.identity())
+                .doOnNext(previousReviews -> valid.forEach(record -> {
+                    var previousReview = previousReviews.get(record.review().getReviewId());
+                    record.review().setVersion(previousReview == null ? null : previousReview.getVersion());
+                }))
+                .flatMap(previousReviews -> movieReviewRepository.upsertUnordered(reviews(valid))
+                        .doOnNext(writeResult -> writeResult.getWriteErrors()
+                                .forEach(writeError -> markFailed(valid.get(writeError.getIndex()), writeError)))
+                        .map(writeResult -> Tuples.of(previousReviews, writeResult.getInsertedIndexes())))
+                .onErrorResume(ex -> markBatchFailed(valid, ex))
+                .flatMap(written -> recordUpserted(valid, written.getT1(), written.getT2()))
+                .thenMany(results(batch));
+    }
+
+    /**
+     * A replaced review had exactly the version read before the write, so the review read with it is the one it
+     * replaced. A review inserted instead was new, or deleted in between, either way the stats count it as added.
+     */
+    private Mono<Void> recordUpserted(List<Record> valid, Map<String, Review> previousReviews, Set<Integer> insertedIndexes) {
+        var written = new ArrayList<Record>();
+        var added = new ArrayList<Review>();
+        var updated = new ArrayList<Record>();
+        for (int i = 0; i < valid.size(); i++) {
+            var record = valid.get(i);
+            if (record.result().getMessage() != null) {
+                continue;
+            }
+            written.add(record);
+            if (insertedIndexes.contains(i) || !previousReviews.containsKey(record.review().getReviewId())) {
+                added.add(record.review());
+            } else {
+                record.result().setStatus(BulkIngestResult.Status.UPDATED);
+                updated.add(record);
+            }
+        }
+        var statsUpdate = reviewStatsRepository.recordAddedAll(added)
+                .thenMany(Flux.fromIterable(updated))
+                .concatMap(record -> reviewStatsRepository.recordUpdated(previousReviews.get(record.review().getReviewId()), record.review()))
+                .then();
+        return recordStats(written, previousReviews, statsUpdate);
+    }
+
+    private Mono<Void> recordStats(List<Record> written, Mono<Void> statsUpdate) {
+        return recordStats(written, Map.of(), statsUpdate);
+    }
+
+    /**
+     * The reviews are written by now, so a failing stats update must not report them as failed, a client retrying them
+     * would import them twice. The stats of every movie they touched are rebuilt from the reviews instead, and only the
+     * records of a movie whose rebuild fails too keep their status with a message saying its stats are stale.
+     */
+    private Mono<Void> recordStats(List<Record> written, Map<String, Review> previousReviews, Mono<Void> statsUpdate) {
+        return statsUpdate.onErrorResume(ex -> {
+            log.warn("Updating the review stats of {} written reviews failed, rebuilding them : {}", written.size(), ex.getMessage());
+            var recordsByMovie = new HashMap<Long, List<Record>>();
+            written.forEach(record -> {
+                recordsByMovie.computeIfAbsent(record.review().getMovieInfoId(), movieInfoId -> new ArrayList<>()).add(record);
+                var previousReview = previousReviews.get(record.review().getReviewId());
+                if (previousReview != null && !Objects.equals(previousReview.getMovieInfoId(), record.review().getMovieInfoId())) {
+                    recordsByMovie.computeIfAbsent(previousReview.getMovieInfoId(), movieInfoId -> new ArrayList<>()).add(record);
+                }
+            });
+            return Flux.fromIterable(recordsByMovie.entrySet())
+                    .flatMap(movie -> reviewStatsRepository.rebuild(movie.getKey())
+                            .onErrorResume(rebuildEx -> {
+                                log.error("Rebuilding the review stats of movie {} failed : {}", movie.getKey(), rebuildEx.getMessage());
+                                movie.getValue().forEach(record -> record.result().setMessage(
+                                        "Written, but the review stats of movie " + movie.getKey() + " are stale : " + rebuildEx.getMessage()));
+                                return Mono.empty();
+                            }), concurrency)
+                    .then();
+        });
+    }
+
+    private static void markFailed(Record record, BulkWriteError writeError) {
+        record.result().setStatus(writeError.getCode() == DUPLICATE_KEY_ERROR
+                ? BulkIngestResult.Status.DUPLICATE : BulkIngestResult.Status.FAILED);
+        record.result().setMessage(writeError.getMessage());
+    }
+
+    //the write itself failed, without a per document outcome none of the records can be reported as written
+    private static <T> Mono<T> markBatchFailed(List<Record> records, Throwable ex) {
+        log.error("Bulk write of {} reviews failed : {}", records.size(), ex.getMessage());
+        records.stream()
+                .filter(record -> record.result().getStatus() != BulkIngestResult.Status.DUPLICATE)
+                .forEach(record -> {
+                    record.result().setStatus(BulkIngestResult.Status.FAILED);
+                    record.result().setMessage(ex.getMessage());
+                });
+        return Mono.empty();
+    }
+
+    private static List<Record> validRecords(List<Record> batch) {
+        return batch.stream().filter(record -> record.result().getStatus() != BulkIngestResult.Status.INVALID).toList();
+    }
+
+    private static List<Record> written(List<Record> records) {
+        return records.stream().filter(record -> record.result().getMessage() == null).toList();
+    }
+
+    private static List<Review> reviews(List<Record> records) {
+        return records.stream().map(Record::review).toList();
+    }
+
+    private static Flux<BulkIngestResult> results(List<Record> batch) {
+        return Flux.fromIterable(batch).map(Record::result);
+    }
+
+    private record Record(Review review, BulkIngestResult result) {
+    }
+}
@@ -1,64 +1,233 @@
 package com.reactivespring.handler;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.common.offload.StageOffloader;
+import com.reactivespring.common.paging.PageToken;
+import com.reactivespring.domain.BulkIngestResult;
 import com.reactivespring.domain.Review;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
 import com.reactivespring.repository.MovieReviewRepository;
-import jakarta.validation.ConstraintViolation;
-import jakarta.validation.Validator;
+import com.reactivespring.repository.ReviewChangeStream;
+import com.reactivespring.repository.ReviewSort;
+import com.reactivespring.repository.ReviewStatsRepository;
+import com.reactivespring.stream.ReviewEventStream;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class ReviewHandler {
 
-    Sinks.Many<Review> reviewSink = Sinks.many().replay().all();
+    private static final Pattern NUMERIC_ID = Pattern.compile("\\d{1,18}");
+
+    private static final String RESUME_TOKEN_PARAM = "resumeToken";
+    public static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
+
     @Autowired
     private MovieReviewRepository movieReviewRepository;
 
     @Autowired
-    private Validator validator;
+    private ReviewStatsRepository reviewStatsRepository;
+
+    @Autowired
+    private ReviewEventStream reviewEventStream;
+
+    @Autowired
+    private ReviewBulkIngest reviewBulkIngest;
+
+    @Autowired
+    private ReviewValidator reviewValidator;
+
+    @Autowired
+    private StageOffloader stageOffloader;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${review.pagination.defaultLimit:50}")
+    private int defaultPageLimit;
+
+    @Value("${review.pagination.maxLimit:500}")
+    private int maxPageLimit;
+
+    @Value("${review.pagination.allowUnpaged:false}")
+    private boolean allowUnpaged;
 
     public Mono<ServerResponse> addReview(ServerRequest request) {
         return request.bodyToMono(Review.class)
-                .doOnNext(this::validate)
+                .flatMap(review -> stageOffloader.run(StageOffloader.VALIDATION, () -> {
+                    reviewValidator.validate(review);
+                    //always inserted at version 0, whatever version the client sent
+                    review.setVersion(null);
+                    return review;
+                }))
                 .flatMap(movieReviewRepository::save)
-                .doOnNext(review -> reviewSink.tryEmitNext(review))
+                .flatMap(review -> reviewStatsRepository.recordAdded(review).thenReturn(review))
                 .flatMap(ServerResponse.status(HttpStatus.CREATED)::bodyValue).log();
     }
 
-    private void validate(Review review) {
-        var constraintVoilationSet = validator.validate(review);
-        if (!constraintVoilationSet.isEmpty()) {
-            var errorMessage = constraintVoilationSet.stream()
-                    .map(ConstraintViolation::getMessage)
-                    .sorted().collect(Collectors.joining(","));
-            log.error("contraintViolation {}", errorMessage);
-            throw new ReviewDataException(errorMessage);
+    /**
+     * Imports reviews sent as NDJSON, one result per record is streamed back as NDJSON. The body is read line by line,
+     * every line is parsed on its own so a malformed one is reported instead of failing the import.
+     * mode=upsert replaces the stored review with the same reviewId instead of inserting a new one.
+     */
+    public Mono<ServerResponse> addReviewsBulk(ServerRequest serverRequest) {
+        var mode = serverRequest.queryParam("mode").orElse("insert");
+        if (!mode.equals("insert") && !mode.equals("upsert")) {
+            return Mono.error(new ReviewDataException("Unknown mode " + mode + ", use insert or upsert"));
         }
+        var results = reviewBulkIngest.ingest(serverRequest.bodyToFlux(String.class), mode.equals("upsert"));
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(results, BulkIngestResult.class);
     }
 
     public Mono<ServerResponse> getReviews(ServerRequest serverRequest) {
         var querParam = serverRequest.queryParam("movieInfoId");
         if (querParam.isPresent()) {
-            var reviewFlux = movieReviewRepository.findReviewsByMovieInfoId(Long.valueOf(querParam.get()))
-                    .switchIfEmpty(Flux.error(new ReviewNotFoundException("Review Not Found for given movieId :"+querParam.get())));
-            return ServerResponse.ok().body(reviewFlux, Review.class).log();
-        } else {
+            return movieReviewRepository.findReviewsByMovieInfoIdOrderByReviewId(Long.valueOf(querParam.get()))
+                    .collectList()
+                    .filter(reviews -> !reviews.isEmpty())
+                    .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review Not Found for given movieId :"+querParam.get())))
+                    .flatMap(reviews -> reviewsResponse(serverRequest, reviews)).log();
+        }
+        if (Boolean.parseBoolean(serverRequest.queryParam("all").orElse("false"))) {
+            if (!allowUnpaged) {
+                return Mono.error(new ReviewDataException("Unpaged listing is disabled, page through the results with limit and pageToken"));
+            }
+            log.warn("Streaming every review unpaged");
             var reviewFlux = movieReviewRepository.findAll();
             return ServerResponse.ok().body(reviewFlux, Review.class).log();
         }
+        //the page params are parsed lazily, so a bad one surfaces as an error signal for the exception handler
+        return Mono.defer(() -> getReviewsPage(serverRequest));
+    }
+
+    /**
+     * The reviews of one movie, read in id order, with a strong ETag hashed from their serialized list. A request whose
+     * If-None-Match matches it gets a 304 without a body. The header has to be known before the first byte is written,
+     * so the list is serialized once up front and those bytes are both hashed and sent.
+     */
+    private Mono<ServerResponse> reviewsResponse(ServerRequest serverRequest, List<Review> reviews) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(reviews);
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        var eTag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        return serverRequest.checkNotModified(eTag)
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                        .eTag(eTag).bodyValue(body)));
+    }
+
+    /**
+     * Lists reviews one keyset page at a time, ordered by id or by rating (sort=rating). One review more than the limit
+     * is read to know whether another page follows, its token is returned in the X-Next-Page-Token header.
+     */
+    private Mono<ServerResponse> getReviewsPage(ServerRequest serverRequest) {
+        var sort = toReviewSort(serverRequest.queryParam("sort").orElse("id"));
+        var limit = serverRequest.queryParam("limit").map(this::toPageLimit).orElse(defaultPageLimit);
+        var after = serverRequest.queryParam("pageToken").map(pageToken -> decodePageToken(sort, pageToken)).orElse(null);
+
+        return movieReviewRepository.findPage(sort, after, limit + 1)
+                .collectList()
+                .flatMap(reviews -> {
+                    if (reviews.size() <= limit) {
+                        return ServerResponse.ok().bodyValue(reviews);
+                    }
+                    var page = reviews.subList(0, limit);
+                    var nextPageToken = movieReviewRepository.pageTokenOf(sort, page.get(limit - 1)).encode();
+                    return ServerResponse.ok().header(NEXT_PAGE_TOKEN_HEADER, nextPageToken).bodyValue(page);
+                });
+    }
+
+    private static ReviewSort toReviewSort(String sort) {
+        try {
+            return ReviewSort.valueOf(sort.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ReviewDataException("Unknown sort " + sort + ", use id or rating");
+        }
+    }
+
+    private int toPageLimit(String limit) {
+        if (!NUMERIC_ID.matcher(limit).matches() || Long.parseLong(limit) < 1 || Long.parseLong(limit) > maxPageLimit) {
+            throw new ReviewDataException("limit must be between 1 and " + maxPageLimit);
+        }
+        return Integer.parseInt(limit);
+    }
+
+    private static PageToken decodePageToken(ReviewSort sort, String pageToken) {
+        PageToken after;
+        try {
+            after = PageToken.decode(pageToken);
+            if (sort == ReviewSort.RATING && after.getValue() != null) {
+                Double.parseDouble(after.getValue());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ReviewDataException("Invalid page token : " + pageToken);
+        }
+        if (!sort.name().equals(after.getSort())) {
+            throw new ReviewDataException("The page token was issued for sort " + after.getSort() + " but sort " + sort + " was requested");
+        }
+        return after;
+    }
+
+    /**
+     * Looks up the reviews of many movies with a single $in query and streams them back as NDJSON.
+     * Ids are taken from the movieInfoIds query param on GET (comma separated or repeated) or from a JSON array body on POST.
+     * Every review carries its movieInfoId, so callers can group the stream themselves.
+     */
+    public Mono<ServerResponse> getReviewsBatch(ServerRequest serverRequest) {
+        var movieInfoIdsMono = HttpMethod.GET.equals(serverRequest.method())
+                ? Mono.just(serverRequest.queryParams().getOrDefault("movieInfoIds", List.of()))
+                : serverRequest.bodyToMono(new ParameterizedTypeReference<List<String>>() {});
+
+        var reviewFlux = movieInfoIdsMono.map(this::toMovieInfoIds)
+                .doOnNext(movieInfoIds -> log.info("Fetching reviews for a batch of {} movies", movieInfoIds.size()))
+                .flatMapMany(movieReviewRepository::findReviewsByMovieInfoIdIn);
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(reviewFlux, Review.class);
+    }
+
+    private Set<Long> toMovieInfoIds(List<String> params) {
+        //reviews reference movies by a numeric id, anything else can't have reviews so it is skipped instead of failing the batch
+        return params.stream()
+                .flatMap(param -> Arrays.stream(param.split(",")))
+                .map(String::trim)
+                .filter(id -> NUMERIC_ID.matcher(id).matches())
+                .map(Long::valueOf)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Rating aggregate of one movie, read from the incrementally maintained ReviewStats document.
+     */
+    public Mono<ServerResponse> getReviewStats(ServerRequest serverRequest) {
+        var movieInfoId = serverRequest.queryParam("movieInfoId")
+                .filter(id -> NUMERIC_ID.matcher(id).matches());
+        if (movieInfoId.isEmpty()) {
+            return Mono.error(new ReviewDataException("movieInfoId must be passed as a numeric query param"));
+        }
+        return reviewStatsRepository.findById(Long.valueOf(movieInfoId.get()))
+                .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review Not Found for given movieId :"+movieInfoId.get())))
+                .flatMap(ServerResponse.ok()::bodyValue);
     }
 
     public Mono<ServerResponse> updateReview(ServerRequest serverRequest) {
@@ -66,13 +235,19 @@ public class ReviewHandler {
         var existingReview = movieReviewRepository.findById(pathVar)
                 .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review Not Found for given review id :"+pathVar)));
 
-        return existingReview.flatMap(review -> serverRequest.bodyToMono(Review.class)
-                        .map(req -> {
-                            review.setComment(req.getComment());
-                            review.setRating(req.getRating());
-                            review.setMovieInfoId(req.getMovieInfoId());
-                            return review;
-                        }).flatMap(movieReviewRepository::save))
+        return existingReview.flatMap(review -> {
+                    var previousReview = new Review(review.getReviewId(), review.getMovieInfoId(),
+                            review.getComment(), review.getRating());
+                    return serverRequest.bodyToMono(Review.class)
+                            .map(req -> {
+                                review.setComment(req.getComment());
+                                review.setRating(req.getRating());
+                                review.setMovieInfoId(req.getMovieInfoId());
+                                return review;
+                            }).flatMap(movieReviewRepository::save)
+                            .flatMap(savedReview -> reviewStatsRepository.recordUpdated(previousReview, savedReview)
+                                    .thenReturn(savedReview));
+                })
                 .flatMap(ServerResponse.status(HttpStatus.ACCEPTED)::bodyValue).log();
     }
 
@@ -81,12 +256,25 @@ public class ReviewHandler {
         var existingReview = movieReviewRepository.findById(pathvar);
 
         return existingReview.flatMap(review -> movieReviewRepository.delete(review)
+                .then(reviewStatsRepository.recordRemoved(review))
                 .then(ServerResponse.noContent().build()));
     }
 
+    /**
+     * Streams saved reviews as server sent events backed by a change stream on the review collection.
+     * Each event id is the change stream resume token, so a reconnecting EventSource sends it back as Last-Event-ID
+     * and continues after the last event it saw. Other clients can pass it as the resumeToken query param.
+     * The events are already encoded, so they are written straight to the response instead of going through an encoder.
+     */
     public Mono<ServerResponse> getReviewsStream(ServerRequest serverRequest) {
+        var lastEventId = serverRequest.headers().firstHeader("Last-Event-ID");
+        var resumeToken = lastEventId != null ? lastEventId : serverRequest.queryParam(RESUME_TOKEN_PARAM).orElse(null);
+        if (resumeToken != null && !ReviewChangeStream.isValidResumeToken(resumeToken)) {
+            return Mono.error(new ReviewDataException("Invalid resume token : " + resumeToken));
+        }
         return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(reviewSink.asFlux(),Review.class).log();
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body((outputMessage, context) -> outputMessage.writeAndFlushWith(
+                        reviewEventStream.sseStream(resumeToken, outputMessage.bufferFactory()).map(Mono::just)));
     }
 }
@@ -0,0 +1,46 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewDataException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Collectors;
+
+/**
+ * Bean validation of incoming reviews, shared by the single review and the bulk endpoints so both report the same
+ * message: the constraint messages sorted and joined with commas.
+ */
+@Component
+@Slf4j
+public class ReviewValidator {
+
+    private final Validator validator;
+
+    public ReviewValidator(Validator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * The constraint violations of the review, null when it is valid.
+     */
+    public String violationsOf(Review review) {
+        var constraintVoilationSet = validator.validate(review);
+        if (constraintVoilationSet.isEmpty()) {
+            return null;
+        }
+        return constraintVoilationSet.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted().collect(Collectors.joining(","));
+    }
+
+    public void validate(Review review) {
+        var errorMessage = violationsOf(review);
+        if (errorMessage != null) {
+            log.error("contraintViolation {}", errorMessage);
+            throw new ReviewDataException(errorMessage);
+        }
+    }
+}
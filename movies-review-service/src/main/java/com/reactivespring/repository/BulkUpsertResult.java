@@ -0,0 +1,20 @@
+package com.reactivespring.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Outcome of upsertUnordered, both are indexed by the position of the review in the written list. insertedIndexes
+ * are the reviews that didn't replace a stored one, every other review without a write error replaced one.
+ */
+@Getter
+@AllArgsConstructor
+public class BulkUpsertResult {
+
+    private final List<BulkWriteError> writeErrors;
+    private final Set<Integer> insertedIndexes;
+}
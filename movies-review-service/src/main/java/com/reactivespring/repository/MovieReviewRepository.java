@@ -4,7 +4,12 @@ import com.reactivespring.domain.Review;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
+import java.util.Collection;
 
-public interface MovieReviewRepository extends ReactiveMongoRepository<Review,String> {
-    Flux<Review> findReviewsByMovieInfoId(Long id);
+
+public interface MovieReviewRepository extends ReactiveMongoRepository<Review,String>, MovieReviewRepositoryCustom {
+    //in id order, so the same reviews always serialize the same way and keep their ETag
+    Flux<Review> findReviewsByMovieInfoIdOrderByReviewId(Long id);
+
+    Flux<Review> findReviewsByMovieInfoIdIn(Collection<Long> ids);
 }
@@ -0,0 +1,34 @@
+package com.reactivespring.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.reactivespring.common.paging.PageToken;
+import com.reactivespring.domain.Review;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface MovieReviewRepositoryCustom {
+
+    /**
+     * Reads up to limit reviews in the given order, starting right after the document the token points at.
+     */
+    Flux<Review> findPage(ReviewSort sort, @Nullable PageToken after, int limit);
+
+    PageToken pageTokenOf(ReviewSort sort, Review review);
+
+    /**
+     * Inserts the reviews with one unordered bulk write, a failing document doesn't stop the others.
+     * Emits the write error of every review that wasn't inserted, its index is the position in reviews.
+     */
+    Flux<BulkWriteError> insertUnordered(List<Review> reviews);
+
+    /**
+     * Replaces or inserts every review by its reviewId with one unordered bulk write, a failing document doesn't stop
+     * the others. A review only replaces the stored one while that one still has the review's version, the version is
+     * then bumped. A stored review that changed in between makes the upsert collide with it and fail as a duplicate
+     * key, one that was deleted in between is inserted again and reported as inserted.
+     */
+    Mono<BulkUpsertResult> upsertUnordered(List<Review> reviews);
+}
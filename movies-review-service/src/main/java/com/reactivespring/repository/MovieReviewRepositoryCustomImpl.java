@@ -0,0 +1,113 @@
+package com.reactivespring.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.reactivespring.common.paging.PageToken;
+import com.reactivespring.domain.Review;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.reactivespring.common.mongo.BulkWrites.executeUnordered;
+import static com.reactivespring.common.mongo.BulkWrites.writeErrorsOf;
+import static com.reactivespring.common.mongo.BulkWrites.writeResultOf;
+import static com.reactivespring.common.mongo.KeysetCriteria.idAfter;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Keyset pagination: every page is a range query on the sort key and _id instead of a skip, so a deep page costs
+ * the same as the first one and no cursor is held between requests.
+ */
+@RequiredArgsConstructor
+public class MovieReviewRepositoryCustomImpl implements MovieReviewRepositoryCustom {
+
+    private static final String ID = "_id";
+    private static final String RATING = "rating";
+    private static final String VERSION = "version";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Flux<Review> findPage(ReviewSort sort, @Nullable PageToken after, int limit) {
+        return reactiveMongoTemplate.find(pageQuery(sort, after, limit), Review.class);
+    }
+
+    static Query pageQuery(ReviewSort sort, @Nullable PageToken after, int limit) {
+        var query = new Query().limit(limit);
+        if (sort == ReviewSort.RATING) {
+            query.with(Sort.by(RATING, ID));
+            if (after != null) {
+                query.addCriteria(ratingAfter(after));
+            }
+        } else {
+            query.with(Sort.by(ID));
+            if (after != null) {
+                query.addCriteria(idAfter(after.getId()));
+            }
+        }
+        return query;
+    }
+
+    @Override
+    public Flux<BulkWriteError> insertUnordered(List<Review> reviews) {
+        //bulk inserts don't initialize the version like insert() does
+        reviews.forEach(review -> review.setVersion(0L));
+        var bulkOperations = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Review.class)
+                .insert(reviews);
+        return executeUnordered(bulkOperations);
+    }
+
+    @Override
+    public Mono<BulkUpsertResult> upsertUnordered(List<Review> reviews) {
+        var bulkOperations = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Review.class);
+        reviews.forEach(review -> {
+            //a null version also matches the reviews written before versioning
+            var expectedVersion = review.getVersion();
+            review.setVersion(expectedVersion == null ? 0L : expectedVersion + 1);
+            bulkOperations.replaceOne(Query.query(where(ID).is(review.getReviewId()).and(VERSION).is(expectedVersion)),
+                    review, FindAndReplaceOptions.options().upsert());
+        });
+        return bulkOperations.execute()
+                .map(writeResult -> new BulkUpsertResult(List.of(), insertedIndexesOf(writeResult)))
+                .onErrorResume(ex -> writeErrorsOf(ex) != null,
+                        ex -> Mono.just(new BulkUpsertResult(writeErrorsOf(ex), insertedIndexesOf(writeResultOf(ex)))));
+    }
+
+    //an upsert that matched nothing inserted its review, the result lists those as upserts
+    private static Set<Integer> insertedIndexesOf(@Nullable BulkWriteResult writeResult) {
+        if (writeResult == null) {
+            return Set.of();
+        }
+        return writeResult.getUpserts().stream().map(BulkWriteUpsert::getIndex).collect(Collectors.toSet());
+    }
+
+    @Override
+    public PageToken pageTokenOf(ReviewSort sort, Review review) {
+        return new PageToken(sort.name(), sort.keyOf(review), review.getReviewId());
+    }
+
+    //reviews without a rating sort first, followed by the rated ones in ascending order
+    private static Criteria ratingAfter(PageToken after) {
+        if (after.getValue() == null) {
+            return new Criteria().orOperator(
+                    new Criteria().andOperator(where(RATING).is(null), idAfter(after.getId())),
+                    where(RATING).ne(null));
+        }
+        var rating = Double.valueOf(after.getValue());
+        return new Criteria().orOperator(
+                where(RATING).gt(rating),
+                new Criteria().andOperator(where(RATING).is(rating), idAfter(after.getId())));
+    }
+}
@@ -0,0 +1,58 @@
+package com.reactivespring.repository;
+
+import com.mongodb.client.model.changestream.FullDocument;
+import com.reactivespring.domain.Review;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Tails the review collection through a MongoDB change stream, so every replica of the service sees the reviews
+ * saved by any of them and no node keeps the review history in memory.
+ * Change streams need the server to run as a replica set (a single node one is enough).
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReviewChangeStream {
+
+    //resume tokens are opaque hex strings, anything else is rejected before it reaches the server
+    private static final Pattern RESUME_TOKEN = Pattern.compile("[0-9A-Fa-f]{1,1024}");
+    private static final String RESUME_TOKEN_DATA = "_data";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * Streams inserted and updated reviews. Without a resume token the stream starts at the current time,
+     * with one it continues right after the event that carried the token.
+     */
+    public Flux<ChangeStreamEvent<Review>> watch(@Nullable String resumeToken) {
+        return reactiveMongoTemplate.changeStream(Review.class)
+                .withOptions(options -> {
+                    options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+                    if (resumeToken != null) {
+                        options.resumeAfter(new BsonDocument(RESUME_TOKEN_DATA, new BsonString(resumeToken)));
+                    }
+                })
+                .watchCollection(Review.class)
+                .filter(where("operationType").in("insert", "update", "replace"))
+                .listen()
+                .filter(event -> event.getBody() != null);
+    }
+
+    public static boolean isValidResumeToken(String resumeToken) {
+        return RESUME_TOKEN.matcher(resumeToken).matches();
+    }
+
+    public static String resumeTokenOf(ChangeStreamEvent<?> event) {
+        return event.getResumeToken().asDocument().getString(RESUME_TOKEN_DATA).getValue();
+    }
+}
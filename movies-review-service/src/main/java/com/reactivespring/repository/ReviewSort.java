@@ -0,0 +1,14 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+
+/**
+ * Orders a paged listing can use. _id always breaks ties, so every order is total and keysets never skip documents.
+ */
+public enum ReviewSort {
+    ID, RATING;
+
+    String keyOf(Review review) {
+        return this == RATING && review.getRating() != null ? String.valueOf(review.getRating()) : null;
+    }
+}
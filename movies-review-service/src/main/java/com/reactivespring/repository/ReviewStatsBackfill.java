@@ -0,0 +1,59 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Builds the stats of movies whose reviews were written before ReviewStats existed. Runs in the background once the
+ * application is ready and only rebuilds movies without stats, a review added meanwhile makes rebuild start over.
+ */
+@Component
+@ConditionalOnProperty(name = "review.stats.backfillOnStartup", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class ReviewStatsBackfill {
+
+    private static final int CONCURRENCY = 8;
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ReviewStatsRepository reviewStatsRepository;
+
+    public ReviewStatsBackfill(ReactiveMongoTemplate reactiveMongoTemplate, ReviewStatsRepository reviewStatsRepository) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.reviewStatsRepository = reviewStatsRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        backfill().subscribe(count -> {
+            if (count > 0) {
+                log.info("Built the review stats of {} movies", count);
+            }
+        }, ex -> log.error("Review stats backfill failed : {}", ex.getMessage()));
+    }
+
+    /**
+     * Rebuilds the stats of every movie having reviews but no stats, and emits the number of movies rebuilt.
+     */
+    public Mono<Long> backfill() {
+        //the movieInfoId prefix of the movieInfoId_rating index serves the grouping
+        var aggregation = Aggregation.newAggregation(Review.class,
+                Aggregation.group("movieInfoId"),
+                Aggregation.lookup(reactiveMongoTemplate.getCollectionName(ReviewStats.class), "_id", "_id", "stats"),
+                Aggregation.match(where("stats").size(0)));
+        return reactiveMongoTemplate.aggregate(aggregation, Document.class)
+                .map(movie -> movie.get("_id", Number.class).longValue())
+                .flatMap(movieInfoId -> reviewStatsRepository.rebuild(movieInfoId).thenReturn(movieInfoId), CONCURRENCY)
+                .count();
+    }
+}
@@ -0,0 +1,29 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Incremental maintenance of the ReviewStats aggregate, called after the review itself was written.
+ */
+public interface ReviewStatsRepositoryCustom {
+
+    Mono<Void> recordAdded(Review review);
+
+    /**
+     * Same as recordAdded for every review, with a single update per movie.
+     */
+    Mono<Void> recordAddedAll(List<Review> reviews);
+
+    Mono<Void> recordUpdated(Review previousReview, Review review);
+
+    Mono<Void> recordRemoved(Review review);
+
+    /**
+     * Recomputes the stats of one movie from its reviews and replaces the stored ones, or removes them when the movie
+     * has no reviews left. Stats changed by a concurrent write while the reviews are read make it start over.
+     */
+    Mono<Void> rebuild(Long movieInfoId);
+}
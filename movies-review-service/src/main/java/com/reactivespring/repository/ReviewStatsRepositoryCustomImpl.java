@@ -0,0 +1,255 @@
+package com.reactivespring.repository;
+
+import com.mongodb.client.result.DeleteResult;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.lang.Nullable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Every change is a single $inc/$min/$max update of the stats document, so concurrent writers never lose updates.
+ * Only min and max can't be maintained that way when a review holding the current extreme goes away. They are then
+ * recomputed from the remaining reviews of the movie, which is the only case reading more than one document.
+ * The update runs after the review was written and not in the same transaction, a failure or crash in between leaves
+ * the stats off by that review until rebuild is run for the movie.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ReviewStatsRepositoryCustomImpl implements ReviewStatsRepositoryCustom {
+
+    private static final int CONCURRENT_CHANGE_RETRIES = 5;
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<Void> recordAdded(Review review) {
+        var update = new Update().inc("count", 1);
+        var rating = review.getRating();
+        if (rating != null) {
+            update.inc("ratingCount", 1)
+                    .inc("sum", rating)
+                    .inc(histogramBucket(rating), 1)
+                    .min("min", rating)
+                    .max("max", rating);
+        }
+        return reactiveMongoTemplate.upsert(byMovieInfoId(review.getMovieInfoId()), update, ReviewStats.class).then();
+    }
+
+    @Override
+    public Mono<Void> recordAddedAll(List<Review> reviews) {
+        if (reviews.isEmpty()) {
+            return Mono.empty();
+        }
+        //the reviews of one movie are folded into one update, so a bulk import costs one upsert per movie and batch
+        var updates = new LinkedHashMap<Long, MovieDelta>();
+        reviews.forEach(review -> updates.computeIfAbsent(review.getMovieInfoId(), movieInfoId -> new MovieDelta()).add(review.getRating()));
+        var bulkOperations = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReviewStats.class);
+        updates.forEach((movieInfoId, delta) -> bulkOperations.upsert(byMovieInfoId(movieInfoId), delta.toUpdate()));
+        return bulkOperations.execute().then();
+    }
+
+    @Override
+    public Mono<Void> recordUpdated(Review previousReview, Review review) {
+        if (!Objects.equals(previousReview.getMovieInfoId(), review.getMovieInfoId())) {
+            return recordRemoved(previousReview).then(recordAdded(review));
+        }
+        var previousRating = previousReview.getRating();
+        var rating = review.getRating();
+        if (Objects.equals(previousRating, rating)) {
+            return Mono.empty();
+        }
+        //a single $inc document holds each field once, so deltas are summed up front
+        var ratingCountDelta = (rating != null ? 1 : 0) - (previousRating != null ? 1 : 0);
+        var sumDelta = (rating != null ? rating : 0) - (previousRating != null ? previousRating : 0);
+        var update = new Update().inc("ratingCount", ratingCountDelta).inc("sum", sumDelta);
+        var previousBucket = previousRating != null ? histogramBucket(previousRating) : null;
+        var bucket = rating != null ? histogramBucket(rating) : null;
+        if (!Objects.equals(previousBucket, bucket)) {
+            if (previousBucket != null) {
+                update.inc(previousBucket, -1);
+            }
+            if (bucket != null) {
+                update.inc(bucket, 1);
+            }
+        }
+        if (rating != null) {
+            update.min("min", rating).max("max", rating);
+        }
+        return modifyAndFixExtremes(review.getMovieInfoId(), update, previousRating);
+    }
+
+    @Override
+    public Mono<Void> recordRemoved(Review review) {
+        var update = new Update().inc("count", -1);
+        var rating = review.getRating();
+        if (rating != null) {
+            update.inc("ratingCount", -1)
+                    .inc("sum", -rating)
+                    .inc(histogramBucket(rating), -1);
+        }
+        return modifyAndFixExtremes(review.getMovieInfoId(), update, rating);
+    }
+
+    private Mono<Void> modifyAndFixExtremes(Long movieInfoId, Update update, Double removedRating) {
+        return reactiveMongoTemplate.findAndModify(byMovieInfoId(movieInfoId), update,
+                        FindAndModifyOptions.options().returnNew(true), ReviewStats.class)
+                .filter(stats -> removedRating != null
+                        && (removedRating.equals(stats.getMin()) || removedRating.equals(stats.getMax())))
+                .flatMap(stats -> recomputeExtremes(movieInfoId));
+    }
+
+    private Mono<Void> recomputeExtremes(Long movieInfoId) {
+        log.debug("Recomputing min and max rating of movie {}", movieInfoId);
+        var aggregation = Aggregation.newAggregation(Review.class,
+                Aggregation.match(where("movieInfoId").is(movieInfoId).and("rating").ne(null)),
+                Aggregation.group("movieInfoId").min("rating").as("min").max("rating").as("max"));
+        //like rebuild, the extremes are only set on the stats they were computed against, a concurrent $inc makes it start over
+        return reactiveMongoTemplate.findById(movieInfoId, ReviewStats.class)
+                .flatMap(stored -> reactiveMongoTemplate.aggregate(aggregation, Document.class)
+                        .next()
+                        .map(extremes -> new Update().set("min", extremes.get("min")).set("max", extremes.get("max")))
+                        .defaultIfEmpty(new Update().unset("min").unset("max"))
+                        .flatMap(update -> reactiveMongoTemplate.updateFirst(unchangedSince(stored), update, ReviewStats.class))
+                        .filter(updateResult -> updateResult.getMatchedCount() > 0)
+                        .switchIfEmpty(Mono.error(() -> new OptimisticLockingFailureException(
+                                "Review stats of movie " + movieInfoId + " changed while recomputing min and max"))))
+                .retryWhen(Retry.max(CONCURRENT_CHANGE_RETRIES).filter(OptimisticLockingFailureException.class::isInstance))
+                //the review itself is written, stale extremes are left to a later rebuild rather than failing the request
+                .onErrorResume(Exceptions::isRetryExhausted, ex -> {
+                    log.warn("Min and max rating of movie {} may be stale : {}", movieInfoId, ex.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    @Override
+    public Mono<Void> rebuild(Long movieInfoId) {
+        //the stored stats are read before the reviews, any $inc landing in between fails the replacement below
+        return reactiveMongoTemplate.findById(movieInfoId, ReviewStats.class)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(stored -> statsOf(movieInfoId)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(rebuilt -> replace(movieInfoId, stored.orElse(null), rebuilt.orElse(null))))
+                .retryWhen(Retry.max(CONCURRENT_CHANGE_RETRIES)
+                        .filter(ex -> ex instanceof OptimisticLockingFailureException || ex instanceof DuplicateKeyException));
+    }
+
+    private Mono<ReviewStats> statsOf(Long movieInfoId) {
+        var aggregation = Aggregation.newAggregation(Review.class,
+                Aggregation.match(where("movieInfoId").is(movieInfoId)),
+                Aggregation.project("rating").and(ArithmeticOperators.Floor.floorValueOf("rating")).as("bucket"),
+                Aggregation.group("bucket").count().as("count").sum("rating").as("sum")
+                        .min("rating").as("min").max("rating").as("max"));
+        //one document per whole rating point, unrated reviews end up in the null bucket
+        return reactiveMongoTemplate.aggregate(aggregation, Document.class)
+                .reduce(new ReviewStats(movieInfoId, 0, 0, 0, null, null, new HashMap<>()), (stats, bucket) -> {
+                    var count = bucket.get("count", Number.class).longValue();
+                    stats.setCount(stats.getCount() + count);
+                    if (bucket.get("_id") instanceof Number rating) {
+                        stats.setRatingCount(stats.getRatingCount() + count);
+                        stats.setSum(stats.getSum() + bucket.get("sum", Number.class).doubleValue());
+                        stats.setMin(min(stats.getMin(), bucket.get("min", Number.class).doubleValue()));
+                        stats.setMax(max(stats.getMax(), bucket.get("max", Number.class).doubleValue()));
+                        stats.getHistogram().put(String.valueOf(rating.longValue()), count);
+                    }
+                    return stats;
+                })
+                .filter(stats -> stats.getCount() > 0);
+    }
+
+    private Mono<Void> replace(Long movieInfoId, @Nullable ReviewStats stored, @Nullable ReviewStats rebuilt) {
+        if (stored == null) {
+            return rebuilt == null ? Mono.empty() : reactiveMongoTemplate.insert(rebuilt).then();
+        }
+        var unchanged = unchangedSince(stored);
+        var replaced = rebuilt == null
+                ? reactiveMongoTemplate.remove(unchanged, ReviewStats.class).map(DeleteResult::getDeletedCount)
+                : reactiveMongoTemplate.findAndReplace(unchanged, rebuilt).map(previous -> 1L);
+        return replaced.filter(count -> count > 0)
+                .switchIfEmpty(Mono.error(() -> new OptimisticLockingFailureException(
+                        "Review stats of movie " + movieInfoId + " changed while rebuilding them")))
+                .then();
+    }
+
+    private static Double min(@Nullable Double current, double rating) {
+        return current == null ? rating : Math.min(current, rating);
+    }
+
+    private static Double max(@Nullable Double current, double rating) {
+        return current == null ? rating : Math.max(current, rating);
+    }
+
+    //every change of a review moves count, ratingCount or sum, so stats still matching them saw no write in between
+    private static Query unchangedSince(ReviewStats stored) {
+        return Query.query(where("_id").is(stored.getMovieInfoId())
+                .and("count").is(stored.getCount())
+                .and("ratingCount").is(stored.getRatingCount())
+                .and("sum").is(stored.getSum()));
+    }
+
+    private static Query byMovieInfoId(Long movieInfoId) {
+        return Query.query(where("_id").is(movieInfoId));
+    }
+
+    private static final class MovieDelta {
+
+        private long count;
+        private long ratingCount;
+        private double sum;
+        private Double min;
+        private Double max;
+        private final Map<String, Long> histogram = new HashMap<>();
+
+        void add(Double rating) {
+            count++;
+            if (rating != null) {
+                ratingCount++;
+                sum += rating;
+                min = min == null ? rating : Math.min(min, rating);
+                max = max == null ? rating : Math.max(max, rating);
+                histogram.merge(histogramBucket(rating), 1L, Long::sum);
+            }
+        }
+
+        Update toUpdate() {
+            var update = new Update().inc("count", count);
+            if (ratingCount > 0) {
+                update.inc("ratingCount", ratingCount)
+                        .inc("sum", sum)
+                        .min("min", min)
+                        .max("max", max);
+                histogram.forEach(update::inc);
+            }
+            return update;
+        }
+    }
+
+    private static String histogramBucket(double rating) {
+        return "histogram." + (long) Math.floor(rating);
+    }
+}
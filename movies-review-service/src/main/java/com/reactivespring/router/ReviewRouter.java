@@ -16,6 +16,10 @@ public class ReviewRouter {
                 //.GET("v1/movieReview", req -> ServerResponse.ok().bodyValue("Hello World"))
                 .POST("v1/review", reviewHandler::addReview)
                 .GET("v1/review",reviewHandler::getReviews)
+                .GET("v1/review/batch",reviewHandler::getReviewsBatch)
+                .POST("v1/review/batch",reviewHandler::getReviewsBatch)
+                .POST("v1/review/bulk",reviewHandler::addReviewsBulk)
+                .GET("v1/review/stats",reviewHandler::getReviewStats)
                 .PUT("v1/review/{id}",reviewHandler::updateReview)
                 .DELETE("v1/review/{id}",reviewHandler::deleteReview)
                 .GET("v1/reviews/stream",reviewHandler::getReviewsStream)
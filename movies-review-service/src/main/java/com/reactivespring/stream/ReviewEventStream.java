@@ -0,0 +1,64 @@
+package com.reactivespring.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.common.stream.EncodedEvent;
+import com.reactivespring.common.stream.EventFanOutHub;
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.ReviewChangeStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * Server sent events of saved reviews.
+ * Live subscribers of a node share one change stream cursor, and each review is serialized once for all of them.
+ * A subscriber resuming from a token needs its own position in the change stream, so it gets its own cursor until
+ * it disconnects.
+ */
+@Component
+@Slf4j
+public class ReviewEventStream {
+
+    private final ReviewChangeStream reviewChangeStream;
+    private final ObjectMapper objectMapper;
+    private final EventFanOutHub reviewEventHub;
+    private final Flux<EncodedEvent> liveReviewEvents;
+
+    public ReviewEventStream(ReviewChangeStream reviewChangeStream, ObjectMapper objectMapper,
+                             @Value("${review.stream.subscriberBufferSize:256}") int subscriberBufferSize,
+                             @Value("${review.stream.overflowStrategy:DROP_OLDEST}") EventFanOutHub.OverflowStrategy overflowStrategy,
+                             @Value("${review.stream.heartbeatInterval:15s}") Duration heartbeatInterval,
+                             MeterRegistry meterRegistry) {
+        this.reviewChangeStream = reviewChangeStream;
+        this.objectMapper = objectMapper;
+        this.reviewEventHub = new EventFanOutHub("review.stream", subscriberBufferSize, overflowStrategy,
+                heartbeatInterval, meterRegistry);
+        //the cursor is opened by the first live subscriber and closed when the last one goes away
+        this.liveReviewEvents = reviewChangeStream.watch(null)
+                .map(this::encode)
+                .publish()
+                .refCount();
+        log.info("Review stream subscriberBufferSize : {}, overflowStrategy : {}, heartbeatInterval : {}",
+                subscriberBufferSize, overflowStrategy, heartbeatInterval);
+    }
+
+    public Flux<DataBuffer> sseStream(@Nullable String resumeToken, DataBufferFactory bufferFactory) {
+        var reviewEvents = resumeToken == null
+                ? liveReviewEvents
+                : reviewChangeStream.watch(resumeToken).map(this::encode);
+        return reviewEventHub.toSse(reviewEventHub.subscribe(reviewEvents), bufferFactory);
+    }
+
+    private EncodedEvent encode(ChangeStreamEvent<Review> event) {
+        return EncodedEvent.of(objectMapper, ReviewChangeStream.resumeTokenOf(event),
+                event.getOperationType().getValue(), event.getBody());
+    }
+}
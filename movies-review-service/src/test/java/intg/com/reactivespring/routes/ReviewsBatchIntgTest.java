@@ -0,0 +1,121 @@
+package com.reactivespring.routes;
+
+import com.reactivespring.common.test.RecordedCommands;
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.MovieReviewRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Shows that the batch lookup costs one find command against the review collection no matter how many movies
+ * are passed, and that its latency grows far slower than the number of movies.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+public class ReviewsBatchIntgTest {
+
+    private static final String MOVIE_REVIEW_BATCH_URL = "/v1/review/batch";
+    private static final int MOVIE_COUNT = 500;
+    private static final int REVIEWS_PER_MOVIE = 2;
+    private static final int RUNS = 3;
+    //a batch of all the movies has to be at least this many times cheaper than one lookup per movie
+    private static final int MIN_BATCHING_GAIN = 10;
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        RecordedCommands recordedCommands() {
+            return new RecordedCommands();
+        }
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer recordCommands(RecordedCommands recordedCommands) {
+            return builder -> builder.addCommandListener(recordedCommands);
+        }
+    }
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MovieReviewRepository movieReviewRepository;
+
+    @Autowired
+    private RecordedCommands recordedCommands;
+
+    @BeforeEach
+    void setUp() {
+        var reviews = LongStream.range(0, MOVIE_COUNT)
+                .boxed()
+                .flatMap(movieInfoId -> IntStream.range(0, REVIEWS_PER_MOVIE)
+                        .mapToObj(i -> new Review(null, movieInfoId, "Review " + i, 7.0)))
+                .toList();
+        movieReviewRepository.saveAll(reviews).blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieReviewRepository.deleteAll().block();
+    }
+
+    @Test
+    public void test_batch_lookup_uses_one_query_per_batch() {
+        for (var batchSize : List.of(1, 10, 100, MOVIE_COUNT)) {
+            recordedCommands.clear();
+            lookUp(batchSize);
+
+            assertThat(recordedCommands.named("find")).as("find commands of a batch of %s", batchSize).hasSize(1);
+            assertThat(recordedCommands.named("find").get(0).getString("find").getValue()).isEqualTo("review");
+        }
+    }
+
+    @Test
+    public void test_batch_lookup_latency_grows_sublinearly() {
+        //warms up the connections, the codecs and the query plan cache
+        lookUp(MOVIE_COUNT);
+
+        var single = bestOf(() -> lookUp(1));
+        var batch = bestOf(() -> lookUp(MOVIE_COUNT));
+
+        System.out.println("Batch of 1 movie took " + single.toMillis() + "ms, batch of " + MOVIE_COUNT
+                + " movies took " + batch.toMillis() + "ms");
+        assertThat(batch).isLessThan(single.multipliedBy(MOVIE_COUNT / MIN_BATCHING_GAIN));
+    }
+
+    private void lookUp(int batchSize) {
+        var movieInfoIds = IntStream.range(0, batchSize).mapToObj(String::valueOf).toList();
+        webTestClient.post().uri(MOVIE_REVIEW_BATCH_URL).accept(MediaType.APPLICATION_NDJSON).bodyValue(movieInfoIds)
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBodyList(Review.class).hasSize(batchSize * REVIEWS_PER_MOVIE);
+    }
+
+    private static Duration bestOf(Runnable lookUp) {
+        var best = Duration.ofDays(1);
+        for (int i = 0; i < RUNS; i++) {
+            var start = System.nanoTime();
+            lookUp.run();
+            var latency = Duration.ofNanos(System.nanoTime() - start);
+            best = latency.compareTo(best) < 0 ? latency : best;
+        }
+        return best;
+    }
+}
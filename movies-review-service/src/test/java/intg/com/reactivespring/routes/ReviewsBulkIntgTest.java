@@ -0,0 +1,169 @@
+package com.reactivespring.routes;
+
+import com.reactivespring.domain.BulkIngestResult;
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.MovieReviewRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//a batch size of 2 spreads the records over several bulk writes
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"review.bulk.batchSize=2", "review.bulk.concurrency=2"})
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+public class ReviewsBulkIntgTest {
+
+    private static final String MOVIE_REVIEW_BULK_URL = "/v1/review/bulk";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MovieReviewRepository movieReviewRepository;
+
+    @Autowired
+    private ReviewStatsRepository reviewStatsRepository;
+
+    @AfterEach
+    void tearDown() {
+        movieReviewRepository.deleteAll().block();
+        reviewStatsRepository.deleteAll().block();
+    }
+
+    @Test
+    public void test_bulk_insert() {
+        var results = bulk("", List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, null, "No movie", 5.0),
+                new Review("r-1", 1L, "Good Movie", 7.0),
+                new Review("r-1", 1L, "Good Movie again", 7.0),
+                new Review(null, 2L, "Not rated", null)));
+
+        assertThat(results).extracting(BulkIngestResult::getIndex).containsExactly(0L, 1L, 2L, 3L, 4L);
+        assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(
+                BulkIngestResult.Status.CREATED,
+                BulkIngestResult.Status.INVALID,
+                BulkIngestResult.Status.CREATED,
+                BulkIngestResult.Status.DUPLICATE,
+                BulkIngestResult.Status.CREATED);
+        assertThat(results.get(1).getMessage()).isEqualTo("review.movieInfoId must not be null");
+        assertThat(results.get(0).getReviewId()).isNotNull();
+        assertThat(movieReviewRepository.count().block()).isEqualTo(3);
+
+        var stats = reviewStatsRepository.findById(1L).block();
+        assertThat(stats).isNotNull();
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getRatingCount()).isEqualTo(2);
+        assertThat(stats.getSum()).isEqualTo(16.0);
+        assertThat(stats.getMin()).isEqualTo(7.0);
+        assertThat(stats.getMax()).isEqualTo(9.0);
+        assertThat(stats.getHistogram()).containsEntry("7", 1L).containsEntry("9", 1L);
+
+        var unratedStats = reviewStatsRepository.findById(2L).block();
+        assertThat(unratedStats).isNotNull();
+        assertThat(unratedStats.getCount()).isEqualTo(1);
+        assertThat(unratedStats.getRatingCount()).isZero();
+    }
+
+    @Test
+    public void test_bulk_insert_reports_malformed_lines() {
+        var body = """
+                {"movieInfoId":1,"comment":"Awesome Movie","rating":9.0}
+                {"movieInfoId":1, "comment":
+
+                {"movieInfoId":"one","comment":"Not a movie id","rating":5.0}
+                {"movieInfoId":2,"comment":"Good Movie","rating":7.0}
+                """;
+
+        var results = webTestClient.post().uri(MOVIE_REVIEW_BULK_URL)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .returnResult(BulkIngestResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //the blank line isn't a record, the records after the malformed ones are still imported
+        assertThat(results).extracting(BulkIngestResult::getIndex).containsExactly(0L, 1L, 2L, 3L);
+        assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(
+                BulkIngestResult.Status.CREATED,
+                BulkIngestResult.Status.INVALID,
+                BulkIngestResult.Status.INVALID,
+                BulkIngestResult.Status.CREATED);
+        assertThat(results.get(1).getMessage()).startsWith("Malformed record : ");
+        assertThat(results.get(2).getMessage()).startsWith("Malformed record : ");
+        assertThat(movieReviewRepository.findAll().map(Review::getComment).collectList().block())
+                .containsExactlyInAnyOrder("Awesome Movie", "Good Movie");
+    }
+
+    @Test
+    public void test_bulk_upsert() {
+        bulk("", List.of(new Review("r-1", 1L, "Good Movie", 5.0)));
+
+        var results = bulk("?mode=upsert", List.of(
+                new Review("r-1", 1L, "Better than I remembered", 8.0),
+                new Review("r-2", 1L, "Fine", 6.0),
+                new Review(null, 1L, "No id", 7.0)));
+
+        assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(
+                BulkIngestResult.Status.UPDATED,
+                BulkIngestResult.Status.CREATED,
+                BulkIngestResult.Status.INVALID);
+        assertThat(movieReviewRepository.findById("r-1").block())
+                .extracting(Review::getComment).isEqualTo("Better than I remembered");
+
+        var stats = reviewStatsRepository.findById(1L).block();
+        assertThat(stats).isNotNull();
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getSum()).isEqualTo(14.0);
+        assertThat(stats.getMin()).isEqualTo(6.0);
+        assertThat(stats.getMax()).isEqualTo(8.0);
+        assertThat(stats.getHistogram()).containsEntry("5", 0L).containsEntry("6", 1L).containsEntry("8", 1L);
+    }
+
+    @Test
+    public void test_rebuild_stats() {
+        bulk("", List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 1L, "Good Movie", 7.5),
+                new Review(null, 1L, "Not rated", null)));
+        var stats = reviewStatsRepository.findById(1L).block();
+
+        //a stats update that got lost after its reviews were written
+        reviewStatsRepository.deleteAll().block();
+        reviewStatsRepository.rebuild(1L).block();
+
+        assertThat(reviewStatsRepository.findById(1L).block()).usingRecursiveComparison().isEqualTo(stats);
+
+        movieReviewRepository.deleteAll().block();
+        reviewStatsRepository.rebuild(1L).block();
+
+        assertThat(reviewStatsRepository.findById(1L).block()).isNull();
+    }
+
+    private List<BulkIngestResult> bulk(String query, List<Review> reviews) {
+        return webTestClient.post().uri(MOVIE_REVIEW_BULK_URL + query)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.fromIterable(reviews), Review.class)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .returnResult(BulkIngestResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+    }
+}
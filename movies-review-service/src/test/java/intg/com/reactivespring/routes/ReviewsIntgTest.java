@@ -1,18 +1,28 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.common.test.BlockingCallDetector;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.handler.ReviewHandler;
 import com.reactivespring.repository.MovieReviewRepository;
+import com.reactivespring.repository.ReviewStatsBackfill;
+import com.reactivespring.repository.ReviewStatsRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -20,6 +30,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
 @AutoConfigureWebTestClient
+@ExtendWith(BlockingCallDetector.class)
 public class ReviewsIntgTest {
     @Autowired
     private WebTestClient webTestClient;
@@ -27,6 +38,12 @@ public class ReviewsIntgTest {
     @Autowired
     private MovieReviewRepository movieReviewRepository;
 
+    @Autowired
+    private ReviewStatsRepository reviewStatsRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
     private static final String MOVIE_REVIEW_URL = "/v1/review";
     @BeforeEach
     void setUp(){
@@ -41,6 +58,7 @@ public class ReviewsIntgTest {
     @AfterEach
     void tearDown() {
         movieReviewRepository.deleteAll().block();
+        reviewStatsRepository.deleteAll().block();
     }
 
     @Test
@@ -66,6 +84,55 @@ public class ReviewsIntgTest {
                 .hasSize(3);
     }
 
+    @Test
+    public void test_get_reviews_paged_by_id() {
+        //two generated ObjectIds and one client supplied string id, the keyset has to cross from strings to ObjectIds
+        var firstPage = webTestClient.get().uri(MOVIE_REVIEW_URL + "?limit=2").exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(Review.class).hasSize(2)
+                .returnResult();
+        var nextPageToken = firstPage.getResponseHeaders().getFirst(ReviewHandler.NEXT_PAGE_TOKEN_HEADER);
+        assertThat(nextPageToken).isNotNull();
+        assertThat(firstPage.getResponseBody()).extracting(Review::getReviewId).first().isEqualTo("33L");
+
+        webTestClient.get().uri(MOVIE_REVIEW_URL + "?limit=2&pageToken={token}", nextPageToken).exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().doesNotExist(ReviewHandler.NEXT_PAGE_TOKEN_HEADER)
+                .expectBodyList(Review.class).hasSize(1)
+                .value(reviews -> assertThat(reviews).extracting(Review::getReviewId)
+                        .doesNotContainAnyElementsOf(firstPage.getResponseBody().stream().map(Review::getReviewId).toList()));
+    }
+
+    @Test
+    public void test_get_reviews_paged_by_rating() {
+        movieReviewRepository.save(new Review(null, 3L, "No rating", null)).block();
+        var ratings = new ArrayList<Double>();
+        String pageToken = null;
+        do {
+            var uri = MOVIE_REVIEW_URL + "?sort=rating&limit=1" + (pageToken == null ? "" : "&pageToken=" + pageToken);
+            var page = webTestClient.get().uri(uri).exchange()
+                    .expectStatus().is2xxSuccessful()
+                    .expectBodyList(Review.class).hasSize(1)
+                    .returnResult();
+            ratings.add(page.getResponseBody().get(0).getRating());
+            pageToken = page.getResponseHeaders().getFirst(ReviewHandler.NEXT_PAGE_TOKEN_HEADER);
+        } while (pageToken != null);
+
+        assertThat(ratings).containsExactly(null, 8.0, 9.0, 9.0);
+    }
+
+    @Test
+    public void test_get_reviews_invalid_page_request() {
+        webTestClient.get().uri(MOVIE_REVIEW_URL + "?limit=0").exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri(MOVIE_REVIEW_URL + "?pageToken=not-a-token").exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri(MOVIE_REVIEW_URL + "?all=true").exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     public void test_updateMovieInfo() {
         var id = "33";
@@ -110,4 +177,111 @@ public class ReviewsIntgTest {
                 });
 */
     }
+
+    @Test
+    public void test_getReviewByMovieId_not_modified(){
+        var eTag = webTestClient.get().uri(url -> url.path(MOVIE_REVIEW_URL).queryParam("movieInfoId", "1").build())
+                .exchange().expectStatus().isOk()
+                .expectBody().returnResult().getResponseHeaders().getETag();
+        assertThat(eTag).isNotNull();
+
+        webTestClient.get().uri(url -> url.path(MOVIE_REVIEW_URL).queryParam("movieInfoId", "1").build())
+                .ifNoneMatch(eTag)
+                .exchange().expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        addReview(new Review(null, 1L, "Awesome Movie2", 8.0));
+
+        webTestClient.get().uri(url -> url.path(MOVIE_REVIEW_URL).queryParam("movieInfoId", "1").build())
+                .ifNoneMatch(eTag)
+                .exchange().expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.ETAG, newETag -> assertThat(newETag).isNotEqualTo(eTag))
+                .expectBodyList(Review.class).hasSize(3);
+    }
+
+    @Test
+    public void test_getReviewsBatch(){
+        webTestClient.get().uri(url -> url.path(MOVIE_REVIEW_URL + "/batch").queryParam("movieInfoIds","1,2,abc").build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(3);
+
+        webTestClient.post().uri(MOVIE_REVIEW_URL + "/batch").bodyValue(List.of("1"))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .consumeWith(result -> assertThat(result.getResponseBody())
+                        .extracting(Review::getMovieInfoId).containsOnly(1L));
+    }
+
+    @Test
+    public void test_getReviewStats(){
+        var movieInfoId = 7L;
+        var first = addReview(new Review(null, movieInfoId, "Awesome Movie", 8.0));
+        var second = addReview(new Review(null, movieInfoId, "Good Movie", 6.5));
+        addReview(new Review(null, movieInfoId, "No rating", null));
+
+        var stats = getReviewStats(movieInfoId);
+        assertThat(stats.getCount()).isEqualTo(3);
+        assertThat(stats.getRatingCount()).isEqualTo(2);
+        assertThat(stats.getAverage()).isEqualTo(7.25);
+        assertThat(stats.getMin()).isEqualTo(6.5);
+        assertThat(stats.getMax()).isEqualTo(8.0);
+        assertThat(stats.getHistogram()).containsEntry("6", 1L).containsEntry("8", 1L);
+
+        //the review holding the min goes away, so min is recomputed from the remaining reviews
+        webTestClient.delete().uri(MOVIE_REVIEW_URL + "/{id}", second.getReviewId()).exchange()
+                .expectStatus().isNoContent();
+        stats = getReviewStats(movieInfoId);
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getMin()).isEqualTo(8.0);
+        assertThat(stats.getMax()).isEqualTo(8.0);
+        assertThat(stats.getHistogram()).containsEntry("6", 0L);
+
+        webTestClient.put().uri(MOVIE_REVIEW_URL + "/{id}", first.getReviewId())
+                .bodyValue(new Review(null, movieInfoId, "Excellent Movie", 9.5))
+                .exchange().expectStatus().is2xxSuccessful();
+        stats = getReviewStats(movieInfoId);
+        assertThat(stats.getRatingCount()).isEqualTo(1);
+        assertThat(stats.getAverage()).isEqualTo(9.5);
+        assertThat(stats.getMin()).isEqualTo(9.5);
+        assertThat(stats.getMax()).isEqualTo(9.5);
+        assertThat(stats.getHistogram()).containsEntry("8", 0L).containsEntry("9", 1L);
+    }
+
+    @Test
+    public void test_backfill_builds_missing_stats_only(){
+        //the reviews of setUp were saved straight into the repository, so neither movie has stats yet
+        addReview(new Review(null, 3L, "Fine", 6.0));
+        var backfill = new ReviewStatsBackfill(reactiveMongoTemplate, reviewStatsRepository);
+
+        assertThat(backfill.backfill().block()).isEqualTo(2);
+
+        var stats = getReviewStats(1L);
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getAverage()).isEqualTo(9.0);
+        assertThat(stats.getHistogram()).containsEntry("9", 2L);
+        assertThat(getReviewStats(2L).getMax()).isEqualTo(8.0);
+        assertThat(getReviewStats(3L).getCount()).isEqualTo(1);
+        assertThat(backfill.backfill().block()).isZero();
+    }
+
+    @Test
+    public void test_getReviewStats_not_found(){
+        webTestClient.get().uri(url -> url.path(MOVIE_REVIEW_URL + "/stats").queryParam("movieInfoId", "404").build())
+                .exchange().expectStatus().isNotFound();
+    }
+
+    private Review addReview(Review review) {
+        return webTestClient.post().uri(MOVIE_REVIEW_URL).bodyValue(review)
+                .exchange().expectStatus().isCreated()
+                .expectBody(Review.class).returnResult().getResponseBody();
+    }
+
+    private ReviewStats getReviewStats(Long movieInfoId) {
+        return webTestClient.get().uri(url -> url.path(MOVIE_REVIEW_URL + "/stats").queryParam("movieInfoId", movieInfoId).build())
+                .exchange().expectStatus().isOk()
+                .expectBody(ReviewStats.class).returnResult().getResponseBody();
+    }
 }
@@ -0,0 +1,119 @@
+package com.reactivespring.routes;
+
+import com.reactivespring.common.test.EmbeddedMongo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.MovieReviewRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Change streams only work against a replica set, so these tests run against an embedded single node replica set
+ * started by EmbeddedMongo instead of the test Mongo.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class ReviewsStreamIntgTest {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<Review>> REVIEW_EVENT =
+            new ParameterizedTypeReference<>() {};
+    private static final String MOVIE_REVIEW_STREAM_URL = "/v1/reviews/stream";
+    //time for the change stream cursor to open before the first review is saved
+    private static final Duration STREAM_OPEN_DELAY = Duration.ofMillis(500);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MovieReviewRepository movieReviewRepository;
+
+    private WebClient webClient;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        EmbeddedMongo.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        webClient = WebClient.create("http://localhost:" + port);
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieReviewRepository.deleteAll().block();
+    }
+
+    @Test
+    public void test_stream_saved_reviews() {
+        var reviewEventFlux = streamReviews(null);
+
+        StepVerifier.create(reviewEventFlux)
+                .then(() -> saveAfterStreamOpened(new Review(null, 1L, "Awesome Movie", 9.0)))
+                .assertNext(reviewEvent -> {
+                    assertThat(reviewEvent.id()).isNotBlank();
+                    assertThat(reviewEvent.event()).isEqualTo("insert");
+                    assertThat(reviewEvent.data()).isNotNull();
+                    assertThat(reviewEvent.data().getComment()).isEqualTo("Awesome Movie");
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void test_stream_resumes_after_last_event_id() {
+        var firstEventId = new AtomicReference<String>();
+
+        StepVerifier.create(streamReviews(null))
+                .then(() -> saveAfterStreamOpened(new Review(null, 1L, "Awesome Movie", 9.0),
+                        new Review(null, 2L, "Excellent Movie", 8.0)))
+                .assertNext(reviewEvent -> firstEventId.set(reviewEvent.id()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+
+        //the second review was saved while nobody was listening, resuming must still deliver it and only it
+        StepVerifier.create(streamReviews(firstEventId.get()))
+                .assertNext(reviewEvent -> {
+                    assertThat(reviewEvent.data()).isNotNull();
+                    assertThat(reviewEvent.data().getComment()).isEqualTo("Excellent Movie");
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    private Flux<ServerSentEvent<Review>> streamReviews(String lastEventId) {
+        return webClient.get().uri(MOVIE_REVIEW_STREAM_URL)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .headers(headers -> {
+                    if (lastEventId != null) {
+                        headers.set("Last-Event-ID", lastEventId);
+                    }
+                })
+                .retrieve()
+                .bodyToFlux(REVIEW_EVENT);
+    }
+
+    private void saveAfterStreamOpened(Review... reviews) {
+        Mono.delay(STREAM_OPEN_DELAY)
+                .thenMany(Flux.fromArray(reviews).concatMap(movieReviewRepository::save))
+                .subscribe();
+    }
+}
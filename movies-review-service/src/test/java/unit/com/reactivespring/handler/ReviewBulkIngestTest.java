@@ -0,0 +1,123 @@
+package com.reactivespring.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.config.OffloadConfig;
+import com.reactivespring.domain.BulkIngestResult;
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.BulkUpsertResult;
+import com.reactivespring.repository.MovieReviewRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+@WebFluxTest
+@ContextConfiguration(classes = {ReviewBulkIngest.class, ReviewValidator.class, OffloadConfig.class})
+public class ReviewBulkIngestTest {
+
+    @MockBean
+    private MovieReviewRepository movieReviewRepository;
+    @MockBean
+    private ReviewStatsRepository reviewStatsRepository;
+    @Autowired
+    private ReviewBulkIngest reviewBulkIngest;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void test_failed_stats_update_is_rebuilt_and_not_reported_as_failed() {
+        Mockito.when(movieReviewRepository.insertUnordered(anyList())).thenReturn(Flux.empty());
+        Mockito.when(reviewStatsRepository.recordAddedAll(anyList())).thenReturn(Mono.error(new IllegalStateException("stats down")));
+        Mockito.when(reviewStatsRepository.rebuild(anyLong())).thenReturn(Mono.empty());
+
+        var results = ingest(false, new Review(null, 1L, "Awesome Movie", 9.0), new Review(null, 2L, "Fine", 6.0));
+
+        assertThat(results).extracting(BulkIngestResult::getStatus)
+                .containsExactly(BulkIngestResult.Status.CREATED, BulkIngestResult.Status.CREATED);
+        assertThat(results).extracting(BulkIngestResult::getMessage).containsOnlyNulls();
+        Mockito.verify(reviewStatsRepository).rebuild(1L);
+        Mockito.verify(reviewStatsRepository).rebuild(2L);
+    }
+
+    @Test
+    public void test_failed_stats_rebuild_keeps_the_written_status() {
+        Mockito.when(movieReviewRepository.insertUnordered(anyList())).thenReturn(Flux.empty());
+        Mockito.when(reviewStatsRepository.recordAddedAll(anyList())).thenReturn(Mono.error(new IllegalStateException("stats down")));
+        Mockito.when(reviewStatsRepository.rebuild(1L)).thenReturn(Mono.error(new IllegalStateException("still down")));
+        Mockito.when(reviewStatsRepository.rebuild(2L)).thenReturn(Mono.empty());
+
+        var results = ingest(false, new Review(null, 1L, "Awesome Movie", 9.0), new Review(null, 2L, "Fine", 6.0));
+
+        assertThat(results).extracting(BulkIngestResult::getStatus)
+                .containsExactly(BulkIngestResult.Status.CREATED, BulkIngestResult.Status.CREATED);
+        assertThat(results.get(0).getMessage()).isEqualTo("Written, but the review stats of movie 1 are stale : still down");
+        assertThat(results.get(1).getMessage()).isNull();
+    }
+
+    @Test
+    public void test_failed_write_is_reported_as_failed_without_stats() {
+        Mockito.when(movieReviewRepository.insertUnordered(anyList())).thenReturn(Flux.error(new IllegalStateException("write down")));
+
+        var results = ingest(false, new Review(null, 1L, "Awesome Movie", 9.0));
+
+        assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(BulkIngestResult.Status.FAILED);
+        Mockito.verifyNoInteractions(reviewStatsRepository);
+    }
+
+    @Test
+    public void test_upsert_of_a_review_deleted_in_between_counts_it_as_added() {
+        var previousReview = new Review("r-1", 1L, "Good Movie", 5.0, 0L);
+        Mockito.when(movieReviewRepository.findAllById(anyIterable())).thenReturn(Flux.just(previousReview));
+        //the stored copy was deleted after it was read, so the replacement matched nothing and inserted the review
+        Mockito.when(movieReviewRepository.upsertUnordered(anyList()))
+                .thenReturn(Mono.just(new BulkUpsertResult(List.of(), Set.of(0))));
+        Mockito.when(reviewStatsRepository.recordAddedAll(anyList())).thenReturn(Mono.empty());
+
+        var results = ingest(true, new Review("r-1", 1L, "Better than I remembered", 8.0));
+
+        assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(BulkIngestResult.Status.CREATED);
+        Mockito.verify(reviewStatsRepository).recordAddedAll(List.of(new Review("r-1", 1L, "Better than I remembered", 8.0, 0L)));
+        Mockito.verify(reviewStatsRepository, Mockito.never()).recordUpdated(any(), any());
+    }
+
+    @Test
+    public void test_upsert_of_a_replaced_review_moves_its_stats() {
+        var previousReview = new Review("r-1", 1L, "Good Movie", 5.0, 0L);
+        Mockito.when(movieReviewRepository.findAllById(anyIterable())).thenReturn(Flux.just(previousReview));
+        Mockito.when(movieReviewRepository.upsertUnordered(anyList()))
+                .thenReturn(Mono.just(new BulkUpsertResult(List.of(), Set.of())));
+        Mockito.when(reviewStatsRepository.recordAddedAll(anyList())).thenReturn(Mono.empty());
+        Mockito.when(reviewStatsRepository.recordUpdated(any(), any())).thenReturn(Mono.empty());
+
+        var results = ingest(true, new Review("r-1", 1L, "Better than I remembered", 8.0));
+
+        assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(BulkIngestResult.Status.UPDATED);
+        Mockito.verify(reviewStatsRepository).recordUpdated(Mockito.eq(previousReview), any());
+    }
+
+    private List<BulkIngestResult> ingest(boolean upsert, Review... reviews) {
+        var records = Flux.just(reviews).map(review -> {
+            try {
+                return objectMapper.writeValueAsString(review);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return reviewBulkIngest.ingest(records, upsert).collectList().block();
+    }
+}
@@ -0,0 +1,149 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.common.paging.PageToken;
+import com.reactivespring.common.test.EmbeddedMongo;
+import com.reactivespring.common.test.QueryPlans;
+import com.reactivespring.common.test.RecordedCommands;
+import com.reactivespring.config.MongoIndexConfig;
+import com.reactivespring.domain.Review;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fails when one of the hot repository calls is planned as a collection scan, e.g. because its index was dropped
+ * from the document or the query changed shape. Every call runs for real, the commands it sent are recorded and
+ * explained again, so the test follows the queries the repositories build.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@Import({MongoIndexConfig.class, ReviewQueryPlanTest.RecordingConfig.class})
+public class ReviewQueryPlanTest {
+
+    @Autowired
+    private MovieReviewRepository movieReviewRepository;
+
+    @Autowired
+    private ReviewStatsRepository reviewStatsRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    private RecordedCommands recordedCommands;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        EmbeddedMongo.register(registry);
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        RecordedCommands recordedCommands() {
+            return new RecordedCommands();
+        }
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer recordCommands(RecordedCommands recordedCommands) {
+            return builder -> builder.addCommandListener(recordedCommands);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        var reviewsList = List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 1L, "Awesome Movie1", 9.0),
+                new Review("33L", 2L, "Excellent Movie", 8.0),
+                new Review("34L", 2L, "Good Movie", 6.0));
+        movieReviewRepository.saveAll(reviewsList).blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieReviewRepository.deleteAll().block();
+        reviewStatsRepository.deleteAll().block();
+    }
+
+    @Test
+    public void test_findReviewsByMovieInfoId_uses_index() {
+        assertIndexed(movieReviewRepository.findReviewsByMovieInfoIdOrderByReviewId(1L));
+    }
+
+    @Test
+    public void test_findReviewsByMovieInfoIdIn_uses_index() {
+        assertIndexed(movieReviewRepository.findReviewsByMovieInfoIdIn(List.of(1L, 2L, 3L)));
+    }
+
+    @Test
+    public void test_findAllById_uses_index() {
+        assertIndexed(movieReviewRepository.findAllById(List.of("33L", "34L", new ObjectId().toHexString())));
+    }
+
+    @Test
+    public void test_page_by_id_uses_index() {
+        assertIndexed(movieReviewRepository.findPage(ReviewSort.ID, null, 51));
+        assertIndexed(movieReviewRepository.findPage(ReviewSort.ID,
+                new PageToken(ReviewSort.ID.name(), null, "33L"), 51));
+        assertIndexed(movieReviewRepository.findPage(ReviewSort.ID,
+                new PageToken(ReviewSort.ID.name(), null, new ObjectId().toHexString()), 51));
+    }
+
+    @Test
+    public void test_page_by_rating_uses_index() {
+        assertIndexed(movieReviewRepository.findPage(ReviewSort.RATING, null, 51));
+        assertIndexed(movieReviewRepository.findPage(ReviewSort.RATING,
+                new PageToken(ReviewSort.RATING.name(), null, new ObjectId().toHexString()), 51));
+        assertIndexed(movieReviewRepository.findPage(ReviewSort.RATING,
+                new PageToken(ReviewSort.RATING.name(), "8.0", "33L"), 51));
+    }
+
+    @Test
+    public void test_stats_rebuild_uses_index() {
+        //the per bucket aggregation over the reviews of the movie, then the insert or replacement of its stats
+        assertIndexed(reviewStatsRepository.rebuild(2L));
+        assertIndexed(reviewStatsRepository.rebuild(2L));
+    }
+
+    @Test
+    public void test_stats_recompute_uses_index() {
+        reviewStatsRepository.rebuild(2L).block();
+        var lowest = movieReviewRepository.findById("34L").block();
+        movieReviewRepository.delete(lowest).block();
+
+        //removing the min rating recomputes min and max with an aggregation over the remaining reviews
+        assertIndexed(reviewStatsRepository.recordRemoved(lowest));
+        assertThat(recordedCommands.named("aggregate")).isNotEmpty();
+        assertThat(reviewStatsRepository.findById(2L).block().getMin()).isEqualTo(8.0);
+    }
+
+    private void assertIndexed(Publisher<?> call) {
+        recordedCommands.clear();
+        Flux.from(call).blockLast();
+        var plans = QueryPlans.winningPlanStages(reactiveMongoTemplate.getMongoDatabase().block(), recordedCommands);
+        assertThat(plans).as("explained commands").isNotEmpty();
+        plans.forEach((command, stages) -> assertThat(stages)
+                .as("winning plan of %s", command)
+                .isNotEmpty()
+                .doesNotContain(QueryPlans.COLLECTION_SCAN));
+    }
+}
@@ -1,16 +1,22 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.config.OffloadConfig;
 import com.reactivespring.domain.Review;
 import com.reactivespring.exceptionHandler.ExceptionHandler;
+import com.reactivespring.handler.ReviewBulkIngest;
 import com.reactivespring.handler.ReviewHandler;
+import com.reactivespring.handler.ReviewValidator;
 import com.reactivespring.repository.MovieReviewRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
 import com.reactivespring.router.ReviewRouter;
+import com.reactivespring.stream.ReviewEventStream;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
@@ -19,12 +25,18 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.isA;
 
 @WebFluxTest
-@ContextConfiguration(classes = {ReviewHandler.class, ReviewRouter.class, ExceptionHandler.class})
+@ContextConfiguration(classes = {ReviewHandler.class, ReviewValidator.class, ReviewRouter.class, ExceptionHandler.class, OffloadConfig.class})
 @AutoConfigureWebTestClient
 public class ReviewsUnitTest {
 
     @MockBean
     private MovieReviewRepository movieReviewRepository;
+    @MockBean
+    private ReviewStatsRepository reviewStatsRepository;
+    @MockBean
+    private ReviewEventStream reviewEventStream;
+    @MockBean
+    private ReviewBulkIngest reviewBulkIngest;
     @Autowired
     private WebTestClient webTestClient;
 
@@ -55,6 +67,7 @@ public class ReviewsUnitTest {
 
         Mockito.when(movieReviewRepository.save(isA(Review.class)))
                 .thenReturn(Mono.just(new Review(null, 45L, "Awesome Movie 1", 6.9)));
+        Mockito.when(reviewStatsRepository.recordAdded(isA(Review.class))).thenReturn(Mono.empty());
 
         webTestClient.post().uri("/v1/review").bodyValue(movie)
                 .exchange().expectStatus().is2xxSuccessful();
@@ -72,4 +85,53 @@ public class ReviewsUnitTest {
                     assertThat(errorMessage).isEqualTo(expectedErrorMessage);
                 });*/
     }
+
+    @Test
+    public void test_stream_endpoint_invalid_resume_token() {
+
+        webTestClient.get().uri("/v1/reviews/stream")
+                .header("Last-Event-ID", "not-a-token")
+                .exchange().expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Invalid resume token : not-a-token");
+
+        Mockito.verifyNoInteractions(reviewEventStream);
+    }
+
+    @Test
+    public void test_stats_endpoint_invalid_movie_info_id() {
+
+        webTestClient.get().uri("/v1/review/stats?movieInfoId=abc")
+                .exchange().expectStatus().isBadRequest();
+
+        Mockito.verifyNoInteractions(reviewStatsRepository);
+    }
+
+    @Test
+    public void test_get_reviews_invalid_page_request() {
+
+        webTestClient.get().uri("/v1/review?limit=0")
+                .exchange().expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/v1/review?sort=comment")
+                .exchange().expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/v1/review?all=true")
+                .exchange().expectStatus().isBadRequest();
+
+        Mockito.verifyNoInteractions(movieReviewRepository);
+    }
+
+    @Test
+    public void test_bulk_endpoint_unknown_mode() {
+
+        webTestClient.post().uri("/v1/review/bulk?mode=merge")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}\n")
+                .exchange().expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Unknown mode merge, use insert or upsert");
+
+        Mockito.verifyNoInteractions(reviewBulkIngest);
+    }
 }
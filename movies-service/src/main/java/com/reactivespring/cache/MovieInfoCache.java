@@ -0,0 +1,92 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Read-through cache in front of the movie info lookup.
+ * Entries are held as futures, so concurrent misses for the same id share one in-flight call to movies-info-service.
+ * Failed or empty lookups are never cached.
+ * Successful loads are also kept as last known values for lastKnownMaxAge, well past the regular TTL, so a caller can
+ * serve a stale movie info while movies-info-service is unavailable.
+ */
+@Component
+@Slf4j
+public class MovieInfoCache {
+
+    private final boolean enabled;
+    private final AsyncCache<String, MovieInfo> cache;
+    private final Cache<String, MovieInfo> lastKnown;
+
+    public MovieInfoCache(@Value("${movieInfoCache.enabled:true}") boolean enabled,
+                          @Value("${movieInfoCache.maxSize:10000}") long maxSize,
+                          @Value("${movieInfoCache.expireAfterWrite:10m}") Duration expireAfterWrite,
+                          @Value("${movieInfoCache.expireAfterAccess:5m}") Duration expireAfterAccess,
+                          @Value("${movieInfoCache.lastKnownMaxAge:1h}") Duration lastKnownMaxAge,
+                          MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        //caffeine evicts by size using W-TinyLFU, which behaves like LRU for recency skewed traffic but keeps hot titles under scans
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .buildAsync();
+        this.lastKnown = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(lastKnownMaxAge)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "movieInfo");
+        log.info("Movie info cache enabled : {}, maxSize : {}, expireAfterWrite : {}, expireAfterAccess : {}",
+                enabled, maxSize, expireAfterWrite, expireAfterAccess);
+    }
+
+    public Mono<MovieInfo> get(String movieInfoId, Function<String, Mono<MovieInfo>> loader) {
+        if (!enabled) {
+            return loader.apply(movieInfoId);
+        }
+        //cancel is suppressed so one subscriber going away doesn't abort the load the other waiters are sharing
+        return Mono.fromFuture(() -> cache.get(movieInfoId, (id, executor) -> loader.apply(id)
+                .doOnNext(movieInfo -> lastKnown.put(id, movieInfo))
+                .toFuture()), true);
+    }
+
+    /**
+     * The last successfully loaded value, even if it already expired from the read-through cache.
+     */
+    public Mono<MovieInfo> getLastKnown(String movieInfoId) {
+        return Mono.justOrEmpty(lastKnown.getIfPresent(movieInfoId));
+    }
+
+    /**
+     * Drops the read-through entry so the next get loads again. The last known value is kept as the fallback until a
+     * new load replaces it or it ages out.
+     */
+    public void invalidate(String movieInfoId) {
+        cache.synchronous().invalidate(movieInfoId);
+    }
+
+    /**
+     * Drops every read-through entry and every last known value.
+     */
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+        lastKnown.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+}
@@ -0,0 +1,74 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Keeps the last response of a downstream per key together with its ETag, so the next call for the key can send it as
+ * If-None-Match and reuse the kept value on a 304, an unchanged resource is then neither transferred nor decoded.
+ * Unlike MovieInfoCache it never answers by itself, every lookup still asks the downstream whether the value changed.
+ */
+public class RevalidationCache<V> {
+
+    private final boolean enabled;
+    private final Cache<String, Validated<V>> responses;
+    private final Counter notModified;
+
+    public RevalidationCache(String name, boolean enabled, long maxSize, Duration maxAge, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxAge)
+                .recordStats()
+                .build();
+        this.notModified = Counter.builder("movies.revalidation.not.modified")
+                .description("Downstream responses answered with a 304 and served from the kept value")
+                .tag("name", name).register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, name + "Revalidation");
+    }
+
+    /**
+     * Calls the downstream with the kept ETag of the key, null when none is kept. A 304 is answered with the kept value,
+     * any other response replaces it, or drops it when the response carries no ETag. A failed call drops it as well,
+     * e.g. a 404 for a deleted resource, so a recreated one is never compared against the ETag of its predecessor.
+     */
+    public Mono<V> revalidate(String key, Function<String, Mono<ResponseEntity<V>>> call) {
+        if (!enabled) {
+            return Mono.defer(() -> call.apply(null)).mapNotNull(ResponseEntity::getBody);
+        }
+        return Mono.defer(() -> {
+            var kept = responses.getIfPresent(key);
+            return call.apply(kept == null ? null : kept.eTag())
+                    .mapNotNull(response -> {
+                        if (kept != null && response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                            notModified.increment();
+                            return kept.value();
+                        }
+                        var eTag = response.getHeaders().getETag();
+                        if (eTag != null && response.getBody() != null) {
+                            responses.put(key, new Validated<>(eTag, response.getBody()));
+                        } else {
+                            responses.invalidate(key);
+                        }
+                        return response.getBody();
+                    })
+                    .doOnError(ex -> responses.invalidate(key));
+        });
+    }
+
+    public void invalidateAll() {
+        responses.invalidateAll();
+    }
+
+    private record Validated<V>(String eTag, V value) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.RestClientProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second, identical request when the first one hasn't answered within the hedge delay, and keeps whichever
+ * signals first; the other one is cancelled. The delay follows the observed latency percentile of the downstream,
+ * clamped between minDelay and maxDelay, and the share of hedged calls is capped by a RequestBudget.
+ * A failure of the first request before the delay is propagated right away, retries stay the job of the RetryPolicy.
+ */
+@Slf4j
+public class HedgingPolicy {
+
+    private final RestClientProperties.Hedge settings;
+    private final RequestBudget hedgeBudget;
+    private final LatencyTracker latencyTracker;
+
+    private final Counter hedges;
+    private final Counter hedgesWon;
+    private final Counter budgetExhausted;
+
+    public HedgingPolicy(String downstream, RestClientProperties.Hedge settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.hedgeBudget = new RequestBudget(settings.getBudgetRatio(), 0, settings.getBudgetWindow());
+        this.latencyTracker = new LatencyTracker(settings.getPercentile(), settings.getSampleWindow(), settings.getMinSamples(),
+                settings.getRecomputeEvery());
+        this.hedges = Counter.builder("movies.client.hedges")
+                .description("Hedged requests sent because the first one was slower than the hedge delay")
+                .tag("downstream", downstream).register(meterRegistry);
+        this.hedgesWon = Counter.builder("movies.client.hedges.won")
+                .description("Hedged requests that answered before the original one")
+                .tag("downstream", downstream).register(meterRegistry);
+        this.budgetExhausted = Counter.builder("movies.client.hedge.budget.exhausted")
+                .description("Hedges skipped because the hedge rate cap was reached")
+                .tag("downstream", downstream).register(meterRegistry);
+        Gauge.builder("movies.client.hedge.delay", this, policy -> policy.hedgeDelay().toMillis())
+                .description("Current delay in milliseconds before a hedge is sent")
+                .baseUnit("milliseconds")
+                .tag("downstream", downstream).register(meterRegistry);
+    }
+
+    public <T> Mono<T> apply(Supplier<Mono<T>> call) {
+        if (!settings.isEnabled()) {
+            return call.get();
+        }
+        return Mono.defer(() -> {
+            hedgeBudget.recordRequest();
+            var primary = timed(call);
+            var hedge = Mono.delay(hedgeDelay())
+                    .then(Mono.defer(() -> {
+                        if (!hedgeBudget.tryAcquire()) {
+                            budgetExhausted.increment();
+                            return Mono.<T>never();
+                        }
+                        hedges.increment();
+                        return timed(call).doOnSuccess(value -> hedgesWon.increment());
+                    }));
+            return Mono.firstWithSignal(primary, hedge);
+        });
+    }
+
+    Duration hedgeDelay() {
+        var observed = latencyTracker.currentPercentile();
+        if (observed == null) {
+            return settings.getInitialDelay();
+        }
+        if (observed.compareTo(settings.getMinDelay()) < 0) {
+            return settings.getMinDelay();
+        }
+        return observed.compareTo(settings.getMaxDelay()) > 0 ? settings.getMaxDelay() : observed;
+    }
+
+    /**
+     * Cancelled attempts are recorded too, with the time they had been waiting. Dropping them would hide exactly the
+     * slow responses the percentile is supposed to reflect.
+     */
+    private <T> Mono<T> timed(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            var start = System.nanoTime();
+            return call.get()
+                    .doOnSuccess(value -> latencyTracker.record(Duration.ofNanos(System.nanoTime() - start)))
+                    .doOnCancel(() -> latencyTracker.record(Duration.ofNanos(System.nanoTime() - start)));
+        });
+    }
+}
@@ -0,0 +1,53 @@
+package com.reactivespring.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent call latencies in a ring buffer and serves a percentile over them.
+ * The percentile is recomputed every recomputeEvery samples rather than on each read, since sorting the window on every
+ * request would cost more than the calls it is meant to speed up. No percentile is served before minSamples latencies
+ * were recorded, a percentile of a handful of samples is mostly noise.
+ */
+public class LatencyTracker {
+
+    private final double percentile;
+    private final int minSamples;
+    private final int recomputeEvery;
+    private final long[] samples;
+
+    private int next;
+    private int size;
+    private int sinceRecompute;
+    private volatile long currentPercentileNanos = -1;
+
+    public LatencyTracker(double percentile, int windowSize, int minSamples, int recomputeEvery) {
+        this.percentile = percentile;
+        this.minSamples = Math.min(minSamples, windowSize);
+        this.recomputeEvery = recomputeEvery;
+        this.samples = new long[windowSize];
+    }
+
+    public synchronized void record(Duration latency) {
+        samples[next] = latency.toNanos();
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+        ++sinceRecompute;
+        //the first percentile is computed as soon as there are enough samples, later ones every recomputeEvery samples
+        if (size >= minSamples && (sinceRecompute >= recomputeEvery || currentPercentileNanos < 0)) {
+            sinceRecompute = 0;
+            var sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            //nearest rank, a percentile close to 0 still reads the fastest sample
+            currentPercentileNanos = sorted[Math.max((int) Math.ceil(percentile * size) - 1, 0)];
+        }
+    }
+
+    /**
+     * The latest computed percentile, or null until minSamples latencies have been recorded.
+     */
+    public Duration currentPercentile() {
+        var nanos = currentPercentileNanos;
+        return nanos < 0 ? null : Duration.ofNanos(nanos);
+    }
+}
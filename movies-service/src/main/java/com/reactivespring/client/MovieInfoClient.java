@@ -1,26 +1,45 @@
 package com.reactivespring.client;
 
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.cache.RevalidationCache;
+import com.reactivespring.config.RestClientProperties;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.domain.Review;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsClientException;
 import com.reactivespring.exception.ReviewsServerException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.Exceptions;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.retry.Retry;
 
-import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
 
+/**
+ * Every single call to a downstream goes through its circuit breaker, inside the hedging and retry policies,
+ * so each attempt counts towards the failure rate. The request deadline is applied inside the breaker as well, an
+ * attempt hanging until the deadline counts as a failure. While a breaker is open calls fail fast with
+ * CallNotPermittedException, which is not retryable, and the public methods fall back to a degraded answer.
+ * Single movie info and review lookups are revalidated: the ETag of the last response is sent as If-None-Match,
+ * and on a 304 the kept value is reused instead of transferring and decoding the body again.
+ */
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class MovieInfoClient {
 
 
@@ -28,14 +47,53 @@ public class MovieInfoClient {
 
     private final WebClient movieReviewWebClient;
 
+    private final MovieInfoCache movieInfoCache;
+
+    private final SingleFlight<String, Review> reviewsSingleFlight;
+
+    private final RevalidationCache<MovieInfo> movieInfoRevalidationCache;
+
+    private final RevalidationCache<List<Review>> reviewsRevalidationCache;
+
+    private final RetryPolicy movieInfoRetryPolicy;
+
+    private final RetryPolicy movieReviewRetryPolicy;
+
+    private final HedgingPolicy movieInfoHedgingPolicy;
+
+    private final CircuitBreaker movieInfoCircuitBreaker;
+
+    private final CircuitBreaker movieReviewCircuitBreaker;
+
+    private final RestClientProperties restClientProperties;
+
     public Mono<MovieInfo> retrieveMovieInfo(String movieInfoId) {
-        
-        var retrySpec = Retry.fixedDelay(3, Duration.ofSeconds(1))
-                .filter(ex -> ex instanceof MoviesInfoServerException)
-                .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) ->
-                        Exceptions.propagate(retrySignal.failure()));
+        return movieInfoCache.get(movieInfoId, this::fetchMovieInfo)
+                .onErrorResume(CallNotPermittedException.class, ex -> movieInfoFallback(movieInfoId, ex));
+    }
+
+    //the last known value may be older than the cache TTL, a stale title beats failing the whole request
+    private Mono<MovieInfo> movieInfoFallback(String movieInfoId, CallNotPermittedException ex) {
+        var unavailable = Mono.<MovieInfo>error(() -> new MoviesInfoServerException(
+                "Movie info service unavailable : " + ex.getMessage()));
+        if (!restClientProperties.getCircuitBreaker().isMovieInfoFallbackToCache()) {
+            return unavailable;
+        }
+        return movieInfoCache.getLastKnown(movieInfoId)
+                .doOnNext(movieInfo -> log.warn("Serving last known movie info for id {} : {}", movieInfoId, ex.getMessage()))
+                .switchIfEmpty(unavailable);
+    }
+
+    private Mono<MovieInfo> fetchMovieInfo(String movieInfoId) {
+        var movieInfoMono = movieInfoHedgingPolicy.apply(() -> callMovieInfo(movieInfoId)
+                .transform(movieInfoRetryPolicy::withinDeadline)
+                .transformDeferred(CircuitBreakerOperator.of(movieInfoCircuitBreaker)));
+        return movieInfoRetryPolicy.apply(movieInfoMono, MovieInfoClient::isMovieInfoRetryable).log();
+    }
 
-        return movieInfoWebClient.get().uri("/{id}", movieInfoId)
+    private Mono<MovieInfo> callMovieInfo(String movieInfoId) {
+        return movieInfoRevalidationCache.revalidate(movieInfoId, eTag -> movieInfoWebClient.get().uri("/{id}", movieInfoId)
+                .headers(headers -> ifNoneMatch(headers, eTag))
                 .retrieve()
                 .onStatus(HttpStatusCode::is4xxClientError, clientResponse -> {
                     if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
@@ -50,15 +108,89 @@ public class MovieInfoClient {
                     clientResponse.bodyToMono(String.class).flatMap(responseMsg ->
                             Mono.error(new MoviesInfoServerException(responseMsg)))
                 )
-                .bodyToMono(MovieInfo.class)
-                //.retry(3)
-                .retryWhen(retrySpec)
-                .log();
+                .toEntity(MovieInfo.class));
+    }
+
+    private static void ifNoneMatch(HttpHeaders headers, @Nullable String eTag) {
+        if (eTag != null) {
+            headers.setIfNoneMatch(eTag);
+        }
+    }
+
+    /**
+     * Fetches many movie infos with a single call to the bulk endpoint of movies-info-service.
+     * Ids without a movie info are simply absent from the returned stream.
+     */
+    public Flux<MovieInfo> retrieveMovieInfos(List<String> movieInfoIds) {
+        var movieInfoListMono = movieInfoWebClient.post().uri("/batch")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(movieInfoIds)
+                .retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError, clientResponse ->
+                    clientResponse.bodyToMono(String.class).flatMap(responseMsg ->
+                            Mono.error(new MoviesInfoClientException(responseMsg, clientResponse.statusCode().value())))
+                )
+                .onStatus(HttpStatusCode::is5xxServerError,clientResponse ->
+                    clientResponse.bodyToMono(String.class).flatMap(responseMsg ->
+                            Mono.error(new MoviesInfoServerException(responseMsg)))
+                )
+                .bodyToFlux(MovieInfo.class)
+                .collectList()
+                .transform(movieInfoRetryPolicy::withinDeadline)
+                .transformDeferred(CircuitBreakerOperator.of(movieInfoCircuitBreaker));
+        //retried as a whole list, so a failure half way through the stream can't hand out duplicates
+        return movieInfoRetryPolicy.apply(movieInfoListMono, MovieInfoClient::isMovieInfoRetryable)
+                .onErrorMap(CallNotPermittedException.class,
+                        ex -> new MoviesInfoServerException("Movie info service unavailable : " + ex.getMessage()))
+                .flatMapIterable(Function.identity());
     }
 
     public Flux<Review> retrieveReviews(String movieInfoId) {
-        return movieReviewWebClient.get()
+        return reviewsSingleFlight.execute(movieInfoId, () -> movieReviewRetryPolicy.apply(
+                        fetchReviews(movieInfoId)
+                                .transform(movieReviewRetryPolicy::withinDeadline)
+                                .transformDeferred(CircuitBreakerOperator.of(movieReviewCircuitBreaker)),
+                        MovieInfoClient::isReviewRetryable)
+                        .onErrorResume(CallNotPermittedException.class, this::reviewsFallback))
+                .flatMapIterable(Function.identity());
+    }
+
+    //a movie without its reviews is still a useful answer while the review service is down
+    private Mono<List<Review>> reviewsFallback(CallNotPermittedException ex) {
+        if (!restClientProperties.getCircuitBreaker().isReviewsFallbackToEmpty()) {
+            return Mono.error(new ReviewsServerException("Review service unavailable : " + ex.getMessage()));
+        }
+        log.warn("Serving an empty review list : {}", ex.getMessage());
+        return Mono.just(List.of());
+    }
+
+    private Mono<List<Review>> fetchReviews(String movieInfoId) {
+        return reviewsRevalidationCache.revalidate(movieInfoId, eTag -> movieReviewWebClient.get()
                 .uri(uri -> uri.queryParam("movieInfoId", movieInfoId).build())
+                .headers(headers -> ifNoneMatch(headers, eTag))
+                .retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError,clientResponse -> {
+                    if(clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)){
+                        return Mono.empty();
+                    }
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(responseMsg -> Mono.error(new ReviewsClientException(responseMsg)));
+                })
+                .onStatus(HttpStatusCode::is5xxServerError,clientResponse ->
+                    clientResponse.bodyToMono(String.class).flatMap(responseMsg ->
+                            Mono.error(new ReviewsServerException("Review Server Exp : "+responseMsg)))
+                )
+                .toEntityList(Review.class)).log();
+    }
+
+    /**
+     * Fetches the reviews of many movies with a single call to the bulk endpoint of movies-review-service.
+     * Every review carries its movieInfoId, so callers group the stream themselves.
+     */
+    public Flux<Review> retrieveReviews(List<String> movieInfoIds) {
+        var reviewListMono = movieReviewWebClient.post().uri("/batch")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(movieInfoIds)
                 .retrieve()
                 .onStatus(HttpStatusCode::is4xxClientError,clientResponse -> {
                     if(clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)){
@@ -71,6 +203,21 @@ public class MovieInfoClient {
                     clientResponse.bodyToMono(String.class).flatMap(responseMsg ->
                             Mono.error(new ReviewsServerException("Review Server Exp : "+responseMsg)))
                 )
-                .bodyToFlux(Review.class).log();
+                .bodyToFlux(Review.class)
+                .collectList()
+                .transform(movieReviewRetryPolicy::withinDeadline)
+                .transformDeferred(CircuitBreakerOperator.of(movieReviewCircuitBreaker));
+        return movieReviewRetryPolicy.apply(reviewListMono, MovieInfoClient::isReviewRetryable)
+                .onErrorResume(CallNotPermittedException.class, this::reviewsFallback)
+                .flatMapIterable(Function.identity());
+    }
+
+    //connection failures and 5xx responses are worth another attempt, 4xx responses won't change on retry
+    private static boolean isMovieInfoRetryable(Throwable ex) {
+        return ex instanceof MoviesInfoServerException || ex instanceof WebClientRequestException;
+    }
+
+    private static boolean isReviewRetryable(Throwable ex) {
+        return ex instanceof ReviewsServerException || ex instanceof WebClientRequestException;
     }
 }
@@ -0,0 +1,74 @@
+package com.reactivespring.client;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Caps extra requests (retries, hedges) to a share of the calls seen over a sliding window.
+ * The window is split into buckets so old traffic ages out gradually instead of all at once.
+ * A small floor of extra requests per window keeps retries working when traffic is too low for the ratio to allow any.
+ */
+public class RequestBudget {
+
+    private static final int BUCKETS = 10;
+
+    private final double ratio;
+    private final int minPerWindow;
+    private final long bucketNanos;
+    private final LongSupplier nanoClock;
+
+    private final long[] bucketEpochs = new long[BUCKETS];
+    private final long[] requests = new long[BUCKETS];
+    private final long[] extras = new long[BUCKETS];
+
+    public RequestBudget(double ratio, int minPerWindow, Duration window) {
+        this(ratio, minPerWindow, window, System::nanoTime);
+    }
+
+    RequestBudget(double ratio, int minPerWindow, Duration window, LongSupplier nanoClock) {
+        this.ratio = ratio;
+        this.minPerWindow = minPerWindow;
+        this.bucketNanos = Math.max(1, window.toNanos() / BUCKETS);
+        this.nanoClock = nanoClock;
+    }
+
+    public synchronized void recordRequest() {
+        requests[currentBucket(currentEpoch())]++;
+    }
+
+    /**
+     * Takes one extra request from the budget, returns false once the window has used up its share.
+     */
+    public synchronized boolean tryAcquire() {
+        var epoch = currentEpoch();
+        var bucket = currentBucket(epoch);
+        long windowRequests = 0;
+        long windowExtras = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            //buckets last written more than a window ago hold stale counts and are skipped
+            if (epoch - bucketEpochs[i] < BUCKETS) {
+                windowRequests += requests[i];
+                windowExtras += extras[i];
+            }
+        }
+        if (windowExtras >= Math.max(minPerWindow, ratio * windowRequests)) {
+            return false;
+        }
+        extras[bucket]++;
+        return true;
+    }
+
+    private long currentEpoch() {
+        return Math.floorDiv(nanoClock.getAsLong(), bucketNanos);
+    }
+
+    private int currentBucket(long epoch) {
+        var bucket = Math.floorMod(epoch, BUCKETS);
+        if (bucketEpochs[bucket] != epoch) {
+            bucketEpochs[bucket] = epoch;
+            requests[bucket] = 0;
+            extras[bucket] = 0;
+        }
+        return bucket;
+    }
+}
@@ -0,0 +1,151 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.RestClientProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Retries a downstream call with exponential backoff and full jitter, so callers that failed together don't retry together.
+ * A retry is only started while it fits in the per-request deadline and the service-wide budget still has room.
+ * When any of the limits is hit the last failure is propagated unchanged, so the exception handlers see the same
+ * exceptions as without retries. Every attempt, the first one included, only gets the time left until the deadline:
+ * withinDeadline fails an attempt still running then with the deadline failure of the downstream. It is applied by the
+ * caller inside the circuit breaker of the attempt, so a hanging downstream is recorded as a failed call instead of
+ * a cancelled one, which the breaker would not count.
+ */
+@Slf4j
+public class RetryPolicy {
+
+    private final String downstream;
+    private final RestClientProperties.Retry settings;
+    private final RequestBudget retryBudget;
+    private final Function<String, RuntimeException> deadlineFailure;
+
+    private final Counter attempts;
+    private final Counter retries;
+    private final Counter budgetExhausted;
+    private final Counter deadlineExceeded;
+    private final Counter timedOut;
+    private final Timer addedLatency;
+    //context key of the deadline of the request an attempt belongs to, in System.nanoTime() terms
+    private final Object deadlineKey = new Object();
+
+    public RetryPolicy(String downstream, RestClientProperties.Retry settings, RequestBudget retryBudget,
+                       Function<String, RuntimeException> deadlineFailure, MeterRegistry meterRegistry) {
+        this.downstream = downstream;
+        this.settings = settings;
+        this.retryBudget = retryBudget;
+        this.deadlineFailure = deadlineFailure;
+        this.attempts = Counter.builder("movies.client.attempts")
+                .description("Calls made to the downstream, including retries")
+                .tag("downstream", downstream).register(meterRegistry);
+        this.retries = Counter.builder("movies.client.retries")
+                .description("Retries started after a failed call")
+                .tag("downstream", downstream).register(meterRegistry);
+        this.budgetExhausted = Counter.builder("movies.client.retry.budget.exhausted")
+                .description("Retries skipped because the service-wide retry budget was used up")
+                .tag("downstream", downstream).register(meterRegistry);
+        this.deadlineExceeded = Counter.builder("movies.client.retry.deadline.exceeded")
+                .description("Retries skipped because they wouldn't finish within the request deadline")
+                .tag("downstream", downstream).register(meterRegistry);
+        this.timedOut = Counter.builder("movies.client.deadline.timeouts")
+                .description("Attempts cancelled because they were still running at the request deadline")
+                .tag("downstream", downstream).register(meterRegistry);
+        this.addedLatency = Timer.builder("movies.client.retry.added.latency")
+                .description("Time between the first failed call and the final outcome of a retried request")
+                .tag("downstream", downstream).register(meterRegistry);
+    }
+
+    public <T> Mono<T> apply(Mono<T> call, Predicate<Throwable> retryable) {
+        return Mono.defer(() -> {
+            retryBudget.recordRequest();
+            var state = new RequestState();
+            return Mono.defer(() -> call.doOnSubscribe(subscription -> attempts.increment()))
+                    .retryWhen(retry(state, retryable))
+                    .doFinally(signalType -> state.recordAddedLatency())
+                    .contextWrite(context -> context.put(deadlineKey, state.deadlineNanos()));
+        });
+    }
+
+    /**
+     * Fails the call with the deadline failure of the downstream when it is still running at the deadline of the
+     * request passed to apply, or after the whole deadline when it runs on its own.
+     */
+    public <T> Mono<T> withinDeadline(Mono<T> call) {
+        return Mono.deferContextual(context -> {
+            long deadlineNanos = context.getOrDefault(deadlineKey, System.nanoTime() + settings.getDeadline().toNanos());
+            var remaining = Duration.ofNanos(Math.max(deadlineNanos - System.nanoTime(), 0));
+            return call.timeout(remaining, Mono.error(() -> {
+                timedOut.increment();
+                return deadlineFailure.apply(downstream + " call did not complete within the "
+                        + settings.getDeadline().toMillis() + "ms deadline");
+            }));
+        });
+    }
+
+    private Retry retry(RequestState state, Predicate<Throwable> retryable) {
+        return Retry.from(retrySignals -> retrySignals.concatMap(retrySignal -> {
+            var failure = retrySignal.failure();
+            if (!retryable.test(failure) || retrySignal.totalRetries() >= settings.getMaxRetries()) {
+                return Mono.<Long>error(failure);
+            }
+            var backoff = backoff(retrySignal.totalRetries());
+            if (state.elapsed().plus(backoff).compareTo(settings.getDeadline()) > 0) {
+                deadlineExceeded.increment();
+                return Mono.<Long>error(failure);
+            }
+            if (!retryBudget.tryAcquire()) {
+                log.warn("Retry budget exhausted, not retrying {} call : {}", downstream, failure.getMessage());
+                budgetExhausted.increment();
+                return Mono.<Long>error(failure);
+            }
+            state.markRetried();
+            retries.increment();
+            log.info("Retrying {} call in {}ms after : {}", downstream, backoff.toMillis(), failure.getMessage());
+            return Mono.delay(backoff);
+        }));
+    }
+
+    /**
+     * Full jitter: a uniformly random delay between zero and the capped exponential backoff of this attempt.
+     */
+    private Duration backoff(long retryNumber) {
+        var exponential = settings.getMinBackoff().toNanos() * Math.pow(2, retryNumber);
+        var cap = Math.min(exponential, settings.getMaxBackoff().toNanos());
+        return Duration.ofNanos((long) (ThreadLocalRandom.current().nextDouble() * cap));
+    }
+
+    private class RequestState {
+        private final long startNanos = System.nanoTime();
+        private volatile long firstRetryNanos;
+
+        Duration elapsed() {
+            return Duration.ofNanos(System.nanoTime() - startNanos);
+        }
+
+        long deadlineNanos() {
+            return startNanos + settings.getDeadline().toNanos();
+        }
+
+        void markRetried() {
+            if (firstRetryNanos == 0) {
+                firstRetryNanos = System.nanoTime();
+            }
+        }
+
+        void recordAddedLatency() {
+            if (firstRetryNanos != 0) {
+                addedLatency.record(Duration.ofNanos(System.nanoTime() - firstRetryNanos));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.reactivespring.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent lookups for the same key into one upstream subscription.
+ * Unlike a cache nothing outlives the call: the entry is dropped as soon as the upstream terminates,
+ * or is cancelled because every joined subscriber went away, so a later caller always triggers a fresh lookup.
+ * The shared value is the collected list rather than the raw element stream, so a subscriber joining mid-flight
+ * still sees every element instead of only the ones emitted after it arrived.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, Mono<List<V>>> inFlight = new ConcurrentHashMap<>();
+    private final Counter requests;
+    private final Counter upstreamCalls;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.requests = Counter.builder("movies.singleflight.requests")
+                .description("Lookups received by the single-flight layer")
+                .tag("name", name).register(meterRegistry);
+        this.upstreamCalls = Counter.builder("movies.singleflight.upstream.calls")
+                .description("Lookups that actually reached the downstream service")
+                .tag("name", name).register(meterRegistry);
+        Gauge.builder("movies.singleflight.inflight", inFlight, Map::size)
+                .description("Keys with an upstream lookup currently in flight")
+                .tag("name", name).register(meterRegistry);
+        Gauge.builder("movies.singleflight.coalescing.ratio", this, SingleFlight::coalescingRatio)
+                .description("Share of lookups served by joining an in-flight call")
+                .tag("name", name).register(meterRegistry);
+    }
+
+    public Mono<List<V>> execute(K key, Supplier<Mono<List<V>>> upstream) {
+        return Mono.defer(() -> {
+            requests.increment();
+            return inFlight.computeIfAbsent(key, k -> share(k, upstream));
+        });
+    }
+
+    private Mono<List<V>> share(K key, Supplier<Mono<List<V>>> upstream) {
+        var entry = new AtomicReference<Mono<List<V>>>();
+        var shared = Mono.defer(() -> {
+                    upstreamCalls.increment();
+                    return upstream.get();
+                })
+                .doFinally(signalType -> inFlight.remove(key, entry.get()))
+                .flux()
+                .publish()
+                .refCount()
+                .next();
+        entry.set(shared);
+        return shared;
+    }
+
+    public double coalescingRatio() {
+        var total = requests.count();
+        return total == 0 ? 0 : 1 - upstreamCalls.count() / total;
+    }
+}
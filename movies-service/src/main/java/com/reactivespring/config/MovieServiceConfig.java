@@ -1,13 +1,40 @@
 package com.reactivespring.config;
 
+import com.reactivespring.cache.RevalidationCache;
+import com.reactivespring.client.HedgingPolicy;
+import com.reactivespring.client.RequestBudget;
+import com.reactivespring.client.RetryPolicy;
+import com.reactivespring.client.SingleFlight;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.exception.ReviewsServerException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.List;
 
 @RequiredArgsConstructor
 @Configuration
+@EnableConfigurationProperties(RestClientProperties.class)
+@Slf4j
 public class MovieServiceConfig {
 
     @Value("${restClient.movieInfoUrl}")
@@ -16,13 +43,173 @@ public class MovieServiceConfig {
     @Value("${restClient.movieReviewUrl}")
     private String MOVIE_REVIEW_URL;
 
+    private final RestClientProperties restClientProperties;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider movieInfoConnectionProvider(){
+        return connectionProvider("movieInfo", restClientProperties.getMovieInfoPool());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider movieReviewConnectionProvider(){
+        return connectionProvider("movieReview", restClientProperties.getMovieReviewPool());
+    }
+
+    @Bean
+    public WebClient movieInfoWebClient(WebClient.Builder webClientBuilder, ConnectionProvider movieInfoConnectionProvider){
+        var httpClient = httpClient(movieInfoConnectionProvider, restClientProperties.getMovieInfoPool(), MOVIE_INFO_URL);
+        //the auto-configured builder records http.client.requests per downstream, uri template and status
+        return webClientBuilder.clone().baseUrl(MOVIE_INFO_URL)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    @Bean
+    public WebClient movieReviewWebClient(WebClient.Builder webClientBuilder, ConnectionProvider movieReviewConnectionProvider){
+        var httpClient = httpClient(movieReviewConnectionProvider, restClientProperties.getMovieReviewPool(), MOVIE_REVIEW_URL);
+        return webClientBuilder.clone().baseUrl(MOVIE_REVIEW_URL)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    @Bean
+    public RequestBudget retryBudget(){
+        var retry = restClientProperties.getRetry();
+        return new RequestBudget(retry.getBudgetRatio(), retry.getBudgetMinRetries(), retry.getBudgetWindow());
+    }
+
+    @Bean
+    public RetryPolicy movieInfoRetryPolicy(RequestBudget retryBudget, MeterRegistry meterRegistry){
+        return new RetryPolicy("movieInfo", restClientProperties.getRetry(), retryBudget,
+                MoviesInfoServerException::new, meterRegistry);
+    }
+
+    @Bean
+    public RetryPolicy movieReviewRetryPolicy(RequestBudget retryBudget, MeterRegistry meterRegistry){
+        return new RetryPolicy("movieReview", restClientProperties.getRetry(), retryBudget,
+                ReviewsServerException::new, meterRegistry);
+    }
+
+    @Bean
+    public HedgingPolicy movieInfoHedgingPolicy(MeterRegistry meterRegistry){
+        return new HedgingPolicy("movieInfo", restClientProperties.getHedge(), meterRegistry);
+    }
+
+    /**
+     * TaggedCircuitBreakerMetrics exports the resilience4j.circuitbreaker.* meters of every breaker in the registry,
+     * including its current state and resilience4j.circuitbreaker.not.permitted.calls for short-circuited calls.
+     */
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(MeterRegistry meterRegistry){
+        var breaker = restClientProperties.getCircuitBreaker();
+        log.info("Circuit breaker : {}", breaker);
+        var circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(breaker.getSlidingWindowSize())
+                .minimumNumberOfCalls(breaker.getMinimumNumberOfCalls())
+                .failureRateThreshold(breaker.getFailureRateThreshold())
+                .slowCallRateThreshold(breaker.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(breaker.getSlowCallDurationThreshold())
+                .waitDurationInOpenState(breaker.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(breaker.getPermittedNumberOfCallsInHalfOpenState())
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                //only an unhealthy downstream trips the breaker, a 4xx answer counts as a successful call
+                .recordException(MovieServiceConfig::isDownstreamFailure)
+                .build();
+        var registry = CircuitBreakerRegistry.of(circuitBreakerConfig);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry;
+    }
+
+    @Bean
+    public CircuitBreaker movieInfoCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry, MeterRegistry meterRegistry){
+        return circuitBreaker("movieInfo", circuitBreakerRegistry, meterRegistry);
+    }
+
+    @Bean
+    public CircuitBreaker movieReviewCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry, MeterRegistry meterRegistry){
+        return circuitBreaker("movieReview", circuitBreakerRegistry, meterRegistry);
+    }
+
     @Bean
-    public WebClient movieInfoWebClient(){
-        return WebClient.builder().baseUrl(MOVIE_INFO_URL).build();
+    public SingleFlight<String, Review> reviewsSingleFlight(MeterRegistry meterRegistry){
+        return new SingleFlight<>("reviews", meterRegistry);
     }
 
     @Bean
-    public WebClient movieReviewWebClient(){
-        return WebClient.builder().baseUrl(MOVIE_REVIEW_URL).build();
+    public RevalidationCache<MovieInfo> movieInfoRevalidationCache(MeterRegistry meterRegistry){
+        return revalidationCache("movieInfo", meterRegistry);
+    }
+
+    @Bean
+    public RevalidationCache<List<Review>> reviewsRevalidationCache(MeterRegistry meterRegistry){
+        return revalidationCache("reviews", meterRegistry);
+    }
+
+    private <V> RevalidationCache<V> revalidationCache(String name, MeterRegistry meterRegistry) {
+        var revalidation = restClientProperties.getRevalidation();
+        return new RevalidationCache<>(name, revalidation.isEnabled(), revalidation.getMaxSize(), revalidation.getMaxAge(),
+                meterRegistry);
+    }
+
+    private CircuitBreaker circuitBreaker(String name, CircuitBreakerRegistry circuitBreakerRegistry,
+                                          MeterRegistry meterRegistry) {
+        var circuitBreaker = circuitBreakerRegistry.circuitBreaker(name);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            var transition = event.getStateTransition();
+            log.warn("Circuit breaker {} : {}", name, transition);
+            Counter.builder("movies.client.circuitbreaker.transitions")
+                    .description("State transitions of the downstream circuit breaker")
+                    .tag("name", name)
+                    .tag("from", transition.getFromState().name())
+                    .tag("to", transition.getToState().name())
+                    .register(meterRegistry)
+                    .increment();
+        });
+        if (!restClientProperties.getCircuitBreaker().isEnabled()) {
+            circuitBreaker.transitionToDisabledState();
+        }
+        return circuitBreaker;
+    }
+
+    private static boolean isDownstreamFailure(Throwable ex) {
+        return ex instanceof MoviesInfoServerException || ex instanceof ReviewsServerException
+                || ex instanceof WebClientRequestException;
+    }
+
+    /**
+     * metrics(true) exports the reactor.netty.connection.provider.* gauges (active, idle, pending, total connections)
+     * tagged with the pool name and remote address through the global Micrometer registry.
+     */
+    private ConnectionProvider connectionProvider(String name, RestClientProperties.Pool pool) {
+        log.info("Connection pool {} : {}", name, pool);
+        var builder = ConnectionProvider.builder(name)
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictInBackground())
+                .metrics(true);
+        if (pool.getLeaseStrategy() == RestClientProperties.LeaseStrategy.LIFO) {
+            builder.lifo();
+        } else {
+            builder.fifo();
+        }
+        return builder.build();
+    }
+
+    private HttpClient httpClient(ConnectionProvider connectionProvider, RestClientProperties.Pool pool, String baseUrl) {
+        var httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, pool.isKeepAlive())
+                .responseTimeout(pool.getResponseTimeout())
+                .keepAlive(pool.isKeepAlive());
+        if (pool.isHttp2()) {
+            //plain http downstreams need the cleartext upgrade, both fall back to HTTP/1.1 if the server can't do h2
+            var http2 = baseUrl.startsWith("https") ? HttpProtocol.H2 : HttpProtocol.H2C;
+            httpClient = httpClient.protocol(http2, HttpProtocol.HTTP11);
+        }
+        return httpClient;
     }
 }
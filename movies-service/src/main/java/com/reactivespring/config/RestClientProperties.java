@@ -0,0 +1,109 @@
+package com.reactivespring.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Connection pool and transport settings of the downstream WebClients, bound from restClient.*.
+ * Each downstream gets its own pool so a slow service can't starve connections of the other one.
+ * Validated when bound, an out of range setting fails the startup instead of the first call using it.
+ */
+@Data
+@Validated
+@ConfigurationProperties(prefix = "rest-client")
+public class RestClientProperties {
+
+    private Pool movieInfoPool = new Pool();
+    private Pool movieReviewPool = new Pool();
+    private Retry retry = new Retry();
+    @Valid
+    private Hedge hedge = new Hedge();
+    private Breaker circuitBreaker = new Breaker();
+    private Revalidation revalidation = new Revalidation();
+
+    @Data
+    public static class Pool {
+        private int maxConnections = 100;
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+        //LIFO reuses the most recently released connection so idle ones age out, FIFO spreads load over all of them
+        private LeaseStrategy leaseStrategy = LeaseStrategy.LIFO;
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration responseTimeout = Duration.ofSeconds(5);
+        private boolean keepAlive = true;
+        private boolean http2 = false;
+    }
+
+    @Data
+    public static class Retry {
+        private int maxRetries = 3;
+        private Duration minBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(1);
+        //no retry is started if its backoff would end past this point, measured from the first attempt, and an attempt
+        //still running then fails, which its circuit breaker records as a failed call
+        private Duration deadline = Duration.ofSeconds(2);
+        //retries allowed as a share of the calls seen in the budget window, shared by all downstreams
+        private double budgetRatio = 0.1;
+        private int budgetMinRetries = 10;
+        private Duration budgetWindow = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Hedge {
+        private boolean enabled = false;
+        //a hedge is sent once the first request is slower than this percentile of recent latencies
+        @DecimalMin(value = "0", inclusive = false, message = "restClient.hedge.percentile must be greater than 0")
+        @DecimalMax(value = "1", message = "restClient.hedge.percentile must be at most 1")
+        private double percentile = 0.95;
+        private int sampleWindow = 1000;
+        //initialDelay is used until minSamples latencies were seen, the percentile is then refreshed every recomputeEvery calls
+        private int minSamples = 20;
+        private int recomputeEvery = 10;
+        private Duration initialDelay = Duration.ofMillis(100);
+        private Duration minDelay = Duration.ofMillis(10);
+        private Duration maxDelay = Duration.ofSeconds(1);
+        //hedges allowed as a share of the calls seen in the budget window
+        private double budgetRatio = 0.1;
+        private Duration budgetWindow = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Breaker {
+        //a disabled breaker permits every call and records nothing
+        private boolean enabled = true;
+        //failure and slow call rates are computed over the last slidingWindowSize calls
+        private int slidingWindowSize = 20;
+        private int minimumNumberOfCalls = 10;
+        private float failureRateThreshold = 50;
+        private float slowCallRateThreshold = 80;
+        //below retry.deadline, a call is cut off at the deadline and could never be slower than it
+        private Duration slowCallDurationThreshold = Duration.ofSeconds(1);
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+        private int permittedNumberOfCallsInHalfOpenState = 3;
+        //while open, serve the last known movie info instead of failing the request
+        private boolean movieInfoFallbackToCache = true;
+        //while open, answer with an empty review list instead of failing the request
+        private boolean reviewsFallbackToEmpty = true;
+    }
+
+    @Data
+    public static class Revalidation {
+        //send the ETag of the last movie info or review list of a movie as If-None-Match, and reuse it on a 304
+        private boolean enabled = true;
+        private long maxSize = 10000;
+        private Duration maxAge = Duration.ofHours(1);
+    }
+
+    public enum LeaseStrategy {
+        FIFO, LIFO
+    }
+}
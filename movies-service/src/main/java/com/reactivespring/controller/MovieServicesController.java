@@ -1,28 +1,159 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.reactivespring.client.MovieInfoClient;
+import com.reactivespring.common.offload.StageOffloader;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieBatchResult;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.MovieBatchRequestException;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsClientException;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/v1/movie")
+@Slf4j
 public class MovieServicesController {
 
     @Autowired
     private MovieInfoClient movieInfoClient;
 
+    @Autowired
+    private StageOffloader stageOffloader;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${movieService.aggregation.parallel:true}")
+    private boolean parallelAggregation;
+
+    @Value("${movieService.batch.maxIds:100}")
+    private int batchMaxIds;
 
+    @Value("${movieService.batch.chunkSize:50}")
+    private int batchChunkSize;
+
+    @Value("${movieService.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    /**
+     * The response carries a strong ETag hashed from the serialized movie info and reviews. A GET whose
+     * If-None-Match matches it is answered with a 304 by the ResponseEntity handling, before the body is written.
+     * The downstream calls themselves are revalidated by MovieInfoClient.
+     */
     @GetMapping("/{id}")
-    public Mono<Movie> getMovieInfoAndReviews(@PathVariable String id) {
-        return movieInfoClient.retrieveMovieInfo(id)
-                .flatMap(movie -> {
-                    var movieReviewListMono = movieInfoClient.retrieveReviews(movie.getMovieInfoId()).collectList();
-                    return movieReviewListMono.map(review -> new Movie(movie,review));
+    public Mono<ResponseEntity<byte[]>> getMovieInfoAndReviews(@PathVariable String id) {
+        var movieMono = parallelAggregation
+                ? getMovieInfoAndReviewsInParallel(id)
+                : movieInfoClient.retrieveMovieInfo(id)
+                        .flatMap(movie -> {
+                            var movieReviewListMono = movieInfoClient.retrieveReviews(movie.getMovieInfoId()).collectList();
+                            return movieReviewListMono.map(review -> new Movie(movie,review));
+                        });
+        return movieMono.map(this::withETag);
+    }
+
+    //the review service answers in id order, so the same movie always serializes the same way.
+    //the movie is serialized once, those bytes are both hashed and written
+    private ResponseEntity<byte[]> withETag(Movie movie) {
+        try {
+            var body = objectMapper.writeValueAsBytes(movie);
+            var eTag = DigestUtils.md5DigestAsHex(body);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag("\"" + eTag + "\"").body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize movie " + movie.getMovieInfo().getMovieInfoId(), e);
+        }
+    }
+
+    /**
+     * Subscribes to both downstream calls at once using the path id, so the response takes the slower of the two
+     * round trips instead of their sum. An error from either side cancels the other one, which keeps the
+     * sequential semantics: a movie info 404 still fails the request and a review 404 still yields an empty list.
+     */
+    private Mono<Movie> getMovieInfoAndReviewsInParallel(String id) {
+        var movieInfoMono = movieInfoClient.retrieveMovieInfo(id);
+        var movieReviewListMono = movieInfoClient.retrieveReviews(id).collectList();
+        return Mono.zip(movieInfoMono, movieReviewListMono)
+                .map(tuple -> new Movie(tuple.getT1(), tuple.getT2()));
+    }
+
+    /**
+     * Aggregates many titles in one request. Ids are split into chunks and each chunk costs one call to the bulk
+     * endpoint of each downstream, with at most batchConcurrency chunks in flight. Results keep the request order
+     * and every id reports its own status, so a missing title or a failed chunk doesn't fail the whole batch.
+     */
+    @GetMapping(params = "ids")
+    public Flux<MovieBatchResult> getMoviesInfoAndReviews(@RequestParam List<String> ids) {
+        var movieInfoIds = ids.stream().filter(StringUtils::hasText).map(String::trim).distinct().toList();
+        if (movieInfoIds.size() > batchMaxIds) {
+            return Flux.error(new MovieBatchRequestException(
+                    "A batch can contain at most " + batchMaxIds + " ids but " + movieInfoIds.size() + " were passed"));
+        }
+        log.info("Fetching a batch of {} movies", movieInfoIds.size());
+        return Flux.fromIterable(movieInfoIds)
+                .buffer(batchChunkSize)
+                .flatMapSequential(this::getMovieBatch, batchConcurrency);
+    }
+
+    private Flux<MovieBatchResult> getMovieBatch(List<String> movieInfoIds) {
+        var movieInfoMapMono = movieInfoClient.retrieveMovieInfos(movieInfoIds)
+                .collectMap(MovieInfo::getMovieInfoId);
+        var reviewMapMono = movieInfoClient.retrieveReviews(movieInfoIds)
+                .collectMultimap(review -> String.valueOf(review.getMovieInfoId()));
+
+        //assembling a chunk is the CPU heavy part of a batch, the StageOffloader can move it off the event loop
+        return Mono.zip(movieInfoMapMono, reviewMapMono)
+                .flatMap(tuple -> stageOffloader.run(StageOffloader.BATCH, () -> movieInfoIds.stream()
+                        .map(movieInfoId -> toBatchResult(movieInfoId, tuple.getT1(), tuple.getT2()))
+                        .toList()))
+                .flatMapIterable(results -> results)
+                .onErrorResume(ex -> {
+                    log.error("Batch of {} movies failed : {}", movieInfoIds.size(), ex.getMessage());
+                    return Flux.fromIterable(movieInfoIds)
+                            .map(movieInfoId -> new MovieBatchResult(movieInfoId, statusOf(ex), null, ex.getMessage()));
                 });
     }
+
+    private MovieBatchResult toBatchResult(String movieInfoId, Map<String, MovieInfo> movieInfoMap,
+                                           Map<String, Collection<Review>> reviewMap) {
+        var movieInfo = movieInfoMap.get(movieInfoId);
+        if (movieInfo == null) {
+            return new MovieBatchResult(movieInfoId, HttpStatus.NOT_FOUND.value(), null,
+                    "There is no movie Info available for passed in id " + movieInfoId);
+        }
+        var reviewList = new ArrayList<>(reviewMap.getOrDefault(movieInfoId, List.of()));
+        return new MovieBatchResult(movieInfoId, HttpStatus.OK.value(), new Movie(movieInfo, reviewList), null);
+    }
+
+    private Integer statusOf(Throwable ex) {
+        if (ex instanceof MoviesInfoClientException moviesInfoClientException) {
+            return moviesInfoClientException.getStatusCode();
+        }
+        if (ex instanceof ReviewsClientException) {
+            return HttpStatus.BAD_REQUEST.value();
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
 }
@@ -0,0 +1,20 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of a batch lookup. Each requested id reports its own status, so a missing title or a failed chunk
+ * doesn't fail the rest of the batch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieBatchResult {
+
+    private String movieInfoId;
+    private Integer status;
+    private Movie movie;
+    private String error;
+}
@@ -1,6 +1,7 @@
 package com.reactivespring.domain;
 
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -17,14 +18,27 @@ import java.util.List;
 @AllArgsConstructor
 @Validated
 public class MovieInfo {
+    //movies-info-service names these fields movieId, yearReleased and date_released
+    @JsonAlias("movieId")
     private String movieInfoId;
     @NotBlank(message = "movieInfo.name must be present")
     private String name;
     @NotNull
     @Positive(message = "movieInfo.year must be a Positive Value")
+    @JsonAlias("yearReleased")
     private Integer year;
 
     @NotNull
     private List<@NotBlank(message = "movieInfo.cast must be present") String> cast;
+    @JsonAlias("date_released")
     private LocalDate release_date;
+    private Long version;
+
+    public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate release_date) {
+        this.movieInfoId = movieInfoId;
+        this.name = name;
+        this.year = year;
+        this.cast = cast;
+        this.release_date = release_date;
+    }
 }
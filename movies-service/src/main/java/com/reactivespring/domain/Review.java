@@ -14,4 +14,12 @@ public class Review {
     private String comment;
     //@Min(value = 0L, message = "rating.negative : rating is negative and please pass a non-negative value")
     private Double rating;
+    private Long version;
+
+    public Review(String reviewId, Long movieInfoId, String comment, Double rating) {
+        this.reviewId = reviewId;
+        this.movieInfoId = movieInfoId;
+        this.comment = comment;
+        this.rating = rating;
+    }
 }
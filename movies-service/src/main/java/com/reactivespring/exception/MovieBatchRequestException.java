@@ -0,0 +1,10 @@
+package com.reactivespring.exception;
+
+public class MovieBatchRequestException extends RuntimeException{
+    private String message;
+
+    public MovieBatchRequestException(String message) {
+        super(message);
+        this.message = message;
+    }
+}
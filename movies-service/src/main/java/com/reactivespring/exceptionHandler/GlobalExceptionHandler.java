@@ -1,5 +1,6 @@
 package com.reactivespring.exceptionHandler;
 
+import com.reactivespring.exception.MovieBatchRequestException;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsClientException;
@@ -37,4 +38,10 @@ public class GlobalExceptionHandler {
         log.error("Exception caught in Exception Handler : {}",reviewsServerException.getMessage());
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(reviewsServerException.getMessage());
     }
+
+    @ExceptionHandler(MovieBatchRequestException.class)
+    public ResponseEntity<String> handleMovieBatchRequestException(MovieBatchRequestException movieBatchRequestException){
+        log.error("Exception caught in Exception Handler : {}",movieBatchRequestException.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(movieBatchRequestException.getMessage());
+    }
 }
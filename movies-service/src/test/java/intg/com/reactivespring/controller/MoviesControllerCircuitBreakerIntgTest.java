@@ -0,0 +1,187 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.domain.Movie;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Breakers open after 4 failed calls and stay open for the rest of a test, retries are off so every
+ * request is exactly one downstream call, which is cut off after the 500ms deadline.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 0)
+@TestPropertySource( properties = {
+        "restClient.movieInfoUrl = http://localhost:${wiremock.server.port}/v1/movieInfos",
+        "restClient.movieReviewUrl = http://localhost:${wiremock.server.port}/v1/review",
+        "restClient.retry.maxRetries = 0",
+        "restClient.retry.deadline = 500ms",
+        "restClient.circuitBreaker.slidingWindowSize = 4",
+        "restClient.circuitBreaker.minimumNumberOfCalls = 4",
+        "restClient.circuitBreaker.waitDurationInOpenState = 1m",
+        "movieInfoCache.expireAfterWrite = 100ms"
+})
+public class MoviesControllerCircuitBreakerIntgTest {
+
+    private static final String GET_URL = "/v1/movie/";
+    private static final int MAX_FAILED_REQUESTS = 10;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private MovieInfoCache movieInfoCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(CircuitBreaker::reset);
+        movieInfoCache.invalidateAll();
+    }
+
+    @Test
+    public void test_get_movie_reviews_circuit_open(){
+        var movieInfoId = "abc";
+        var reviewCircuitBreaker = circuitBreakerRegistry.circuitBreaker("movieReview");
+
+        WireMock.stubFor(WireMock.get(WireMock.urlEqualTo("/v1/movieInfos/"+movieInfoId))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("movieinfo.json"))
+        );
+
+        WireMock.stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/review"))
+                .willReturn(WireMock.aResponse().withStatus(500)
+                        .withBody("Review Service Unavailable"))
+        );
+
+        for (int i = 0; i < MAX_FAILED_REQUESTS && reviewCircuitBreaker.getState() == CircuitBreaker.State.CLOSED; i++) {
+            webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange().expectStatus().is5xxServerError();
+        }
+        assertThat(reviewCircuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        var reviewCalls = WireMock.findAll(WireMock.getRequestedFor(WireMock.urlPathEqualTo("/v1/review"))).size();
+
+        webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(entityResult -> {
+                    var responseBody = entityResult.getResponseBody();
+                    assert responseBody != null;
+                    assertThat(responseBody.getMovieInfo().getName()).isEqualTo("Batman Begins");
+                    assertThat(responseBody.getReviewList()).isEmpty();
+                });
+
+        WireMock.verify(reviewCalls, WireMock.getRequestedFor(WireMock.urlPathEqualTo("/v1/review")));
+        assertThat(meterRegistry.find("movies.client.circuitbreaker.transitions")
+                .tags("name", "movieReview", "from", "CLOSED", "to", "OPEN").counter())
+                .isNotNull()
+                .satisfies(counter -> assertThat(counter.count()).isGreaterThanOrEqualTo(1));
+    }
+
+    @Test
+    public void test_hanging_reviews_open_the_circuit(){
+        var movieInfoId = "abc";
+        var reviewCircuitBreaker = circuitBreakerRegistry.circuitBreaker("movieReview");
+
+        WireMock.stubFor(WireMock.get(WireMock.urlEqualTo("/v1/movieInfos/"+movieInfoId))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("movieinfo.json"))
+        );
+
+        //answers long after the deadline, every call is cut off by it instead of failing on its own
+        WireMock.stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/review"))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("reviews.json")
+                        .withFixedDelay(3000))
+        );
+
+        for (int i = 0; i < MAX_FAILED_REQUESTS && reviewCircuitBreaker.getState() == CircuitBreaker.State.CLOSED; i++) {
+            webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange().expectStatus().is5xxServerError();
+        }
+        assertThat(reviewCircuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(entityResult -> {
+                    var responseBody = entityResult.getResponseBody();
+                    assert responseBody != null;
+                    assertThat(responseBody.getReviewList()).isEmpty();
+                });
+    }
+
+    @Test
+    public void test_get_movie_info_circuit_open_serves_last_known(){
+        var movieInfoId = "abc";
+        var movieInfoCircuitBreaker = circuitBreakerRegistry.circuitBreaker("movieInfo");
+
+        WireMock.stubFor(WireMock.get(WireMock.urlEqualTo("/v1/movieInfos/"+movieInfoId))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("movieinfo.json"))
+        );
+
+        WireMock.stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/review"))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("reviews.json"))
+        );
+
+        webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange().expectStatus().isOk();
+
+        WireMock.stubFor(WireMock.get(WireMock.urlPathMatching("/v1/movieInfos/.*"))
+                .willReturn(WireMock.aResponse().withStatus(500)
+                        .withBody("MovieInfo Service Unavailable"))
+        );
+
+        for (int i = 0; i < MAX_FAILED_REQUESTS && movieInfoCircuitBreaker.getState() == CircuitBreaker.State.CLOSED; i++) {
+            //lets the regular cache entry expire, so the request reaches movies-info-service again
+            sleep(150);
+            webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange().expectStatus().is5xxServerError();
+        }
+        assertThat(movieInfoCircuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        var movieInfoCalls = WireMock.findAll(WireMock.getRequestedFor(WireMock.urlPathMatching("/v1/movieInfos/.*"))).size();
+
+        webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(entityResult -> {
+                    var responseBody = entityResult.getResponseBody();
+                    assert responseBody != null;
+                    assertThat(responseBody.getMovieInfo().getName()).isEqualTo("Batman Begins");
+                    assertThat(responseBody.getReviewList()).hasSize(2);
+                });
+
+        //nothing to fall back to for a title that was never loaded
+        webTestClient.get().uri(GET_URL+"{id}","def").exchange()
+                .expectStatus().is5xxServerError();
+
+        WireMock.verify(movieInfoCalls, WireMock.getRequestedFor(WireMock.urlPathMatching("/v1/movieInfos/.*")));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
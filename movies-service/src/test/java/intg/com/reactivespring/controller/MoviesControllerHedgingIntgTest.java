@@ -0,0 +1,108 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.config.RestClientProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Movie info stubs answer with a log-normal random delay, so a few calls are much slower than the rest.
+ * Both p99s are taken over /v1/movie/{id}, with hedging switched on and off between requests, so they only differ by
+ * the hedges and not by the work the endpoint does around the call.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 0)
+@TestPropertySource( properties = {
+        "restClient.movieInfoUrl = http://localhost:${wiremock.server.port}/v1/movieInfos",
+        "restClient.movieReviewUrl = http://localhost:${wiremock.server.port}/v1/review",
+        "movieInfoCache.enabled = false",
+        "restClient.hedge.enabled = true",
+        "restClient.hedge.initialDelay = 50ms"
+})
+public class MoviesControllerHedgingIntgTest {
+
+    private static final int WARMUP_REQUESTS = 50;
+    private static final int REQUESTS = 200;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RestClientProperties restClientProperties;
+
+    @Test
+    public void test_hedging_reduces_p99(){
+        var movieInfoId = "abc";
+
+        WireMock.stubFor(WireMock.get(WireMock.urlEqualTo("/v1/movieInfos/"+movieInfoId))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("movieinfo.json").withLogNormalRandomDelay(20, 1.2))
+        );
+
+        WireMock.stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/review"))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("reviews.json"))
+        );
+
+        //the hedged requests of the warm-up also fill the latency window the hedge delay is taken from
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            restClientProperties.getHedge().setEnabled(i % 2 == 0);
+            getMovie(movieInfoId);
+        }
+        var hedgesBefore = meterRegistry.get("movies.client.hedges").counter().count();
+
+        var unhedged = new ArrayList<Duration>();
+        var hedged = new ArrayList<Duration>();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                restClientProperties.getHedge().setEnabled(false);
+                unhedged.add(getMovie(movieInfoId));
+                restClientProperties.getHedge().setEnabled(true);
+                hedged.add(getMovie(movieInfoId));
+            }
+        } finally {
+            restClientProperties.getHedge().setEnabled(true);
+        }
+
+        var unhedgedP99 = p99(unhedged);
+        var hedgedP99 = p99(hedged);
+        var hedgeCount = meterRegistry.get("movies.client.hedges").counter().count() - hedgesBefore;
+        System.out.println("\n\np99 without hedging : " + unhedgedP99.toMillis() + "ms, p99 with hedging : "
+                + hedgedP99.toMillis() + "ms, hedges sent : " + hedgeCount);
+
+        assertThat(hedgedP99).isLessThan(unhedgedP99);
+        assertThat(hedgeCount).isLessThanOrEqualTo(REQUESTS * 0.1 + 1);
+    }
+
+    private Duration getMovie(String movieInfoId) {
+        var start = System.nanoTime();
+        webTestClient.get().uri("/v1/movie/{id}", movieInfoId).exchange().expectStatus().is2xxSuccessful();
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private Duration p99(List<Duration> latencies) {
+        var sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(0.99 * sorted.size()) - 1);
+    }
+}
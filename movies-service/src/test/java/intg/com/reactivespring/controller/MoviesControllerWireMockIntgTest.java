@@ -1,8 +1,12 @@
 package com.reactivespring.controller;
 
 import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.common.test.BlockingCallDetector;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieBatchResult;
+import io.micrometer.core.instrument.Metrics;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -12,6 +16,10 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -20,8 +28,12 @@ import static org.assertj.core.api.Assertions.assertThat;
 @AutoConfigureWireMock(port = 8084)
 @TestPropertySource( properties = {
         "restClient.movieInfoUrl = http://localhost:8084/v1/movieInfos",
-        "restClient.movieReviewUrl = http://localhost:8084/v1/review"
+        "restClient.movieReviewUrl = http://localhost:8084/v1/review",
+        "movieInfoCache.enabled = false",
+        "restClient.retry.budgetMinRetries = 100",
+        "restClient.circuitBreaker.enabled = false"
 })
+@ExtendWith(BlockingCallDetector.class)
 public class MoviesControllerWireMockIntgTest {
 
     @Autowired
@@ -53,6 +65,58 @@ public class MoviesControllerWireMockIntgTest {
                 });
     }
 
+    @Test
+    public void test_get_movie_not_modified(){
+        var movieInfoId = "etag-1";
+
+        WireMock.stubFor(WireMock.get(WireMock.urlEqualTo("/v1/movieInfos/"+movieInfoId))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withHeader(HttpHeaders.ETAG, "\"3\"")
+                        .withBody("{\"movieInfoId\":\"etag-1\",\"name\":\"Batman Begins\",\"year\":2005," +
+                                "\"cast\":[\"Christian Bale\",\"Michael Cane\"],\"release_date\":\"2005-06-15\",\"version\":3}"))
+        );
+        WireMock.stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/review"))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withHeader(HttpHeaders.ETAG, "\"reviews-1\"")
+                        .withBody("[{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0,\"version\":0}," +
+                                "{\"reviewId\":\"2\",\"movieInfoId\":1,\"comment\":\"Excellent Movie\",\"rating\":8.0,\"version\":2}]"))
+        );
+
+        var eTag = webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseHeaders().getETag();
+        assertThat(eTag).isNotNull();
+
+        //from now on the downstreams only answer revalidations of the ETags they handed out, without a body
+        WireMock.stubFor(WireMock.get(WireMock.urlEqualTo("/v1/movieInfos/"+movieInfoId))
+                .withHeader(HttpHeaders.IF_NONE_MATCH, WireMock.equalTo("\"3\""))
+                .willReturn(WireMock.aResponse().withStatus(304).withHeader(HttpHeaders.ETAG, "\"3\""))
+        );
+        WireMock.stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/review"))
+                .withHeader(HttpHeaders.IF_NONE_MATCH, WireMock.equalTo("\"reviews-1\""))
+                .willReturn(WireMock.aResponse().withStatus(304).withHeader(HttpHeaders.ETAG, "\"reviews-1\""))
+        );
+
+        webTestClient.get().uri(GET_URL+"{id}",movieInfoId).ifNoneMatch(eTag).exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody(Movie.class)
+                .value(movie -> {
+                    assertThat(movie.getMovieInfo().getName()).isEqualTo("Batman Begins");
+                    assertThat(movie.getMovieInfo().getVersion()).isEqualTo(3L);
+                    assertThat(movie.getReviewList()).hasSize(2);
+                });
+
+        WireMock.verify(2, WireMock.getRequestedFor(WireMock.urlEqualTo("/v1/movieInfos/"+movieInfoId))
+                .withHeader(HttpHeaders.IF_NONE_MATCH, WireMock.equalTo("\"3\"")));
+        WireMock.verify(2, WireMock.getRequestedFor(WireMock.urlPathEqualTo("/v1/review"))
+                .withHeader(HttpHeaders.IF_NONE_MATCH, WireMock.equalTo("\"reviews-1\"")));
+    }
+
     @Test
     public void test_getMoviesInfo_404(){
         var movieInfoId = "abc";
@@ -150,6 +214,120 @@ public class MoviesControllerWireMockIntgTest {
                     assertThat(responseBody).isEqualTo("Review Server Exp : Movies Review Service Unavailable");
                 });
 
-        WireMock.verify(1,WireMock.getRequestedFor(WireMock.urlPathEqualTo("/v1/review")));
+        WireMock.verify(4,WireMock.getRequestedFor(WireMock.urlPathEqualTo("/v1/review")));
+    }
+
+    @Test
+    public void test_get_movie_parallel_latency(){
+        var movieInfoId = "abc";
+        var stubDelayMillis = 300;
+
+        WireMock.stubFor(WireMock.get(WireMock.urlEqualTo("/v1/movieInfos/"+movieInfoId))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("movieinfo.json").withFixedDelay(stubDelayMillis))
+        );
+
+        WireMock.stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/review"))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("reviews.json").withFixedDelay(stubDelayMillis))
+        );
+
+        //warm up the connection pools and codecs so the first request doesn't skew the measurement
+        webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange().expectStatus().is2xxSuccessful();
+
+        var iterations = 5;
+        var start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange()
+                    .expectStatus().is2xxSuccessful().expectBody(Movie.class)
+                    .consumeWith(entityResult -> assertThat(entityResult.getResponseBody().getReviewList()).hasSize(2));
+        }
+        var averageLatency = Duration.ofNanos((System.nanoTime() - start) / iterations);
+        System.out.println("\n\nAverage latency with "+stubDelayMillis+"ms per downstream call is "
+                +averageLatency.toMillis()+"ms");
+
+        //sequential calls can't finish under the sum of both delays, parallel ones take roughly the slower of the two
+        assertThat(averageLatency).isLessThan(Duration.ofMillis(2L * stubDelayMillis - 100));
+    }
+
+    @Test
+    public void test_get_movies_batch(){
+        WireMock.stubFor(WireMock.post(WireMock.urlEqualTo("/v1/movieInfos/batch"))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/x-ndjson")
+                        .withBodyFile("movieinfos-batch.ndjson"))
+        );
+
+        WireMock.stubFor(WireMock.post(WireMock.urlEqualTo("/v1/review/batch"))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/x-ndjson")
+                        .withBodyFile("reviews-batch.ndjson"))
+        );
+
+        webTestClient.get().uri(uri -> uri.path("/v1/movie").queryParam("ids","1,2,3").build()).exchange()
+                .expectStatus().is2xxSuccessful().expectBodyList(MovieBatchResult.class)
+                .consumeWith(entityResult -> {
+                    var responseBody = entityResult.getResponseBody();
+                    assert responseBody != null;
+                    assertThat(responseBody).extracting(MovieBatchResult::getMovieInfoId).containsExactly("1","2","3");
+                    assertThat(responseBody).extracting(MovieBatchResult::getStatus).containsExactly(200,200,404);
+                    assertThat(responseBody.get(0).getMovie().getReviewList()).hasSize(2);
+                    assertThat(responseBody.get(1).getMovie().getMovieInfo().getName()).isEqualTo("The Dark Knight");
+                    assertThat(responseBody.get(1).getMovie().getReviewList()).hasSize(1);
+                });
+
+        WireMock.verify(1,WireMock.postRequestedFor(WireMock.urlEqualTo("/v1/movieInfos/batch")));
+        WireMock.verify(1,WireMock.postRequestedFor(WireMock.urlEqualTo("/v1/review/batch")));
+    }
+
+    @Test
+    public void test_get_movies_batch_reviews_500(){
+        WireMock.stubFor(WireMock.post(WireMock.urlEqualTo("/v1/movieInfos/batch"))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/x-ndjson")
+                        .withBodyFile("movieinfos-batch.ndjson"))
+        );
+
+        WireMock.stubFor(WireMock.post(WireMock.urlEqualTo("/v1/review/batch"))
+                .willReturn(WireMock.aResponse().withStatus(500).withBody("Movies Review Service Unavailable"))
+        );
+
+        webTestClient.get().uri(uri -> uri.path("/v1/movie").queryParam("ids","1,2").build()).exchange()
+                .expectStatus().is2xxSuccessful().expectBodyList(MovieBatchResult.class)
+                .consumeWith(entityResult -> {
+                    var responseBody = entityResult.getResponseBody();
+                    assert responseBody != null;
+                    assertThat(responseBody).extracting(MovieBatchResult::getStatus).containsExactly(500,500);
+                    assertThat(responseBody.get(0).getError()).isEqualTo("Review Server Exp : Movies Review Service Unavailable");
+                });
+    }
+
+    @Test
+    public void test_get_movies_batch_too_large(){
+        var ids = String.join(",", IntStream.rangeClosed(1, 101).mapToObj(String::valueOf).toList());
+
+        webTestClient.get().uri(uri -> uri.path("/v1/movie").queryParam("ids",ids).build()).exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void test_connection_pool_gauges_exported(){
+        var movieInfoId = "abc";
+
+        WireMock.stubFor(WireMock.get(WireMock.urlEqualTo("/v1/movieInfos/"+movieInfoId))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("movieinfo.json"))
+        );
+
+        WireMock.stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/review"))
+                .willReturn(WireMock.aResponse().withHeader(HttpHeaders.CONTENT_TYPE,"application/json")
+                        .withBodyFile("reviews.json"))
+        );
+
+        webTestClient.get().uri(GET_URL+"{id}",movieInfoId).exchange().expectStatus().is2xxSuccessful();
+
+        for (var pool : List.of("movieInfo", "movieReview")) {
+            for (var gauge : List.of("active", "idle", "pending")) {
+                assertThat(Metrics.globalRegistry.find("reactor.netty.connection.provider." + gauge + ".connections")
+                        .tag("name", pool).gauge()).isNotNull();
+            }
+        }
     }
 }
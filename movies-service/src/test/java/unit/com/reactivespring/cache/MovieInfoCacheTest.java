@@ -0,0 +1,105 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MovieInfoCacheTest {
+
+    private static final MovieInfo MOVIE_INFO = new MovieInfo("abc", "Batman Begins", 2005,
+            List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    private MovieInfoCache movieInfoCache(boolean enabled) {
+        return new MovieInfoCache(enabled, 100, Duration.ofMinutes(10), Duration.ofMinutes(5), Duration.ofHours(1),
+                new SimpleMeterRegistry());
+    }
+
+    private Mono<MovieInfo> load(String movieInfoId) {
+        return Mono.defer(() -> {
+            loadCount.incrementAndGet();
+            return Mono.just(MOVIE_INFO).delayElement(Duration.ofMillis(100));
+        });
+    }
+
+    @Test
+    public void test_hit_after_miss() {
+        var movieInfoCache = movieInfoCache(true);
+
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(MOVIE_INFO).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(MOVIE_INFO).verifyComplete();
+
+        assertThat(loadCount.get()).isEqualTo(1);
+        assertThat(movieInfoCache.stats().hitCount()).isEqualTo(1);
+        assertThat(movieInfoCache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_concurrent_misses_share_one_load() {
+        var movieInfoCache = movieInfoCache(true);
+
+        var movieInfoFlux = Flux.range(0, 50).flatMap(i -> movieInfoCache.get("abc", this::load));
+
+        StepVerifier.create(movieInfoFlux).expectNextCount(50).verifyComplete();
+        assertThat(loadCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_failed_load_is_not_cached() {
+        var movieInfoCache = movieInfoCache(true);
+
+        StepVerifier.create(movieInfoCache.get("abc", id -> {
+            loadCount.incrementAndGet();
+            return Mono.error(new RuntimeException("Movie Info Service Unavailable"));
+        })).verifyError();
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(MOVIE_INFO).verifyComplete();
+
+        assertThat(loadCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_disabled_cache_always_loads() {
+        var movieInfoCache = movieInfoCache(false);
+
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(MOVIE_INFO).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(MOVIE_INFO).verifyComplete();
+
+        assertThat(loadCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_last_known_value_outlives_invalidation_of_entry() {
+        var movieInfoCache = movieInfoCache(true);
+
+        StepVerifier.create(movieInfoCache.getLastKnown("abc")).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(MOVIE_INFO).verifyComplete();
+
+        movieInfoCache.invalidate("abc");
+
+        StepVerifier.create(movieInfoCache.getLastKnown("abc")).expectNext(MOVIE_INFO).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(MOVIE_INFO).verifyComplete();
+        assertThat(loadCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_invalidate_all_drops_last_known_values() {
+        var movieInfoCache = movieInfoCache(true);
+
+        StepVerifier.create(movieInfoCache.get("abc", this::load)).expectNext(MOVIE_INFO).verifyComplete();
+
+        movieInfoCache.invalidateAll();
+
+        StepVerifier.create(movieInfoCache.getLastKnown("abc")).verifyComplete();
+    }
+}
@@ -0,0 +1,118 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RevalidationCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    //what movies-info-service holds for the id, null once it is deleted
+    private final AtomicReference<MovieInfo> stored = new AtomicReference<>();
+
+    //the If-None-Match of every call, null when none was sent
+    private final List<String> sentETags = new ArrayList<>();
+
+    private RevalidationCache<MovieInfo> revalidationCache(boolean enabled) {
+        return new RevalidationCache<>("movieInfo", enabled, 100, Duration.ofMinutes(10), meterRegistry);
+    }
+
+    private static MovieInfo movieInfo(List<String> cast) {
+        var movieInfo = new MovieInfo("abc", "Batman Begins", 2005, cast, LocalDate.parse("2005-06-15"));
+        movieInfo.setVersion(0L);
+        return movieInfo;
+    }
+
+    //answers like movies-info-service does: the ETag is hashed from the content and a matching If-None-Match gets a 304
+    private Mono<ResponseEntity<MovieInfo>> call(String ifNoneMatch) {
+        sentETags.add(ifNoneMatch);
+        var movieInfo = stored.get();
+        if (movieInfo == null) {
+            return Mono.error(new MoviesInfoClientException("There is no movie Info available for passed in id abc",
+                    HttpStatus.NOT_FOUND.value()));
+        }
+        var eTag = "\"" + DigestUtils.md5DigestAsHex(movieInfo.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+        if (eTag.equals(ifNoneMatch)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build());
+        }
+        return Mono.just(ResponseEntity.ok().eTag(eTag).body(movieInfo));
+    }
+
+    private double notModifiedCount() {
+        return meterRegistry.get("movies.revalidation.not.modified").counter().count();
+    }
+
+    @Test
+    public void test_not_modified_serves_the_kept_value() {
+        var revalidationCache = revalidationCache(true);
+        var movieInfo = movieInfo(List.of("Christian Bale"));
+        stored.set(movieInfo);
+
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call)).expectNext(movieInfo).verifyComplete();
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call)).expectNext(movieInfo).verifyComplete();
+
+        assertThat(sentETags.get(0)).isNull();
+        assertThat(sentETags.get(1)).isNotNull();
+        assertThat(notModifiedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_recreated_resource_is_not_served_from_the_kept_value() {
+        var revalidationCache = revalidationCache(true);
+        stored.set(movieInfo(List.of("Christian Bale")));
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call)).expectNextCount(1).verifyComplete();
+
+        stored.set(null);
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call))
+                .expectError(MoviesInfoClientException.class).verify();
+
+        //recreated at the same version as the deleted one, only the content differs
+        var recreated = movieInfo(List.of("Michael Cane"));
+        stored.set(recreated);
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call)).expectNext(recreated).verifyComplete();
+
+        assertThat(sentETags.get(2)).isNull();
+        assertThat(notModifiedCount()).isZero();
+    }
+
+    @Test
+    public void test_changed_content_at_the_same_version_replaces_the_kept_value() {
+        var revalidationCache = revalidationCache(true);
+        stored.set(movieInfo(List.of("Christian Bale")));
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call)).expectNextCount(1).verifyComplete();
+
+        var replaced = movieInfo(List.of("Michael Cane"));
+        stored.set(replaced);
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call)).expectNext(replaced).verifyComplete();
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call)).expectNext(replaced).verifyComplete();
+
+        assertThat(notModifiedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_disabled_never_sends_an_etag() {
+        var revalidationCache = revalidationCache(false);
+        stored.set(movieInfo(List.of("Christian Bale")));
+
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(revalidationCache.revalidate("abc", this::call)).expectNextCount(1).verifyComplete();
+
+        assertThat(sentETags).containsOnlyNulls();
+    }
+}
@@ -0,0 +1,57 @@
+package com.reactivespring.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LatencyTrackerTest {
+
+    //over a window of at most 100 samples the p99 is the slowest latency
+    private final LatencyTracker latencyTracker = new LatencyTracker(0.99, 100, 20, 5);
+
+    private void record(int count, long millis) {
+        for (int i = 0; i < count; i++) {
+            latencyTracker.record(Duration.ofMillis(millis));
+        }
+    }
+
+    @Test
+    public void test_no_percentile_before_min_samples() {
+        record(19, 10);
+        assertThat(latencyTracker.currentPercentile()).isNull();
+
+        record(1, 10);
+        assertThat(latencyTracker.currentPercentile()).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    public void test_percentile_is_recomputed_every_recompute_every_samples() {
+        record(20, 10);
+
+        record(4, 50);
+        assertThat(latencyTracker.currentPercentile()).isEqualTo(Duration.ofMillis(10));
+
+        record(1, 50);
+        assertThat(latencyTracker.currentPercentile()).isEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    public void test_min_samples_above_the_window_is_capped_at_the_window() {
+        var tracker = new LatencyTracker(0.99, 10, 20, 5);
+        for (int i = 0; i < 10; i++) {
+            tracker.record(Duration.ofMillis(10));
+        }
+        assertThat(tracker.currentPercentile()).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    public void test_percentile_of_zero_reads_the_fastest_sample() {
+        var tracker = new LatencyTracker(0, 10, 5, 5);
+        for (int i = 1; i <= 5; i++) {
+            tracker.record(Duration.ofMillis(i * 10L));
+        }
+        assertThat(tracker.currentPercentile()).isEqualTo(Duration.ofMillis(10));
+    }
+}
@@ -0,0 +1,49 @@
+package com.reactivespring.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestBudgetTest {
+
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    private final RequestBudget requestBudget = new RequestBudget(0.1, 2, Duration.ofSeconds(10), nanoClock::get);
+
+    @Test
+    public void test_floor_applies_without_traffic() {
+        assertThat(requestBudget.tryAcquire()).isTrue();
+        assertThat(requestBudget.tryAcquire()).isTrue();
+        assertThat(requestBudget.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void test_ratio_of_recent_requests() {
+        for (int i = 0; i < 100; i++) {
+            requestBudget.recordRequest();
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(requestBudget.tryAcquire()).isTrue();
+        }
+        assertThat(requestBudget.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void test_budget_refills_once_window_slides() {
+        for (int i = 0; i < 100; i++) {
+            requestBudget.recordRequest();
+        }
+        for (int i = 0; i < 10; i++) {
+            requestBudget.tryAcquire();
+        }
+        assertThat(requestBudget.tryAcquire()).isFalse();
+
+        nanoClock.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        assertThat(requestBudget.tryAcquire()).isTrue();
+    }
+}
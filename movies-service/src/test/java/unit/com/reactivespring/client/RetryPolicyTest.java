@@ -0,0 +1,136 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.RestClientProperties;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryPolicyTest {
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RetryPolicy retryPolicy(int budgetMinRetries, Duration deadline) {
+        var settings = new RestClientProperties.Retry();
+        settings.setMinBackoff(Duration.ofMillis(10));
+        settings.setMaxBackoff(Duration.ofMillis(50));
+        settings.setDeadline(deadline);
+        var retryBudget = new RequestBudget(0.1, budgetMinRetries, Duration.ofSeconds(10));
+        return new RetryPolicy("movieInfo", settings, retryBudget, MoviesInfoServerException::new, meterRegistry);
+    }
+
+    private Mono<String> failingCall(RuntimeException ex) {
+        return Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(ex);
+        });
+    }
+
+    @Test
+    public void test_retries_until_max_and_keeps_original_error() {
+        var call = retryPolicy(10, Duration.ofSeconds(2))
+                .apply(failingCall(new MoviesInfoServerException("Movie Info Service Unavailable")),
+                        ex -> ex instanceof MoviesInfoServerException);
+
+        StepVerifier.create(call)
+                .expectErrorMatches(ex -> ex instanceof MoviesInfoServerException
+                        && ex.getMessage().equals("Movie Info Service Unavailable"))
+                .verify();
+        assertThat(attempts.get()).isEqualTo(4);
+        assertThat(meterRegistry.get("movies.client.retries").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void test_client_errors_are_not_retried() {
+        var call = retryPolicy(10, Duration.ofSeconds(2))
+                .apply(failingCall(new MoviesInfoClientException("There is no movie Info available for passed in id abc", 404)),
+                        ex -> ex instanceof MoviesInfoServerException);
+
+        StepVerifier.create(call).expectError(MoviesInfoClientException.class).verify();
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_exhausted_budget_stops_retries() {
+        var call = retryPolicy(1, Duration.ofSeconds(2))
+                .apply(failingCall(new MoviesInfoServerException("Movie Info Service Unavailable")),
+                        ex -> ex instanceof MoviesInfoServerException);
+
+        StepVerifier.create(call).expectError(MoviesInfoServerException.class).verify();
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("movies.client.retry.budget.exhausted").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_deadline_stops_retries() {
+        //the first attempt is cut off at the deadline, after which not even the shortest backoff fits
+        var retryPolicy = retryPolicy(10, Duration.ofMillis(50));
+        var call = retryPolicy
+                .apply(retryPolicy.withinDeadline(failingCall(new MoviesInfoServerException("Movie Info Service Unavailable"))
+                                .delaySubscription(Duration.ofMillis(60))),
+                        ex -> ex instanceof MoviesInfoServerException);
+
+        StepVerifier.create(call).expectError(MoviesInfoServerException.class).verify();
+        assertThat(attempts.get()).isZero();
+        assertThat(meterRegistry.get("movies.client.retry.deadline.exceeded").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_slow_call_is_cut_off_at_the_deadline() {
+        var start = System.nanoTime();
+        var retryPolicy = retryPolicy(10, Duration.ofMillis(200));
+        var call = retryPolicy
+                .apply(retryPolicy.withinDeadline(Mono.<String>never().doOnSubscribe(subscription -> attempts.incrementAndGet())),
+                        ex -> ex instanceof MoviesInfoServerException);
+
+        StepVerifier.create(call)
+                .expectErrorMessage("movieInfo call did not complete within the 200ms deadline")
+                .verify(Duration.ofSeconds(2));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isBetween(Duration.ofMillis(200), Duration.ofMillis(1000));
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("movies.client.deadline.timeouts").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_retry_only_gets_the_time_left_until_the_deadline() {
+        var start = System.nanoTime();
+        //the first attempt fails, the retry hangs and is cut off when the deadline of the whole request is reached
+        var retryPolicy = retryPolicy(10, Duration.ofMillis(300));
+        var call = retryPolicy
+                .apply(retryPolicy.withinDeadline(Mono.defer(() -> attempts.incrementAndGet() == 1
+                                ? Mono.<String>error(new MoviesInfoServerException("Movie Info Service Unavailable"))
+                                : Mono.<String>never())),
+                        ex -> ex instanceof MoviesInfoServerException);
+
+        StepVerifier.create(call)
+                .expectErrorMessage("movieInfo call did not complete within the 300ms deadline")
+                .verify(Duration.ofSeconds(2));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isBetween(Duration.ofMillis(300), Duration.ofMillis(1100));
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_deadline_failure_reaches_the_circuit_breaker() {
+        var circuitBreaker = CircuitBreaker.ofDefaults("movieInfo");
+        var retryPolicy = retryPolicy(10, Duration.ofMillis(100));
+        var call = retryPolicy
+                .apply(Mono.<String>never()
+                                .transform(retryPolicy::withinDeadline)
+                                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker)),
+                        ex -> ex instanceof MoviesInfoServerException);
+
+        StepVerifier.create(call).expectError(MoviesInfoServerException.class).verify(Duration.ofSeconds(2));
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+    }
+}
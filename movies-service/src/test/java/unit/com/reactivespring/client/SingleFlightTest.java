@@ -0,0 +1,62 @@
+package com.reactivespring.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>("test", new SimpleMeterRegistry());
+
+    private final AtomicInteger upstreamCount = new AtomicInteger();
+
+    private Mono<List<String>> upstream() {
+        upstreamCount.incrementAndGet();
+        return Flux.just("Awesome Movie", "Excellent Movie").delayElements(Duration.ofMillis(50)).collectList();
+    }
+
+    @Test
+    public void test_concurrent_lookups_share_one_upstream() {
+        var reviewsFlux = Flux.range(0, 100).flatMap(i -> singleFlight.execute("1", this::upstream));
+
+        StepVerifier.create(reviewsFlux)
+                .recordWith(ArrayList::new)
+                .expectNextCount(100)
+                .consumeRecordedWith(reviewLists -> assertThat(reviewLists).allMatch(reviews -> reviews.size() == 2))
+                .verifyComplete();
+
+        assertThat(upstreamCount.get()).isEqualTo(1);
+        assertThat(singleFlight.coalescingRatio()).isEqualTo(0.99);
+    }
+
+    @Test
+    public void test_completed_lookup_is_not_reused() {
+        StepVerifier.create(singleFlight.execute("1", this::upstream)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(singleFlight.execute("1", this::upstream)).expectNextCount(1).verifyComplete();
+
+        assertThat(upstreamCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_upstream_cancelled_when_last_subscriber_leaves() {
+        var cancelled = new AtomicBoolean();
+        var never = Mono.<List<String>>never().doOnCancel(() -> cancelled.set(true));
+
+        StepVerifier.create(singleFlight.execute("1", () -> never))
+                .expectSubscription()
+                .thenCancel()
+                .verify();
+
+        assertThat(cancelled).isTrue();
+    }
+}
@@ -0,0 +1,36 @@
+package com.reactivespring.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RestClientPropertiesTest {
+
+    @Configuration
+    @EnableConfigurationProperties(RestClientProperties.class)
+    static class PropertiesConfig {
+    }
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(PropertiesConfig.class);
+
+    @Test
+    public void test_hedge_percentile_in_range_is_bound() {
+        contextRunner.withPropertyValues("restClient.hedge.percentile=0.5")
+                .run(context -> assertThat(context.getBean(RestClientProperties.class).getHedge().getPercentile())
+                        .isEqualTo(0.5));
+    }
+
+    @Test
+    public void test_hedge_percentile_out_of_range_fails_the_startup() {
+        contextRunner.withPropertyValues("restClient.hedge.percentile=0")
+                .run(context -> assertThat(context).hasFailed()
+                        .getFailure().hasStackTraceContaining("restClient.hedge.percentile must be greater than 0"));
+        contextRunner.withPropertyValues("restClient.hedge.percentile=1.5")
+                .run(context -> assertThat(context).hasFailed()
+                        .getFailure().hasStackTraceContaining("restClient.hedge.percentile must be at most 1"));
+    }
+}